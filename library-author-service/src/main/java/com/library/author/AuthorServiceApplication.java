@@ -2,8 +2,12 @@ package com.library.author;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableFeignClients
+@EnableScheduling
 public class AuthorServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(AuthorServiceApplication.class, args);
@@ -0,0 +1,83 @@
+package com.library.author.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Hands out ids from blocks reserved on the *_sequence counter documents. Each block is claimed
+ * with one findAndModify, so ids stay unique across instances and the counter is hit once per
+ * block instead of once per insert. Ids of a block not fully used before shutdown are skipped.
+ */
+@Component
+public class SequenceBlockAllocator {
+
+    private final MongoOperations mongoOperations;
+    private final int blockSize;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public SequenceBlockAllocator(MongoOperations mongoOperations,
+                                  @Value("${library.sequence.block-size:1000}") int blockSize) {
+        this.mongoOperations = mongoOperations;
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    public Long next(String seqName) {
+        while (true) {
+            Block block = blocks.get(seqName);
+            if (block != null) {
+                long id = block.cursor.getAndIncrement();
+                if (id <= block.max) {
+                    return id;
+                }
+            }
+            synchronized (this) {
+                if (blocks.get(seqName) == block) {
+                    blocks.put(seqName, reserve(seqName, blockSize));
+                }
+            }
+        }
+    }
+
+    private Block reserve(String seqName, int size) {
+        var counter = mongoOperations.findAndModify(
+                query(where("_id").is(seqName)),
+                new Update().inc("seq", size),
+                FindAndModifyOptions.options().returnNew(true).upsert(true),
+                SequenceCounter.class);
+        long max = counter != null ? counter.getSeq() : size;
+        return new Block(max - size + 1, max);
+    }
+
+    private static class Block {
+        private final AtomicLong cursor;
+        private final long max;
+
+        Block(long first, long max) {
+            this.cursor = new AtomicLong(first);
+            this.max = max;
+        }
+    }
+
+    private static class SequenceCounter {
+        private String id;
+        private Long seq;
+
+        public Long getSeq() {
+            return seq;
+        }
+
+        public void setSeq(Long seq) {
+            this.seq = seq;
+        }
+    }
+}
@@ -1,14 +1,20 @@
 package com.library.author.controller;
 
+import com.library.author.dto.AuthorBatchRequestDTO;
+import com.library.author.dto.CursorPageDTO;
 import com.library.author.dto.AuthorDTO;
+import com.library.author.dto.SuggestionDTO;
+import com.library.author.search.AuthorSuggestionService;
 import com.library.author.service.AuthorService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -19,6 +25,7 @@ import java.util.List;
 public class AuthorController {
 
     private final AuthorService authorService;
+    private final AuthorSuggestionService authorSuggestionService;
 
     @PostMapping
     @Operation(summary = "Create a new author")
@@ -34,6 +41,13 @@ public class AuthorController {
         return ResponseEntity.ok(author);
     }
 
+    @PostMapping("/batch")
+    @Operation(summary = "Get several authors by ID in one call")
+    public ResponseEntity<List<AuthorDTO>> getAuthorsByIds(@Valid @RequestBody AuthorBatchRequestDTO request) {
+        List<AuthorDTO> authors = authorService.getAuthorsByIds(request.getIds());
+        return ResponseEntity.ok(authors);
+    }
+
     @GetMapping
     @Operation(summary = "Get all authors")
     public ResponseEntity<List<AuthorDTO>> getAllAuthors() {
@@ -41,6 +55,23 @@ public class AuthorController {
         return ResponseEntity.ok(authors);
     }
 
+    @GetMapping(params = "limit")
+    @Operation(summary = "Get authors one keyset page at a time, ordered by ID")
+    public ResponseEntity<CursorPageDTO<AuthorDTO>> getAuthorsPage(
+            @RequestParam(name = "after", required = false) Long after,
+            @RequestParam(name = "limit") int limit
+    ) {
+        CursorPageDTO<AuthorDTO> page = authorService.getAuthorsPage(after, limit);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream all authors as NDJSON straight from the database cursor")
+    public ResponseEntity<StreamingResponseBody> streamAllAuthors() {
+        StreamingResponseBody body = authorService::streamAllAuthors;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "Update author")
     public ResponseEntity<AuthorDTO> updateAuthor(
@@ -64,4 +95,14 @@ public class AuthorController {
         List<AuthorDTO> authors = authorService.searchAuthorsByName(name);
         return ResponseEntity.ok(authors);
     }
+
+    @GetMapping("/suggest")
+    @Operation(summary = "Suggest author names matching a prefix")
+    public ResponseEntity<List<SuggestionDTO>> suggestNames(
+            @RequestParam(name = "q") String prefix,
+            @RequestParam(name = "limit", defaultValue = "10") int limit
+    ) {
+        List<SuggestionDTO> suggestions = authorSuggestionService.suggest(prefix, limit);
+        return ResponseEntity.ok(suggestions);
+    }
 }
@@ -0,0 +1,18 @@
+package com.library.author.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthorBatchRequestDTO {
+    @NotEmpty(message = "At least one author ID is required")
+    @Size(max = 1000, message = "No more than 1000 author IDs per batch")
+    private List<Long> ids;
+}
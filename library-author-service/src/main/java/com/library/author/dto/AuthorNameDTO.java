@@ -0,0 +1,13 @@
+package com.library.author.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthorNameDTO {
+    private Long authorId;
+    private String authorName;
+}
@@ -0,0 +1,19 @@
+package com.library.author.feign;
+
+import com.library.author.dto.AuthorBookCountDTO;
+import com.library.author.dto.AuthorNameDTO;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.List;
+
+@FeignClient(name = "library-book-service")
+public interface BookFeignClient {
+    @PutMapping("/api/books/author-name")
+    Long updateAuthorName(@RequestBody AuthorNameDTO request);
+
+    @GetMapping("/api/books/author-counts")
+    List<AuthorBookCountDTO> getBookCountsByAuthor();
+}
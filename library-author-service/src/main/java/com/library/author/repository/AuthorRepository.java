@@ -1,12 +1,14 @@
 package com.library.author.repository;
 
 import com.library.author.entity.Author;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface AuthorRepository extends MongoRepository<Author, Long> {
@@ -14,4 +16,8 @@ public interface AuthorRepository extends MongoRepository<Author, Long> {
 
     @Query("{'$or': [{'firstName': {$regex: ?0, $options: 'i'}}, {'lastName': {$regex: ?0, $options: 'i'}}]}")
     List<Author> searchByName(String name);
+
+    List<Author> findByIdGreaterThanOrderByIdAsc(Long after, Pageable pageable);
+
+    Stream<Author> streamAllByOrderByIdAsc();
 }
@@ -0,0 +1,28 @@
+package com.library.author.search;
+
+import com.library.author.entity.Author;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class AuthorSuggestionListener extends AbstractMongoEventListener<Author> {
+
+    private final AuthorSuggestionService authorSuggestionService;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Author> event) {
+        authorSuggestionService.index(event.getSource());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Author> event) {
+        Object id = event.getSource().get("_id");
+        if (id instanceof Number authorId) {
+            authorSuggestionService.remove(authorId.longValue());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.library.author.search;
+
+import com.library.author.dto.AuthorBookCountDTO;
+import com.library.author.dto.SuggestionDTO;
+import com.library.author.entity.Author;
+import com.library.author.feign.BookFeignClient;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class AuthorSuggestionService {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private final MongoTemplate mongoTemplate;
+    private final BookFeignClient bookFeignClient;
+    private final SuggestionTrie nameTrie = new SuggestionTrie(MAX_SUGGESTIONS);
+    private volatile Map<Long, Long> bookCounts = Map.of();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // Database not reachable yet, names are added as authors are saved
+        }
+    }
+
+    // Books are catalogued in the book service, so the counts behind the ranking are refetched
+    @Scheduled(initialDelayString = "${library.suggestions.popularity-refresh-interval:600000}",
+            fixedDelayString = "${library.suggestions.popularity-refresh-interval:600000}")
+    public void refreshPopularity() {
+        initialize();
+    }
+
+    // Entries are replaced in place, so suggestions keep being served while it runs
+    public void rebuild() {
+        refreshBookCounts();
+        Query query = new Query();
+        query.fields().include("firstName").include("lastName");
+        try (Stream<Author> authors = mongoTemplate.stream(query, Author.class)) {
+            authors.forEach(this::index);
+        }
+    }
+
+    // Authors with more books in the catalogue rank first, shorter names break ties
+    public void index(Author author) {
+        nameTrie.put(author.getId(), displayName(author), bookCounts.getOrDefault(author.getId(), 0L));
+    }
+
+    public void remove(Long authorId) {
+        nameTrie.remove(authorId);
+    }
+
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        return nameTrie.suggest(prefix, Math.min(Math.max(limit, 1), MAX_SUGGESTIONS)).stream()
+                .map(entry -> new SuggestionDTO(entry.id(), entry.label()))
+                .collect(Collectors.toList());
+    }
+
+    private void refreshBookCounts() {
+        try {
+            bookCounts = bookFeignClient.getBookCountsByAuthor().stream()
+                    .collect(Collectors.toMap(AuthorBookCountDTO::getAuthorId, AuthorBookCountDTO::getCount));
+        } catch (Exception e) {
+            // Book service unavailable, keep the counts from the last refresh
+        }
+    }
+
+    private static String displayName(Author author) {
+        String firstName = author.getFirstName() != null ? author.getFirstName() : "";
+        String lastName = author.getLastName() != null ? author.getLastName() : "";
+        return (firstName + " " + lastName).strip();
+    }
+}
@@ -1,23 +1,37 @@
 package com.library.author.service;
 
+import com.library.author.dto.CursorPageDTO;
 import com.library.author.dto.AuthorDTO;
+import com.library.author.dto.AuthorNameDTO;
 import com.library.author.entity.Author;
+import com.library.author.feign.BookFeignClient;
 import com.library.author.mapper.AuthorMapper;
 import com.library.author.repository.AuthorRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class AuthorService {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+
     private final AuthorRepository authorRepository;
     private final AuthorMapper authorMapper;
+    private final ObjectMapper objectMapper;
+    private final BookFeignClient bookFeignClient;
 
     public AuthorDTO createAuthor(AuthorDTO authorDTO) {
         Author author = authorMapper.toEntity(authorDTO);
@@ -32,6 +46,13 @@ public class AuthorService {
         return authorMapper.toDTO(author);
     }
 
+    @Transactional(readOnly = true)
+    public List<AuthorDTO> getAuthorsByIds(List<Long> ids) {
+        return authorRepository.findAllById(new LinkedHashSet<>(ids)).stream()
+                .map(authorMapper::toDTO)
+                .collect(Collectors.toList());
+    }
+
     @Transactional(readOnly = true)
     public List<AuthorDTO> getAllAuthors() {
         return authorRepository.findAll().stream()
@@ -39,14 +60,45 @@ public class AuthorService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
+    public CursorPageDTO<AuthorDTO> getAuthorsPage(Long after, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<AuthorDTO> items = authorRepository
+                .findByIdGreaterThanOrderByIdAsc(after != null ? after : 0L, PageRequest.of(0, pageSize)).stream()
+                .map(authorMapper::toDTO)
+                .collect(Collectors.toList());
+        Long nextAfter = items.size() == pageSize ? items.get(items.size() - 1).getId() : null;
+        return new CursorPageDTO<>(items, nextAfter);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllAuthors(OutputStream out) throws IOException {
+        try (Stream<Author> authors = authorRepository.streamAllByOrderByIdAsc()) {
+            Iterator<Author> iterator = authors.iterator();
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(authorMapper.toDTO(iterator.next())));
+                out.write('\n');
+            }
+        }
+        out.flush();
+    }
+
     public AuthorDTO updateAuthor(Long id, AuthorDTO authorDTO) {
         Author author = authorRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Author not found with id: " + id));
+        String previousName = displayName(author);
         author.setFirstName(authorDTO.getFirstName());
         author.setLastName(authorDTO.getLastName());
         author.setBio(authorDTO.getBio());
         author.setBirthDate(authorDTO.getBirthDate());
         Author updated = authorRepository.save(author);
+        if (!displayName(updated).equals(previousName)) {
+            try {
+                bookFeignClient.updateAuthorName(new AuthorNameDTO(id, displayName(updated)));
+            } catch (Exception e) {
+                // Book service unavailable, its nightly author name resync catches up
+            }
+        }
         return authorMapper.toDTO(updated);
     }
 
@@ -63,6 +115,8 @@ public class AuthorService {
                 .map(authorMapper::toDTO)
                 .collect(Collectors.toList());
     }
-}
-
 
+    private String displayName(Author author) {
+        return author.getFirstName() + " " + author.getLastName();
+    }
+}
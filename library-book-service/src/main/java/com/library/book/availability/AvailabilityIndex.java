@@ -0,0 +1,169 @@
+package com.library.book.availability;
+
+import com.library.book.dto.AvailabilityDeltaDTO;
+import com.library.book.dto.AvailabilitySnapshotDTO;
+import com.library.book.entity.Book;
+import com.library.book.search.CatalogFacetCounts;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Compressed bitmap of the ids of books with at least one available copy, versioned so callers
+ * can keep a local copy current from deltas. On a replica set the index follows the book change
+ * stream, so it sees changes made through every instance; versions are cluster times and the
+ * epoch is shared through the database, which lets a caller move between instances. On a
+ * standalone server it follows this instance's own writes under a local epoch. A caller holding
+ * a different epoch, or a version outside the retained change log, reloads the snapshot.
+ */
+@Component
+public class AvailabilityIndex {
+
+    private record Change(long version, long bookId, boolean available) {
+    }
+
+    private final int changeLogSize;
+
+    private String epoch = UUID.randomUUID().toString();
+    private boolean followsChangeStream;
+
+    private Roaring64NavigableMap available = new Roaring64NavigableMap();
+    private final ArrayDeque<Change> changes = new ArrayDeque<>();
+    private long version;
+    private long logStart; // changes after this version are all retained
+    private boolean loaded;
+    private AvailabilitySnapshotDTO snapshot;
+
+    public AvailabilityIndex(@Value("${library.availability.change-log-size:100000}") int changeLogSize) {
+        this.changeLogSize = changeLogSize;
+    }
+
+    public void update(Book book) {
+        set(book.getId(), CatalogFacetCounts.isAvailable(book));
+    }
+
+    // A write made through this instance. Ignored once the change stream delivers every write,
+    // its version would not line up with the other instances.
+    public synchronized void set(long bookId, boolean isAvailable) {
+        if (!followsChangeStream) {
+            apply(bookId, isAvailable, version + 1);
+        }
+    }
+
+    // A write seen on the change stream, made through any instance at the given cluster time
+    public synchronized void changed(long bookId, boolean isAvailable, long clusterTime) {
+        apply(bookId, isAvailable, Math.max(version + 1, clusterTime));
+    }
+
+    public synchronized void followChangeStream(String sharedEpoch) {
+        followsChangeStream = true;
+        epoch = sharedEpoch;
+    }
+
+    // Taken before reading the bitmap, changes logged after it are newer than what was read
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Swaps in a bitmap read from the database after {@code mark} was taken, logging the
+     * differences as changes so deltas stay exact. Changes logged while it was being read are
+     * applied on top, they may be newer than the documents read. The first load starts at
+     * {@code clusterTime} when there is one, so its version lines up with the other instances.
+     */
+    public synchronized void reload(Roaring64NavigableMap fresh, long mark, long clusterTime) {
+        if (mark < logStart) {
+            // Changes made during the read were trimmed from the log, try again next time
+            return;
+        }
+        for (Change change : changes) {
+            if (change.version() > mark) {
+                if (change.available()) {
+                    fresh.addLong(change.bookId());
+                } else {
+                    fresh.removeLong(change.bookId());
+                }
+            }
+        }
+        fresh.runOptimize();
+        if (!loaded) {
+            // Nothing worth a delta before the first load, callers start from a snapshot
+            available = fresh;
+            loaded = true;
+            version = Math.max(version + 1, clusterTime);
+            logStart = version;
+            changes.clear();
+            return;
+        }
+        fresh.forEach(bookId -> {
+            if (!available.contains(bookId)) {
+                record(bookId, true, version + 1);
+            }
+        });
+        available.forEach(bookId -> {
+            if (!fresh.contains(bookId)) {
+                record(bookId, false, version + 1);
+            }
+        });
+        available = fresh;
+    }
+
+    public synchronized AvailabilitySnapshotDTO snapshot() {
+        if (snapshot == null || snapshot.getVersion() != version) {
+            try {
+                available.runOptimize();
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) available.serializedSizeInBytes());
+                available.serializePortable(new DataOutputStream(bytes));
+                snapshot = new AvailabilitySnapshotDTO(epoch, version, available.getLongCardinality(), bytes.toByteArray());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return snapshot;
+    }
+
+    public synchronized AvailabilityDeltaDTO changesSince(String callerEpoch, long since) {
+        if (!epoch.equals(callerEpoch) || since > version || since < logStart) {
+            return new AvailabilityDeltaDTO(epoch, version, true, List.of(), List.of());
+        }
+        // Only the latest state of each book matters to the caller
+        Map<Long, Boolean> latest = new LinkedHashMap<>();
+        for (Iterator<Change> it = changes.descendingIterator(); it.hasNext(); ) {
+            Change change = it.next();
+            if (change.version() <= since) {
+                break;
+            }
+            latest.putIfAbsent(change.bookId(), change.available());
+        }
+        List<Long> nowAvailable = new ArrayList<>();
+        List<Long> nowUnavailable = new ArrayList<>();
+        latest.forEach((bookId, isAvailable) -> (isAvailable ? nowAvailable : nowUnavailable).add(bookId));
+        return new AvailabilityDeltaDTO(epoch, version, false, nowAvailable, nowUnavailable);
+    }
+
+    private void apply(long bookId, boolean isAvailable, long atVersion) {
+        if (available.contains(bookId) == isAvailable) {
+            return;
+        }
+        if (isAvailable) {
+            available.addLong(bookId);
+        } else {
+            available.removeLong(bookId);
+        }
+        record(bookId, isAvailable, atVersion);
+    }
+
+    private void record(long bookId, boolean isAvailable, long atVersion) {
+        version = atVersion;
+        changes.addLast(new Change(version, bookId, isAvailable));
+        if (changes.size() > changeLogSize) {
+            logStart = changes.removeFirst().version();
+        }
+    }
+}
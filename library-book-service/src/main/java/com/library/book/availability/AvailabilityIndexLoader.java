@@ -0,0 +1,104 @@
+package com.library.book.availability;
+
+import com.library.book.dto.BookChangeEventDTO;
+import com.library.book.entity.AvailabilityEpoch;
+import com.library.book.entity.Book;
+import com.library.book.search.CatalogFacetCounts;
+import lombok.RequiredArgsConstructor;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+@Component
+@RequiredArgsConstructor
+public class AvailabilityIndexLoader {
+
+    private static final String EPOCH_ID = "availability";
+    private static final Set<String> WHOLE_DOCUMENT = Set.of("insert", "replace");
+
+    private final MongoTemplate mongoTemplate;
+    private final AvailabilityIndex availabilityIndex;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        reloadQuietly();
+    }
+
+    // Corrects drift; on a standalone server also the only way to see other instances' changes
+    @Scheduled(initialDelayString = "${library.availability.reload-interval:300000}",
+            fixedDelayString = "${library.availability.reload-interval:300000}")
+    public void reloadQuietly() {
+        try {
+            reload();
+        } catch (Exception e) {
+            // Database not reachable, keep the incrementally maintained bitmap
+        }
+    }
+
+    public void reload() {
+        long clusterTime = clusterTime();
+        if (clusterTime > 0) {
+            availabilityIndex.followChangeStream(sharedEpoch());
+        }
+        long mark = availabilityIndex.version();
+        Query query = new Query(Criteria.where("availableCopies").gt(0));
+        query.fields().include("_id");
+        Roaring64NavigableMap loaded = new Roaring64NavigableMap();
+        try (Stream<Book> books = mongoTemplate.stream(query, Book.class)) {
+            books.forEach(book -> loaded.addLong(book.getId()));
+        }
+        availabilityIndex.reload(loaded, mark, clusterTime);
+    }
+
+    // Changes through any instance, including the sharded copy mirror written by the rebalance pass
+    @EventListener
+    public void onBookChanged(BookChangeEventDTO event) {
+        if (event.getBookId() == null) {
+            // Events were missed
+            reloadQuietly();
+            return;
+        }
+        if ("delete".equals(event.getOperation())) {
+            availabilityIndex.changed(event.getBookId(), false, event.getVersion());
+            return;
+        }
+        if (!WHOLE_DOCUMENT.contains(event.getOperation())
+                && !event.getChangedFields().contains("availableCopies")) {
+            return;
+        }
+        Query query = new Query(Criteria.where("_id").is(event.getBookId()));
+        query.fields().include("availableCopies");
+        Book book = mongoTemplate.findOne(query, Book.class);
+        availabilityIndex.changed(event.getBookId(), book != null && CatalogFacetCounts.isAvailable(book),
+                event.getVersion());
+    }
+
+    // Zero on a standalone server, which has no cluster time and no change stream
+    private long clusterTime() {
+        Document reply = mongoTemplate.executeCommand(new Document("ping", 1));
+        Object operationTime = reply.get("operationTime");
+        return operationTime instanceof BsonTimestamp ? ((BsonTimestamp) operationTime).getValue() : 0;
+    }
+
+    private String sharedEpoch() {
+        AvailabilityEpoch epoch = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(EPOCH_ID)),
+                new Update().setOnInsert("epoch", UUID.randomUUID().toString()).setOnInsert("createdAt", Instant.now()),
+                FindAndModifyOptions.options().upsert(true).returnNew(true), AvailabilityEpoch.class);
+        return epoch.getEpoch();
+    }
+}
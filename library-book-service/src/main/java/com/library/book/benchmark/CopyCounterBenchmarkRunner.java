@@ -0,0 +1,104 @@
+package com.library.book.benchmark;
+
+import com.library.book.dto.BookDTO;
+import com.library.book.service.BookService;
+import com.library.book.service.CopyShardService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Borrow throughput on a single hot title, plain counter against sharded counters, e.g.
+ * {@code java -jar library-book-service.jar --spring.main.web-application-type=none --benchmark-copy-counters
+ * --threads=1,4,16,64 --slots=16 --seconds=10}. Each operation borrows and returns one copy through
+ * the regular service path against the configured MongoDB, using a throwaway book. Exits when done.
+ */
+@Component
+@RequiredArgsConstructor
+public class CopyCounterBenchmarkRunner implements ApplicationRunner {
+
+    private static final String OPTION = "benchmark-copy-counters";
+    private static final int COPIES = 100_000;
+
+    private final BookService bookService;
+    private final CopyShardService copyShardService;
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!args.containsOption(OPTION)) {
+            return;
+        }
+        List<Integer> threadCounts = new ArrayList<>();
+        for (String count : option(args, "threads", "1,4,16,64").split(",")) {
+            threadCounts.add(Integer.parseInt(count.trim()));
+        }
+        int slots = Integer.parseInt(option(args, "slots", "16"));
+        long millis = Long.parseLong(option(args, "seconds", "10")) * 1000;
+
+        BookDTO book = new BookDTO();
+        book.setTitle("Copy counter benchmark");
+        book.setIsbn("BENCH-" + System.currentTimeMillis());
+        book.setTotalCopies(COPIES);
+        book.setAvailableCopies(COPIES);
+        Long bookId = bookService.createBook(book).getId();
+        try {
+            System.out.printf("%-10s %8s %14s%n", "counter", "threads", "borrows/s");
+            for (int threads : threadCounts) {
+                System.out.printf("%-10s %8d %14.0f%n", "plain", threads, measure(bookId, threads, millis));
+            }
+            copyShardService.enable(bookId, slots);
+            for (int threads : threadCounts) {
+                System.out.printf("%-10s %8d %14.0f%n", slots + " slots", threads, measure(bookId, threads, millis));
+            }
+            copyShardService.disable(bookId);
+        } finally {
+            bookService.deleteBook(bookId);
+        }
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    private double measure(Long bookId, int threads, long millis) throws InterruptedException {
+        LongAdder borrows = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>(threads);
+        long[] deadline = new long[1];
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.currentTimeMillis() < deadline[0]) {
+                    if (bookService.tryDecreaseAvailableCopies(bookId) != null) {
+                        borrows.increment();
+                        bookService.tryIncreaseAvailableCopies(bookId);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long begin = System.currentTimeMillis();
+        deadline[0] = begin + millis;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return borrows.sum() * 1000.0 / (System.currentTimeMillis() - begin);
+    }
+
+    private static String option(ApplicationArguments args, String name, String defaultValue) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(0);
+    }
+}
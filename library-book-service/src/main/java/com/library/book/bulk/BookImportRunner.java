@@ -0,0 +1,55 @@
+package com.library.book.bulk;
+
+import com.library.book.dto.BookImportReportDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * One-shot command line import, e.g.
+ * {@code java -jar library-book-service.jar --spring.main.web-application-type=none --import-books=catalog.csv}.
+ * Files ending in .csv are read as CSV, anything else as NDJSON. The application exits when done.
+ */
+@Component
+@RequiredArgsConstructor
+public class BookImportRunner implements ApplicationRunner {
+
+    private static final String OPTION = "import-books";
+
+    private final BookImportService bookImportService;
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!args.containsOption(OPTION)) {
+            return;
+        }
+        int exitCode = 0;
+        for (String file : args.getOptionValues(OPTION)) {
+            Path path = Path.of(file);
+            BookRowParser.Format format = file.toLowerCase().endsWith(".csv")
+                    ? BookRowParser.Format.CSV
+                    : BookRowParser.Format.NDJSON;
+            try (InputStream input = Files.newInputStream(path)) {
+                BookImportReportDTO report = bookImportService.importBooks(input, format);
+                System.out.println("Imported " + file + ": " + report.getImported() + " books, "
+                        + report.getFailed() + " rejected out of " + report.getProcessed()
+                        + " rows in " + report.getDurationMs() + " ms");
+                report.getErrors().forEach(error -> System.out.println(
+                        "  row " + error.getRow() + " [" + error.getIsbn() + "]: " + error.getMessage()));
+                if (report.getFailed() > 0) {
+                    exitCode = 2;
+                }
+            }
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+}
@@ -0,0 +1,171 @@
+package com.library.book.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.book.availability.AvailabilityIndex;
+import com.library.book.dto.BookDTO;
+import com.library.book.dto.BookImportErrorDTO;
+import com.library.book.dto.BookImportReportDTO;
+import com.library.book.entity.Book;
+import com.library.book.mapper.BookMapper;
+import com.library.book.search.BookSearchService;
+import com.library.book.search.BookSuggestionService;
+import com.library.book.search.CatalogFacetCounts;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@Service
+@RequiredArgsConstructor
+public class BookImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final BookMapper bookMapper;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final BookSearchService bookSearchService;
+    private final BookSuggestionService bookSuggestionService;
+    private final CatalogFacetCounts catalogFacetCounts;
+    private final AvailabilityIndex availabilityIndex;
+
+    @Value("${library.import.batch-size:1000}")
+    private int batchSize;
+
+    public BookImportReportDTO importBooks(InputStream input, BookRowParser.Format format) throws IOException {
+        long start = System.currentTimeMillis();
+        BookImportReportDTO report = new BookImportReportDTO();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        BookRowParser parser = new BookRowParser(reader, format, objectMapper);
+
+        List<Book> batch = new ArrayList<>(batchSize);
+        List<Long> rows = new ArrayList<>(batchSize);
+        String line;
+        while ((line = parser.nextLine()) != null) {
+            long row = parser.getRow();
+            report.setProcessed(report.getProcessed() + 1);
+            BookDTO bookDTO;
+            try {
+                bookDTO = parser.parse(line);
+            } catch (Exception e) {
+                reject(report, row, null, "Unreadable row: " + e.getMessage());
+                continue;
+            }
+            String violation = validate(bookDTO);
+            if (violation != null) {
+                reject(report, row, bookDTO.getIsbn(), violation);
+                continue;
+            }
+            Book book = bookMapper.toEntity(bookDTO);
+            book.setId(null);
+            batch.add(book);
+            rows.add(row);
+            if (batch.size() >= batchSize) {
+                flush(batch, rows, report);
+            }
+        }
+        flush(batch, rows, report);
+
+        report.setDurationMs(System.currentTimeMillis() - start);
+        return report;
+    }
+
+    private String validate(BookDTO bookDTO) {
+        if (bookDTO.getAvailableCopies() == null) {
+            bookDTO.setAvailableCopies(bookDTO.getTotalCopies());
+        }
+        Set<ConstraintViolation<BookDTO>> violations = validator.validate(bookDTO);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        if (bookDTO.getAvailableCopies() > bookDTO.getTotalCopies()) {
+            return "availableCopies: must not exceed total copies";
+        }
+        return null;
+    }
+
+    private void flush(List<Book> batch, List<Long> rows, BookImportReportDTO report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // ISBNs must stay unique, within the batch and against the catalog
+        Set<String> existing = existingIsbns(batch);
+        Set<String> seen = new HashSet<>();
+        List<Book> toInsert = new ArrayList<>(batch.size());
+        List<Long> insertRows = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Book book = batch.get(i);
+            if (existing.contains(book.getIsbn()) || !seen.add(book.getIsbn())) {
+                reject(report, rows.get(i), book.getIsbn(), "A book with this ISBN already exists");
+            } else {
+                toInsert.add(book);
+                insertRows.add(rows.get(i));
+            }
+        }
+        batch.clear();
+        rows.clear();
+        if (toInsert.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Book.class);
+        bulk.insert(toInsert);
+        try {
+            report.setImported(report.getImported() + bulk.execute().getInsertedCount());
+            toInsert.forEach(catalogFacetCounts::add);
+            toInsert.forEach(availabilityIndex::update);
+        } catch (BulkOperationException e) {
+            report.setImported(report.getImported() + e.getResult().getInsertedCount());
+            Set<Integer> failedIndexes = new HashSet<>();
+            for (BulkWriteError error : e.getErrors()) {
+                failedIndexes.add(error.getIndex());
+                Book book = toInsert.get(error.getIndex());
+                reject(report, insertRows.get(error.getIndex()), book.getIsbn(), error.getMessage());
+            }
+            // After-save events are not published for a failed bulk, index the rows that made it
+            for (int i = 0; i < toInsert.size(); i++) {
+                if (!failedIndexes.contains(i)) {
+                    bookSearchService.indexTerms(toInsert.get(i));
+                    bookSuggestionService.index(toInsert.get(i));
+                    catalogFacetCounts.add(toInsert.get(i));
+                    availabilityIndex.update(toInsert.get(i));
+                }
+            }
+        }
+    }
+
+    private Set<String> existingIsbns(List<Book> batch) {
+        Query query = new Query(where("isbn").in(batch.stream().map(Book::getIsbn).collect(Collectors.toSet())));
+        query.fields().include("isbn");
+        return mongoTemplate.find(query, Book.class).stream()
+                .map(Book::getIsbn)
+                .collect(Collectors.toSet());
+    }
+
+    private void reject(BookImportReportDTO report, long row, String isbn, String message) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add(new BookImportErrorDTO(row, isbn, message));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.library.book.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.book.dto.BookDTO;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads one book per line from CSV (with a header row) or NDJSON. Lines are parsed lazily so a
+ * malformed row only fails itself.
+ */
+public class BookRowParser {
+
+    public enum Format { CSV, NDJSON }
+
+    private final BufferedReader reader;
+    private final Format format;
+    private final ObjectMapper objectMapper;
+    private Map<String, Integer> columns;
+    private long lineNumber = 0;
+    private long row = 0;
+
+    public BookRowParser(BufferedReader reader, Format format, ObjectMapper objectMapper) throws IOException {
+        this.reader = reader;
+        this.format = format;
+        this.objectMapper = objectMapper;
+        if (format == Format.CSV) {
+            readHeader();
+        }
+    }
+
+    // Line number where the last returned record starts
+    public long getRow() {
+        return row;
+    }
+
+    // Next non-blank line, or null at the end of input
+    public String nextLine() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.isBlank());
+        row = lineNumber;
+        if (format == Format.CSV) {
+            // Quoted fields may span several lines
+            while (unbalancedQuotes(line)) {
+                String continuation = reader.readLine();
+                if (continuation == null) {
+                    break;
+                }
+                lineNumber++;
+                line = line + "\n" + continuation;
+            }
+        }
+        return line;
+    }
+
+    public BookDTO parse(String line) throws IOException {
+        if (format == Format.NDJSON) {
+            return objectMapper.readValue(line, BookDTO.class);
+        }
+        List<String> values = splitCsv(line);
+        BookDTO book = new BookDTO();
+        book.setTitle(value(values, "title"));
+        book.setIsbn(value(values, "isbn"));
+        book.setDescription(value(values, "description"));
+        book.setCategory(value(values, "category"));
+        String publicationDate = value(values, "publicationdate");
+        book.setPublicationDate(publicationDate != null ? LocalDate.parse(publicationDate) : null);
+        book.setTotalCopies(toInteger(value(values, "totalcopies")));
+        book.setAvailableCopies(toInteger(value(values, "availablecopies")));
+        String authorId = value(values, "authorid");
+        book.setAuthorId(authorId != null ? Long.valueOf(authorId) : null);
+        return book;
+    }
+
+    private void readHeader() throws IOException {
+        String header = nextLine();
+        if (header == null) {
+            throw new IOException("CSV input is empty, a header row is required");
+        }
+        columns = new HashMap<>();
+        List<String> names = splitCsv(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).strip().toLowerCase().replace("_", ""), i);
+        }
+        if (!columns.containsKey("title") || !columns.containsKey("isbn")) {
+            throw new IOException("CSV header must contain at least title and isbn columns");
+        }
+    }
+
+    private String value(List<String> values, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= values.size()) {
+            return null;
+        }
+        String value = values.get(index).strip();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Integer toInteger(String value) {
+        return value != null ? Integer.valueOf(value) : null;
+    }
+
+    private static boolean unbalancedQuotes(String line) {
+        long quotes = line.chars().filter(c -> c == '"').count();
+        return quotes % 2 != 0;
+    }
+
+    // RFC 4180 style: comma separated, double quotes around fields, "" for a literal quote
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+}
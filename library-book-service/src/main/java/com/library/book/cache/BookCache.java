@@ -0,0 +1,72 @@
+package com.library.book.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.book.dto.BookChangeEventDTO;
+import com.library.book.dto.BookDTO;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of books by ID. Entries carry an ETag computed once at load time, so
+ * conditional requests are answered without serializing the book again.
+ */
+@Component
+public class BookCache {
+
+    public static final String CACHE_NAME = "books";
+
+    private final Cache cache;
+    private final ObjectMapper objectMapper;
+
+    public BookCache(CacheManager cacheManager, ObjectMapper objectMapper) {
+        this.cache = cacheManager.getCache(CACHE_NAME);
+        this.objectMapper = objectMapper;
+    }
+
+    public record CachedBook(BookDTO book, String etag) {
+    }
+
+    public CachedBook get(Long id, Supplier<BookDTO> loader) {
+        try {
+            return cache.get(id, () -> toCachedBook(loader.get()));
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public void evict(Long id) {
+        cache.evict(id);
+    }
+
+    // Also covers writes made through other instances; an event without a book id is a reset
+    @EventListener
+    public void onBookChanged(BookChangeEventDTO event) {
+        if (event.getBookId() == null) {
+            cache.clear();
+        } else {
+            cache.evict(event.getBookId());
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private CachedBook toCachedBook(BookDTO book) {
+        try {
+            String etag = "\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(book)) + "\"";
+            return new CachedBook(book, etag);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot compute ETag for book " + book.getId(), e);
+        }
+    }
+}
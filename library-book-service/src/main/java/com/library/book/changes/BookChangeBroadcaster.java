@@ -0,0 +1,137 @@
+package com.library.book.changes;
+
+import com.library.book.dto.BookChangeBatchDTO;
+import com.library.book.dto.BookChangeEventDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Fans book change events out to SSE subscribers and to in-process listeners, which receive
+ * {@link BookChangeEventDTO} as a Spring application event. The most recent events are kept so
+ * subscribers can catch up from the last version they saw. Versions are ordered but not dense,
+ * so the buffer remembers the version up to which it may have lost events.
+ */
+@Component
+public class BookChangeBroadcaster {
+
+    public static final String EVENT_NAME = "book-change";
+    public static final String RESET_EVENT_NAME = "reset";
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final int bufferSize;
+    private final ArrayDeque<BookChangeEventDTO> recent = new ArrayDeque<>();
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private long version;
+    // Every event after this version is in the buffer
+    private long floor;
+
+    public BookChangeBroadcaster(ApplicationEventPublisher eventPublisher,
+                                 @Value("${library.changes.buffer-size:10000}") int bufferSize) {
+        this.eventPublisher = eventPublisher;
+        this.bufferSize = bufferSize;
+    }
+
+    // Continues from the persisted offset; events up to it were delivered before the restart
+    public synchronized void startAt(long lastVersion) {
+        version = Math.max(version, lastVersion);
+        if (recent.isEmpty()) {
+            floor = version;
+        }
+    }
+
+    // Events were lost: drops the buffer, tells subscribers to reset and in-process listeners to
+    // forget what they cached, with a change event that has no book id
+    public void reset(long lastVersion) {
+        BookChangeEventDTO event = new BookChangeEventDTO(lastVersion, null, RESET_EVENT_NAME, List.of(), Instant.now());
+        synchronized (this) {
+            recent.clear();
+            version = lastVersion;
+            floor = lastVersion;
+        }
+        eventPublisher.publishEvent(event);
+        for (SseEmitter emitter : emitters) {
+            sendReset(emitter, lastVersion);
+        }
+    }
+
+    public void publish(BookChangeEventDTO event) {
+        synchronized (this) {
+            // Replayed after a reconnect: already delivered
+            if (event.getVersion() <= version) {
+                return;
+            }
+            version = event.getVersion();
+            recent.addLast(event);
+            if (recent.size() > bufferSize) {
+                floor = recent.removeFirst().getVersion();
+            }
+        }
+        eventPublisher.publishEvent(event);
+        for (SseEmitter emitter : emitters) {
+            send(emitter, event);
+        }
+    }
+
+    public synchronized BookChangeBatchDTO changesSince(long since) {
+        if (since < floor) {
+            return new BookChangeBatchDTO(version, true, List.of());
+        }
+        List<BookChangeEventDTO> events = new ArrayList<>();
+        for (BookChangeEventDTO event : recent) {
+            if (event.getVersion() > since) {
+                events.add(event);
+            }
+        }
+        return new BookChangeBatchDTO(version, false, events);
+    }
+
+    public SseEmitter subscribe(Long lastVersion) {
+        SseEmitter emitter = new SseEmitter(0L);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(error -> emitters.remove(emitter));
+        // Replay under the lock so no event slips between the catch-up and the live feed
+        synchronized (this) {
+            if (lastVersion != null) {
+                BookChangeBatchDTO missed = changesSince(lastVersion);
+                if (missed.isResetRequired()) {
+                    sendReset(emitter, missed.getVersion());
+                }
+                missed.getEvents().forEach(event -> send(emitter, event));
+            }
+            emitters.add(emitter);
+        }
+        return emitter;
+    }
+
+    private void send(SseEmitter emitter, BookChangeEventDTO event) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .id(Long.toString(event.getVersion()))
+                    .name(EVENT_NAME)
+                    .data(event));
+        } catch (IOException | IllegalStateException e) {
+            emitters.remove(emitter);
+        }
+    }
+
+    private void sendReset(SseEmitter emitter, long currentVersion) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .id(Long.toString(currentVersion))
+                    .name(RESET_EVENT_NAME)
+                    .data(currentVersion));
+        } catch (IOException | IllegalStateException e) {
+            emitters.remove(emitter);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.library.book.changes;
+
+import com.library.book.dto.BookChangeEventDTO;
+import com.library.book.entity.Book;
+import com.library.book.entity.ChangeStreamOffset;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tails the change stream of the books collection on a background thread and hands compact
+ * events to the {@link BookChangeBroadcaster}. Every instance runs its own watcher, so each one
+ * sees writes made through the others. An event's version is its cluster time, which is the same
+ * on every instance, and each instance checkpoints its resume token to its own offset document,
+ * so after a restart the stream resumes where that instance left off. Delivery is at least once.
+ * If the oplog no longer holds the checkpoint, the offset is dropped, the stream restarts from
+ * now and subscribers are told to reset. Change streams need a replica set; on a standalone
+ * server the watcher keeps retrying.
+ */
+@Component
+public class BookChangeStreamWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookChangeStreamWatcher.class);
+
+    private static final long RETRY_DELAY_MILLIS = 30_000;
+    // ChangeStreamHistoryLost, and ChangeStreamFatalError on servers before 4.2
+    private static final int HISTORY_LOST = 286;
+    private static final int FATAL_ERROR = 280;
+
+    private final MongoTemplate mongoTemplate;
+    private final BookChangeBroadcaster broadcaster;
+    private final boolean enabled;
+    private final int checkpointEvery;
+    private final String collection;
+    private final String offsetId;
+
+    private volatile boolean running;
+    private volatile boolean resetPending;
+    private Thread thread;
+
+    public BookChangeStreamWatcher(MongoTemplate mongoTemplate, BookChangeBroadcaster broadcaster,
+                                   @Value("${library.changes.enabled:true}") boolean enabled,
+                                   @Value("${library.changes.checkpoint-every:100}") int checkpointEvery,
+                                   @Value("${library.changes.instance-id:}") String instanceId) {
+        this.mongoTemplate = mongoTemplate;
+        this.broadcaster = broadcaster;
+        this.enabled = enabled;
+        this.checkpointEvery = checkpointEvery;
+        this.collection = mongoTemplate.getCollectionName(Book.class);
+        this.offsetId = collection + ":" + (instanceId.isBlank() ? hostName() : instanceId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "book-change-stream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private void run() {
+        boolean warned = false;
+        while (running) {
+            try {
+                watch();
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                if (isHistoryLost(e)) {
+                    // Events between the checkpoint and now are gone, restart from now right away
+                    logger.warn("Book change stream cannot resume from its checkpoint, restarting from now: {}",
+                            e.getMessage());
+                    mongoTemplate.remove(new Query(Criteria.where("_id").is(offsetId)), ChangeStreamOffset.class);
+                    resetPending = true;
+                    continue;
+                }
+                if (!warned) {
+                    logger.warn("Book change stream unavailable, retrying every {} s: {}",
+                            RETRY_DELAY_MILLIS / 1000, e.getMessage());
+                    warned = true;
+                }
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void watch() {
+        ChangeStreamOffset offset = mongoTemplate.findById(offsetId, ChangeStreamOffset.class);
+        ChangeStreamIterable<Document> stream = mongoTemplate.getCollection(collection)
+                .watch(List.of(Aggregates.match(Filters.in("operationType", "insert", "update", "replace", "delete"))))
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        long version;
+        if (offset != null && offset.getResumeToken() != null) {
+            version = offset.getVersion();
+            stream = stream.startAfter(new BsonDocument("_data", new BsonString(offset.getResumeToken())));
+            broadcaster.startAt(version);
+        } else {
+            // Everything from this cluster time on is delivered
+            BsonTimestamp now = operationTime();
+            version = version(now) - 1;
+            stream = stream.startAtOperationTime(now);
+            if (resetPending) {
+                broadcaster.reset(version);
+                resetPending = false;
+            } else {
+                broadcaster.startAt(version);
+            }
+        }
+
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+            BsonDocument pendingToken = null;
+            int sinceCheckpoint = 0;
+            while (running) {
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                if (change == null) {
+                    // Idle: a good moment to checkpoint
+                    if (pendingToken != null) {
+                        checkpoint(pendingToken, version);
+                        pendingToken = null;
+                        sinceCheckpoint = 0;
+                    }
+                    continue;
+                }
+                version = version(change.getClusterTime());
+                broadcaster.publish(toEvent(change, version));
+                pendingToken = change.getResumeToken();
+                if (++sinceCheckpoint >= checkpointEvery) {
+                    checkpoint(pendingToken, version);
+                    pendingToken = null;
+                    sinceCheckpoint = 0;
+                }
+            }
+            if (pendingToken != null) {
+                checkpoint(pendingToken, version);
+            }
+        }
+    }
+
+    private void checkpoint(BsonDocument token, long version) {
+        mongoTemplate.save(new ChangeStreamOffset(offsetId, token.getString("_data").getValue(), version,
+                Instant.now()));
+    }
+
+    // Seconds in the high half, the ordinal within the second in the low half: ordered like the oplog
+    private static long version(BsonTimestamp clusterTime) {
+        return clusterTime.getValue();
+    }
+
+    private BsonTimestamp operationTime() {
+        Document reply = mongoTemplate.executeCommand(new Document("ping", 1));
+        Object operationTime = reply.get("operationTime");
+        if (!(operationTime instanceof BsonTimestamp)) {
+            throw new IllegalStateException("Server reports no operation time, change streams need a replica set");
+        }
+        return (BsonTimestamp) operationTime;
+    }
+
+    private static boolean isHistoryLost(Exception e) {
+        return e instanceof MongoException mongoException
+                && (mongoException.getCode() == HISTORY_LOST || mongoException.getCode() == FATAL_ERROR);
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    private BookChangeEventDTO toEvent(ChangeStreamDocument<Document> change, long version) {
+        Long bookId = change.getDocumentKey().get("_id").asNumber().longValue();
+        List<String> changedFields = new ArrayList<>();
+        UpdateDescription update = change.getUpdateDescription();
+        if (update != null) {
+            if (update.getUpdatedFields() != null) {
+                changedFields.addAll(update.getUpdatedFields().keySet());
+            }
+            if (update.getRemovedFields() != null) {
+                changedFields.addAll(update.getRemovedFields());
+            }
+        } else if (change.getFullDocument() != null) {
+            change.getFullDocument().keySet().stream()
+                    .filter(field -> !"_id".equals(field) && !"_class".equals(field))
+                    .forEach(changedFields::add);
+        }
+        Instant occurredAt = change.getWallTime() != null
+                ? Instant.ofEpochMilli(change.getWallTime().getValue())
+                : Instant.now();
+        return new BookChangeEventDTO(version, bookId, change.getOperationTypeString(), changedFields, occurredAt);
+    }
+}
@@ -1,16 +1,51 @@
 package com.library.book.controller;
 
+import com.library.book.availability.AvailabilityIndex;
+import com.library.book.cache.BookCache;
+import com.library.book.dto.AuthorBookCountDTO;
+import com.library.book.dto.AuthorNameDTO;
+import com.library.book.changes.BookChangeBroadcaster;
+import com.library.book.dto.AvailabilityDeltaDTO;
+import com.library.book.dto.AvailabilitySnapshotDTO;
+import com.library.book.dto.BookBatchRequestDTO;
+import com.library.book.dto.BookChangeBatchDTO;
+import com.library.book.dto.CursorPageDTO;
+import com.library.book.bulk.BookImportService;
+import com.library.book.bulk.BookRowParser;
 import com.library.book.dto.BookDTO;
+import com.library.book.dto.BookImportReportDTO;
+import com.library.book.dto.BookSearchResultDTO;
 import com.library.book.dto.BookWithAuthorDTO;
+import com.library.book.dto.CopyBatchRequestDTO;
+import com.library.book.dto.CopyHoldDTO;
+import com.library.book.dto.CopyReservationDTO;
+import com.library.book.dto.CopyReturnResultDTO;
+import com.library.book.dto.CopyShardStatusDTO;
+import com.library.book.dto.FacetedSearchResultDTO;
+import com.library.book.dto.ReservationBatchRequestDTO;
+import com.library.book.dto.SuggestionDTO;
+import com.library.book.reservation.CopyHoldService;
+import com.library.book.search.BookFacetService;
+import com.library.book.search.BookSearchService;
+import com.library.book.search.BookSuggestionService;
+import com.library.book.service.AuthorNameService;
 import com.library.book.service.BookService;
+import com.library.book.service.CopyShardService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -20,6 +55,15 @@ import java.util.List;
 public class BookController {
 
     private final BookService bookService;
+    private final BookImportService bookImportService;
+    private final BookSearchService bookSearchService;
+    private final BookFacetService bookFacetService;
+    private final BookSuggestionService bookSuggestionService;
+    private final AuthorNameService authorNameService;
+    private final AvailabilityIndex availabilityIndex;
+    private final CopyShardService copyShardService;
+    private final CopyHoldService copyHoldService;
+    private final BookChangeBroadcaster bookChangeBroadcaster;
 
     @PostMapping
     @Operation(summary = "Create a new book")
@@ -28,11 +72,27 @@ public class BookController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Bulk import books from a CSV (with header row) or NDJSON body")
+    public ResponseEntity<BookImportReportDTO> importBooks(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body
+    ) throws IOException {
+        BookRowParser.Format format = contentType.isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                ? BookRowParser.Format.NDJSON
+                : BookRowParser.Format.CSV;
+        BookImportReportDTO report = bookImportService.importBooks(body, format);
+        return ResponseEntity.ok(report);
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get book by ID")
-    public ResponseEntity<BookDTO> getBookById(@PathVariable("id") Long id) {
-        BookDTO book = bookService.getBookById(id);
-        return ResponseEntity.ok(book);
+    public ResponseEntity<BookDTO> getBookById(@PathVariable("id") Long id, WebRequest request) {
+        BookCache.CachedBook cached = bookService.getCachedBook(id);
+        if (request.checkNotModified(cached.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(cached.etag()).build();
+        }
+        return ResponseEntity.ok().eTag(cached.etag()).body(cached.book());
     }
 
     @GetMapping("/{id}/with-author")
@@ -42,6 +102,13 @@ public class BookController {
         return ResponseEntity.ok(book);
     }
 
+    @PostMapping("/batch")
+    @Operation(summary = "Get several books by ID in one call, with an optional field projection")
+    public ResponseEntity<List<BookDTO>> getBooksByIds(@Valid @RequestBody BookBatchRequestDTO request) {
+        List<BookDTO> books = bookService.getBooksByIds(request.getIds(), request.getFields());
+        return ResponseEntity.ok(books);
+    }
+
     @GetMapping
     @Operation(summary = "Get all books")
     public ResponseEntity<List<BookDTO>> getAllBooks() {
@@ -49,6 +116,23 @@ public class BookController {
         return ResponseEntity.ok(books);
     }
 
+    @GetMapping(params = "limit")
+    @Operation(summary = "Get books one keyset page at a time, ordered by ID")
+    public ResponseEntity<CursorPageDTO<BookDTO>> getBooksPage(
+            @RequestParam(name = "after", required = false) Long after,
+            @RequestParam(name = "limit") int limit
+    ) {
+        CursorPageDTO<BookDTO> page = bookService.getBooksPage(after, limit);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream all books as NDJSON straight from the database cursor")
+    public ResponseEntity<StreamingResponseBody> streamAllBooks() {
+        StreamingResponseBody body = bookService::streamAllBooks;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "Update book")
     public ResponseEntity<BookDTO> updateBook(
@@ -77,6 +161,41 @@ public class BookController {
         return ResponseEntity.ok(books);
     }
 
+    @GetMapping(value = "/search", params = "q")
+    @Operation(summary = "Full-text search on title and description, typo tolerant and ranked by relevance")
+    public ResponseEntity<BookSearchResultDTO> fullTextSearch(
+            @RequestParam(name = "q") String query,
+            @RequestParam(name = "page", defaultValue = "0") int page,
+            @RequestParam(name = "size", defaultValue = "20") int size
+    ) {
+        BookSearchResultDTO result = bookSearchService.search(query, page, size);
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping("/search/faceted")
+    @Operation(summary = "Search books with combined filters, returning category and availability counts")
+    public ResponseEntity<FacetedSearchResultDTO> facetedSearch(
+            @RequestParam(name = "q", required = false) String query,
+            @RequestParam(name = "category", required = false) String category,
+            @RequestParam(name = "authorId", required = false) Long authorId,
+            @RequestParam(name = "available", required = false) Boolean available,
+            @RequestParam(name = "page", defaultValue = "0") int page,
+            @RequestParam(name = "size", defaultValue = "20") int size
+    ) {
+        FacetedSearchResultDTO result = bookFacetService.search(query, category, authorId, available, page, size);
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping("/suggest")
+    @Operation(summary = "Suggest book titles matching a prefix, most popular first")
+    public ResponseEntity<List<SuggestionDTO>> suggestTitles(
+            @RequestParam(name = "q") String prefix,
+            @RequestParam(name = "limit", defaultValue = "10") int limit
+    ) {
+        List<SuggestionDTO> suggestions = bookSuggestionService.suggest(prefix, limit);
+        return ResponseEntity.ok(suggestions);
+    }
+
     @PutMapping("/{id}/decrease-copies")
     @Operation(summary = "Decrease available copies (internal use)")
     public ResponseEntity<Void> decreaseAvailableCopies(@PathVariable("id") Long id) {
@@ -84,6 +203,50 @@ public class BookController {
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/{id}/reserve-copy")
+    @Operation(summary = "Hold one copy until the returned token is confirmed or expires (internal use)")
+    public ResponseEntity<CopyReservationDTO> reserveCopy(@PathVariable("id") Long id) {
+        CopyReservationDTO reservation = copyHoldService.reserve(id);
+        return ResponseEntity.ok(reservation);
+    }
+
+    @PostMapping("/reserve-copies")
+    @Operation(summary = "Hold several copies in one call, with one result and token per copy (internal use)")
+    public ResponseEntity<List<CopyReservationDTO>> reserveCopies(@Valid @RequestBody CopyBatchRequestDTO request) {
+        List<CopyReservationDTO> reservations = copyHoldService.reserveAll(request.getBookIds());
+        return ResponseEntity.ok(reservations);
+    }
+
+    @PostMapping("/reservations/confirm")
+    @Operation(summary = "Confirm several copy reservations in one call (internal use)")
+    public ResponseEntity<List<CopyHoldDTO>> confirmReservations(@Valid @RequestBody ReservationBatchRequestDTO request) {
+        return ResponseEntity.ok(copyHoldService.confirmAll(request.getTokens()));
+    }
+
+    @PostMapping("/reservations/release")
+    @Operation(summary = "Release several copy reservations in one call (internal use)")
+    public ResponseEntity<List<CopyHoldDTO>> releaseReservations(@Valid @RequestBody ReservationBatchRequestDTO request) {
+        return ResponseEntity.ok(copyHoldService.releaseAll(request.getTokens()));
+    }
+
+    @GetMapping("/reservations/{token}")
+    @Operation(summary = "Get the state of a copy reservation (internal use)")
+    public ResponseEntity<CopyHoldDTO> getReservation(@PathVariable("token") String token) {
+        return ResponseEntity.ok(copyHoldService.getHold(token));
+    }
+
+    @PostMapping("/reservations/{token}/confirm")
+    @Operation(summary = "Confirm a copy reservation before it expires (internal use)")
+    public ResponseEntity<CopyHoldDTO> confirmReservation(@PathVariable("token") String token) {
+        return ResponseEntity.ok(copyHoldService.confirm(token));
+    }
+
+    @PostMapping("/reservations/{token}/release")
+    @Operation(summary = "Release a copy reservation and put the copy back (internal use)")
+    public ResponseEntity<CopyHoldDTO> releaseReservation(@PathVariable("token") String token) {
+        return ResponseEntity.ok(copyHoldService.release(token));
+    }
+
     @PutMapping("/{id}/increase-copies")
     @Operation(summary = "Increase available copies (internal use)")
     public ResponseEntity<Void> increaseAvailableCopies(@PathVariable("id") Long id) {
@@ -91,10 +254,91 @@ public class BookController {
         return ResponseEntity.ok().build();
     }
 
+    @PutMapping("/increase-copies")
+    @Operation(summary = "Increase available copies of several books in one call (internal use)")
+    public ResponseEntity<List<CopyReturnResultDTO>> increaseAvailableCopies(
+            @Valid @RequestBody CopyBatchRequestDTO request) {
+        List<CopyReturnResultDTO> results = bookService.increaseAvailableCopies(request.getBookIds());
+        return ResponseEntity.ok(results);
+    }
+
+    @PutMapping("/author-name")
+    @Operation(summary = "Update the author name denormalized on the author's books (internal use)")
+    public ResponseEntity<Long> updateAuthorName(@Valid @RequestBody AuthorNameDTO authorNameDTO) {
+        long updated = authorNameService.applyAuthorName(authorNameDTO.getAuthorId(), authorNameDTO.getAuthorName());
+        return ResponseEntity.ok(updated);
+    }
+
+    @GetMapping("/author-counts")
+    @Operation(summary = "Number of books per author, used to rank author suggestions (internal use)")
+    public ResponseEntity<List<AuthorBookCountDTO>> getBookCountsByAuthor() {
+        return ResponseEntity.ok(bookService.countBooksByAuthor());
+    }
+
+    @PostMapping("/author-name/backfill")
+    @Operation(summary = "Fill in missing author names, or resync all of them with full=true")
+    public ResponseEntity<Long> backfillAuthorNames(@RequestParam(name = "full", defaultValue = "false") boolean full) {
+        long updated = authorNameService.backfill(full);
+        return ResponseEntity.ok(updated);
+    }
+
     @GetMapping("/{id}/check-availability")
     @Operation(summary = "Check if book is available (internal use)")
-    public ResponseEntity<Boolean> checkAvailability(@PathVariable("id") Long id) {
-        boolean available = bookService.isBookAvailable(id);
-        return ResponseEntity.ok(available);
+    public ResponseEntity<Boolean> checkAvailability(@PathVariable("id") Long id, WebRequest request) {
+        BookCache.CachedBook cached = bookService.getCachedBook(id);
+        // Same book version, different representation: derive a distinct tag
+        String etag = cached.etag().replaceFirst("\"$", "-availability\"");
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(cached.book().getAvailableCopies() > 0);
+    }
+
+    @GetMapping("/availability")
+    @Operation(summary = "Compressed bitmap of available book IDs with its version (internal use)")
+    public ResponseEntity<AvailabilitySnapshotDTO> getAvailabilitySnapshot() {
+        return ResponseEntity.ok(availabilityIndex.snapshot());
+    }
+
+    @GetMapping("/availability/changes")
+    @Operation(summary = "Availability changes since a snapshot version (internal use)")
+    public ResponseEntity<AvailabilityDeltaDTO> getAvailabilityChanges(
+            @RequestParam(name = "epoch") String epoch,
+            @RequestParam(name = "since") long since
+    ) {
+        return ResponseEntity.ok(availabilityIndex.changesSince(epoch, since));
+    }
+
+    @GetMapping("/{id}/copy-shards")
+    @Operation(summary = "Show how the copies of a book are spread over counter slots")
+    public ResponseEntity<CopyShardStatusDTO> getCopyShards(@PathVariable("id") Long id) {
+        return ResponseEntity.ok(copyShardService.getStatus(id));
+    }
+
+    @PostMapping("/{id}/copy-shards")
+    @Operation(summary = "Count the copies of a hot title in several slots to spread concurrent borrows")
+    public ResponseEntity<CopyShardStatusDTO> enableCopyShards(
+            @PathVariable("id") Long id,
+            @RequestParam(name = "slots", defaultValue = "8") int slots
+    ) {
+        return ResponseEntity.ok(copyShardService.enable(id, slots));
+    }
+
+    @DeleteMapping("/{id}/copy-shards")
+    @Operation(summary = "Merge the copy slots of a book back into the book document")
+    public ResponseEntity<CopyShardStatusDTO> disableCopyShards(@PathVariable("id") Long id) {
+        return ResponseEntity.ok(copyShardService.disable(id));
+    }
+
+    @GetMapping("/changes")
+    @Operation(summary = "Book change events after a version, for cache invalidation (internal use)")
+    public ResponseEntity<BookChangeBatchDTO> getChanges(@RequestParam(name = "since") long since) {
+        return ResponseEntity.ok(bookChangeBroadcaster.changesSince(since));
+    }
+
+    @GetMapping(value = "/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Live feed of book change events, resuming after the Last-Event-ID version (internal use)")
+    public SseEmitter streamChanges(@RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        return bookChangeBroadcaster.subscribe(lastEventId);
     }
 }
@@ -0,0 +1,13 @@
+package com.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthorBookCountDTO {
+    private Long authorId;
+    private long count;
+}
@@ -0,0 +1,16 @@
+package com.library.book.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthorNameDTO {
+    @NotNull(message = "Author ID is required")
+    private Long authorId;
+
+    private String authorName;
+}
@@ -0,0 +1,18 @@
+package com.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityDeltaDTO {
+    private String epoch;
+    private long version;
+    private boolean fullSnapshotRequired;
+    private List<Long> available;
+    private List<Long> unavailable;
+}
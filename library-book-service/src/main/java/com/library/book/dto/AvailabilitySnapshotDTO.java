@@ -0,0 +1,16 @@
+package com.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilitySnapshotDTO {
+    private String epoch;
+    private long version;
+    private long availableCount;
+    // Roaring64NavigableMap in portable serialization format, base64 in JSON
+    private byte[] bitmap;
+}
@@ -0,0 +1,21 @@
+package com.library.book.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBatchRequestDTO {
+    @NotEmpty(message = "At least one book ID is required")
+    @Size(max = 1000, message = "No more than 1000 book IDs per batch")
+    private List<Long> ids;
+
+    // Optional projection, e.g. ["title", "category"]; the ID is always returned
+    private List<String> fields;
+}
@@ -0,0 +1,17 @@
+package com.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookChangeBatchDTO {
+    private long version;
+    // The requested version is older than the retained events, drop cached book data
+    private boolean resetRequired;
+    private List<BookChangeEventDTO> events;
+}
@@ -0,0 +1,19 @@
+package com.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookChangeEventDTO {
+    private long version;
+    private Long bookId;
+    private String operation;
+    private List<String> changedFields;
+    private Instant occurredAt;
+}
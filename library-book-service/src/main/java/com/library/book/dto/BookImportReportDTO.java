@@ -0,0 +1,19 @@
+package com.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportReportDTO {
+    private long processed;
+    private long imported;
+    private long failed;
+    private long durationMs;
+    private List<BookImportErrorDTO> errors = new ArrayList<>(); // first errors only, see failed for the total
+}
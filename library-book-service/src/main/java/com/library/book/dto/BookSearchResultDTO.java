@@ -0,0 +1,19 @@
+package com.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSearchResultDTO {
+    private String query;
+    private String correctedQuery;
+    private int page;
+    private int size;
+    private boolean hasMore;
+    private List<BookSearchHitDTO> results;
+}
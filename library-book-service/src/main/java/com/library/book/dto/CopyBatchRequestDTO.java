@@ -0,0 +1,19 @@
+package com.library.book.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CopyBatchRequestDTO {
+    // One entry per copy, a book ID may repeat to take several copies of the same title
+    @NotEmpty(message = "At least one book ID is required")
+    @Size(max = 100, message = "No more than 100 copies per batch")
+    private List<Long> bookIds;
+}
@@ -0,0 +1,20 @@
+package com.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CopyReservationDTO {
+    private Long bookId;
+    private boolean reserved;
+    private Integer availableCopies;
+    private String message;
+    // Hold to confirm before expiresAt, or the copy goes back on the shelf
+    private String token;
+    private Instant expiresAt;
+}
@@ -0,0 +1,17 @@
+package com.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CopyShardStatusDTO {
+    private Long bookId;
+    private Integer slots;
+    private Integer availableCopies;
+    private List<Integer> availablePerSlot;
+}
@@ -0,0 +1,19 @@
+package com.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetedSearchResultDTO {
+    private int page;
+    private int size;
+    private long total;
+    private List<BookDTO> results;
+    private List<FacetCountDTO> categories;
+    private List<FacetCountDTO> availability;
+}
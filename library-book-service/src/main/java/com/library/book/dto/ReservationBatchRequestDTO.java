@@ -0,0 +1,18 @@
+package com.library.book.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationBatchRequestDTO {
+    @NotEmpty(message = "At least one reservation token is required")
+    @Size(max = 100, message = "No more than 100 reservation tokens per batch")
+    private List<String> tokens;
+}
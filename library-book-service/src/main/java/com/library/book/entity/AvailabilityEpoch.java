@@ -0,0 +1,24 @@
+package com.library.book.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Document(collection = "availability_epochs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityEpoch {
+    // Name of the index the epoch belongs to
+    @Id
+    private String id;
+
+    // Shared by every instance, so a caller can move between them without a full snapshot
+    private String epoch;
+
+    private Instant createdAt;
+}
@@ -35,4 +35,10 @@ public class Book {
 
     @Indexed
     private Long authorId;
+
+    // Number of copy counter slots for hot titles, null when copies are counted on this document
+    private Integer copyShards;
+
+    // Denormalized author display name, kept in sync by the author service
+    private String authorName;
 }
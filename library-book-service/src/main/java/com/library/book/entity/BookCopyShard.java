@@ -0,0 +1,33 @@
+package com.library.book.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.index.Indexed;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Document(collection = "book_copy_shards")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookCopyShard {
+    @Id
+    private String id; // "<bookId>:<slot>"
+
+    @Indexed
+    private Long bookId;
+
+    private Integer slot;
+
+    private Integer availableCopies;
+
+    // Copies owned by this slot, on the shelf or on loan; 0 once the slot is drained
+    private Integer capacity;
+
+    // Copies taken from this slot by a rebalance and not yet added to the receiving slot
+    private ShardMove pendingMove;
+
+    // Last rebalance move added to this slot, so a move is never applied twice
+    private String lastMove;
+}
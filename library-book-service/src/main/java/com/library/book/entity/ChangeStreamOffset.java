@@ -0,0 +1,25 @@
+package com.library.book.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Document(collection = "change_stream_offsets")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeStreamOffset {
+    @Id
+    private String id; // "<watched collection>:<instance>"
+
+    private String resumeToken;
+
+    // Version given to the event the token points at
+    private long version;
+
+    private Instant updatedAt;
+}
@@ -0,0 +1,27 @@
+package com.library.book.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Document(collection = "copy_holds")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CopyHold {
+    @Id
+    private String token;
+
+    private Long bookId;
+
+    private HoldStatus status;
+
+    private Instant expiresAt;
+
+    // Set once the hold is settled, a TTL index removes the record at that time
+    private Instant purgeAt;
+}
@@ -0,0 +1,5 @@
+package com.library.book.entity;
+
+public enum HoldStatus {
+    HELD, CONFIRMED, RELEASED, EXPIRED
+}
@@ -0,0 +1,24 @@
+package com.library.book.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Document(collection = "scheduler_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchedulerLease {
+    // Name of the job the lease guards
+    @Id
+    private String name;
+
+    // Instance currently holding the lease
+    private String owner;
+
+    private Instant lockedUntil;
+}
@@ -0,0 +1,17 @@
+package com.library.book.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardMove {
+    private String moveId;
+
+    // Slot the copies go to
+    private String to;
+
+    private Integer copies;
+}
@@ -0,0 +1,9 @@
+package com.library.book.exception;
+
+// A copy count change that clashes with the book's copy sharding state or a rebalance in progress
+public class CopyChangeConflictException extends RuntimeException {
+
+    public CopyChangeConflictException(String message) {
+        super(message);
+    }
+}
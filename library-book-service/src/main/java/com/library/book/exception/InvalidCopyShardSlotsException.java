@@ -0,0 +1,9 @@
+package com.library.book.exception;
+
+// A copy sharding request with a slot count outside the supported range
+public class InvalidCopyShardSlotsException extends RuntimeException {
+
+    public InvalidCopyShardSlotsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.library.book.exception;
+
+// A confirmation for a reservation that was already released or expired
+public class ReservationNotConfirmableException extends RuntimeException {
+
+    public ReservationNotConfirmableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.library.book.exception;
+
+// A field projection naming something that is not a property of a book
+public class UnknownBookFieldException extends RuntimeException {
+
+    public UnknownBookFieldException(String message) {
+        super(message);
+    }
+}
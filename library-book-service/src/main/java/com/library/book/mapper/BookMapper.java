@@ -13,10 +13,11 @@ public interface BookMapper {
     BookMapper INSTANCE = Mappers.getMapper(BookMapper.class);
 
     BookDTO toDTO(Book book);
+    @org.mapstruct.Mapping(target = "authorName", ignore = true)
+    @org.mapstruct.Mapping(target = "copyShards", ignore = true)
     Book toEntity(BookDTO bookDTO);
     List<BookDTO> toDTOList(List<Book> books);
     
-    @org.mapstruct.Mapping(target = "authorName", ignore = true)
     BookWithAuthorDTO toBookWithAuthorDTO(Book book);
 }
 
@@ -1,12 +1,14 @@
 package com.library.book.repository;
 
 import com.library.book.entity.Book;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookRepository extends MongoRepository<Book, Long> {
@@ -19,4 +21,8 @@ public interface BookRepository extends MongoRepository<Book, Long> {
     List<Book> searchByCategory(String category);
 
     List<Book> findByAuthorId(Long authorId);
+
+    List<Book> findByIdGreaterThanOrderByIdAsc(Long after, Pageable pageable);
+
+    Stream<Book> streamAllByOrderByIdAsc();
 }
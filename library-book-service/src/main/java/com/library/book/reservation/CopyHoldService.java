@@ -0,0 +1,257 @@
+package com.library.book.reservation;
+
+import com.library.book.dto.CopyHoldDTO;
+import com.library.book.dto.CopyReservationDTO;
+import com.library.book.entity.Book;
+import com.library.book.entity.CopyHold;
+import com.library.book.entity.HoldStatus;
+import com.library.book.exception.ReservationNotConfirmableException;
+import com.library.book.repository.BookRepository;
+import com.library.book.service.BookService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Time-boxed copy reservations. Reserving takes a copy and records a hold that has to be
+ * confirmed before it expires; an expired or released hold puts the copy back. Holds taken on
+ * this instance expire from a timing wheel, holds left behind by other or crashed instances are
+ * picked up by a sweep over the (status, expiresAt) index. Every transition is a conditional
+ * update on the hold, so a copy is returned at most once whatever races between confirm,
+ * release and expiry.
+ */
+@Service
+public class CopyHoldService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CopyHoldService.class);
+
+    private static final int WHEEL_SIZE = 512;
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final BookService bookService;
+    private final BookRepository bookRepository;
+    private final Duration holdTtl;
+    private final Duration retention;
+    private final TimingWheel<String> expiries;
+
+    public CopyHoldService(MongoTemplate mongoTemplate, BookService bookService, BookRepository bookRepository,
+                           @Value("${library.reservations.hold-ttl:30000}") long holdTtlMillis,
+                           @Value("${library.reservations.retention:86400000}") long retentionMillis,
+                           @Value("${library.reservations.tick:100}") long tickMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.bookService = bookService;
+        this.bookRepository = bookRepository;
+        this.holdTtl = Duration.ofMillis(holdTtlMillis);
+        this.retention = Duration.ofMillis(retentionMillis);
+        this.expiries = new TimingWheel<>(tickMillis, WHEEL_SIZE, System.currentTimeMillis());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            mongoTemplate.indexOps(CopyHold.class).ensureIndex(new Index()
+                    .on("status", Sort.Direction.ASC)
+                    .on("expiresAt", Sort.Direction.ASC)
+                    .named("status_expiresAt"));
+            mongoTemplate.indexOps(CopyHold.class).ensureIndex(new Index()
+                    .on("purgeAt", Sort.Direction.ASC)
+                    .expire(0)
+                    .named("purgeAt_ttl"));
+        } catch (Exception e) {
+            // Database not reachable yet, indexes are created on the next start
+        }
+    }
+
+    public CopyReservationDTO reserve(Long bookId) {
+        Book book = bookService.tryDecreaseAvailableCopies(bookId);
+        if (book == null) {
+            if (!bookRepository.existsById(bookId)) {
+                return new CopyReservationDTO(bookId, false, null, "Book not found with id: " + bookId, null, null);
+            }
+            return new CopyReservationDTO(bookId, false, 0, "No available copies for book with id: " + bookId, null, null);
+        }
+        CopyHold hold = new CopyHold(UUID.randomUUID().toString(), bookId, HoldStatus.HELD,
+                Instant.now().plus(holdTtl), null);
+        try {
+            mongoTemplate.insert(hold);
+        } catch (RuntimeException e) {
+            bookService.tryIncreaseAvailableCopies(bookId);
+            throw e;
+        }
+        expiries.schedule(hold.getToken(), hold.getExpiresAt().toEpochMilli());
+        return new CopyReservationDTO(bookId, true, book.getAvailableCopies(), "Copy reserved",
+                hold.getToken(), hold.getExpiresAt());
+    }
+
+    // One result per requested copy, in request order; all holds are written in a single insert
+    public List<CopyReservationDTO> reserveAll(List<Long> bookIds) {
+        Instant expiresAt = Instant.now().plus(holdTtl);
+        List<CopyReservationDTO> results = new ArrayList<>(bookIds.size());
+        List<CopyHold> holds = new ArrayList<>();
+        Set<Long> missed = new HashSet<>();
+        for (Long bookId : bookIds) {
+            Book book = bookService.tryDecreaseAvailableCopies(bookId);
+            if (book == null) {
+                missed.add(bookId);
+                results.add(null);
+                continue;
+            }
+            CopyHold hold = new CopyHold(UUID.randomUUID().toString(), bookId, HoldStatus.HELD, expiresAt, null);
+            holds.add(hold);
+            results.add(new CopyReservationDTO(bookId, true, book.getAvailableCopies(), "Copy reserved",
+                    hold.getToken(), expiresAt));
+        }
+        if (!holds.isEmpty()) {
+            try {
+                mongoTemplate.insertAll(holds);
+            } catch (RuntimeException e) {
+                holds.forEach(hold -> bookService.tryIncreaseAvailableCopies(hold.getBookId()));
+                throw e;
+            }
+            holds.forEach(hold -> expiries.schedule(hold.getToken(), expiresAt.toEpochMilli()));
+        }
+
+        // Tell missing books from sold-out ones with a single lookup
+        Set<Long> existing = missed.isEmpty() ? Set.of() : existingBookIds(missed);
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) == null) {
+                Long bookId = bookIds.get(i);
+                results.set(i, existing.contains(bookId)
+                        ? new CopyReservationDTO(bookId, false, 0, "No available copies for book with id: " + bookId, null, null)
+                        : new CopyReservationDTO(bookId, false, null, "Book not found with id: " + bookId, null, null));
+            }
+        }
+        return results;
+    }
+
+    // Idempotent: confirming an already confirmed hold succeeds again
+    public CopyHoldDTO confirm(String token) {
+        CopyHold hold = transition(token, HoldStatus.CONFIRMED,
+                Criteria.where("status").is(HoldStatus.HELD).and("expiresAt").gt(Instant.now()));
+        if (hold == null) {
+            hold = find(token);
+            if (hold.getStatus() != HoldStatus.CONFIRMED) {
+                throw new ReservationNotConfirmableException("Reservation " + token + " is " + hold.getStatus().name().toLowerCase()
+                        + " and can no longer be confirmed");
+            }
+        }
+        expiries.cancel(token);
+        return toDTO(hold);
+    }
+
+    // Undoes a held or confirmed reservation and puts its copy back
+    public CopyHoldDTO release(String token) {
+        CopyHold hold = transition(token, HoldStatus.RELEASED,
+                Criteria.where("status").in(HoldStatus.HELD, HoldStatus.CONFIRMED));
+        expiries.cancel(token);
+        if (hold == null) {
+            return toDTO(find(token));
+        }
+        returnCopy(hold);
+        return toDTO(hold);
+    }
+
+    // Per token outcome: the hold's current status tells the caller whether it was confirmed
+    public List<CopyHoldDTO> confirmAll(List<String> tokens) {
+        return tokens.stream().map(token -> quietly(token, this::confirm)).collect(Collectors.toList());
+    }
+
+    public List<CopyHoldDTO> releaseAll(List<String> tokens) {
+        return tokens.stream().map(token -> quietly(token, this::release)).collect(Collectors.toList());
+    }
+
+    public CopyHoldDTO getHold(String token) {
+        return toDTO(find(token));
+    }
+
+    @Scheduled(fixedDelayString = "${library.reservations.tick:100}")
+    public void expireDue() {
+        for (String token : expiries.advance(System.currentTimeMillis())) {
+            expire(token);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${library.reservations.sweep-interval:30000}",
+            fixedDelayString = "${library.reservations.sweep-interval:30000}")
+    public void sweepExpired() {
+        try {
+            Query query = new Query(Criteria.where("status").is(HoldStatus.HELD).and("expiresAt").lte(Instant.now()))
+                    .with(Sort.by("expiresAt"))
+                    .limit(SWEEP_BATCH_SIZE);
+            query.fields().include("_id");
+            List<CopyHold> due = mongoTemplate.find(query, CopyHold.class);
+            due.forEach(hold -> expire(hold.getToken()));
+        } catch (Exception e) {
+            // Database not reachable, the next sweep catches up
+        }
+    }
+
+    private void expire(String token) {
+        try {
+            CopyHold hold = transition(token, HoldStatus.EXPIRED,
+                    Criteria.where("status").is(HoldStatus.HELD).and("expiresAt").lte(Instant.now()));
+            if (hold != null) {
+                returnCopy(hold);
+            }
+        } catch (Exception e) {
+            // Left HELD, the sweep retries it
+        }
+    }
+
+    private void returnCopy(CopyHold hold) {
+        if (bookService.tryIncreaseAvailableCopies(hold.getBookId()) == null) {
+            logger.warn("Copy of book {} from reservation {} could not be put back", hold.getBookId(), hold.getToken());
+        }
+    }
+
+    private CopyHold transition(String token, HoldStatus status, Criteria from) {
+        Update update = new Update().set("status", status).set("purgeAt", Instant.now().plus(retention));
+        return mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(token).andOperator(from)),
+                update, FindAndModifyOptions.options().returnNew(true), CopyHold.class);
+    }
+
+    private CopyHold find(String token) {
+        CopyHold hold = mongoTemplate.findById(token, CopyHold.class);
+        if (hold == null) {
+            throw new RuntimeException("Reservation not found with token: " + token);
+        }
+        return hold;
+    }
+
+    private CopyHoldDTO quietly(String token, Function<String, CopyHoldDTO> action) {
+        try {
+            return action.apply(token);
+        } catch (RuntimeException e) {
+            CopyHold hold = mongoTemplate.findById(token, CopyHold.class);
+            return hold != null ? toDTO(hold) : new CopyHoldDTO(token, null, "NOT_FOUND", null);
+        }
+    }
+
+    private Set<Long> existingBookIds(Collection<Long> bookIds) {
+        Query query = new Query(Criteria.where("_id").in(bookIds));
+        query.fields().include("_id");
+        return mongoTemplate.find(query, Book.class).stream().map(Book::getId).collect(Collectors.toSet());
+    }
+
+    private CopyHoldDTO toDTO(CopyHold hold) {
+        return new CopyHoldDTO(hold.getToken(), hold.getBookId(), hold.getStatus().name(), hold.getExpiresAt());
+    }
+}
@@ -0,0 +1,66 @@
+package com.library.book.reservation;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hashed timing wheel: scheduling and cancelling are O(1), and advancing only visits the
+ * buckets of the ticks that passed. Deadlines further out than one turn of the wheel wait in
+ * their bucket for the following turns. Items fire at most one tick late.
+ */
+public class TimingWheel<T> {
+
+    private record Timeout<T>(long tick, T item) {
+    }
+
+    private final long tickMillis;
+    private final List<List<Timeout<T>>> buckets;
+    private final Set<T> pending = ConcurrentHashMap.newKeySet();
+    private long currentTick;
+
+    public TimingWheel(long tickMillis, int size, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    public synchronized void schedule(T item, long deadlineMillis) {
+        long tick = Math.max((deadlineMillis + tickMillis - 1) / tickMillis, currentTick + 1);
+        buckets.get((int) (tick % buckets.size())).add(new Timeout<>(tick, item));
+        pending.add(item);
+    }
+
+    // The entry stays in its bucket and is dropped when its tick comes
+    public void cancel(T item) {
+        pending.remove(item);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    // Returns the items whose deadline passed
+    public synchronized List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        // After a long pause one turn of the wheel visits every bucket
+        long from = Math.max(currentTick + 1, targetTick - buckets.size() + 1);
+        for (long tick = from; tick <= targetTick; tick++) {
+            Iterator<Timeout<T>> it = buckets.get((int) (tick % buckets.size())).iterator();
+            while (it.hasNext()) {
+                Timeout<T> timeout = it.next();
+                if (timeout.tick() <= targetTick) {
+                    it.remove();
+                    if (pending.remove(timeout.item())) {
+                        expired.add(timeout.item());
+                    }
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, targetTick);
+        return expired;
+    }
+}
@@ -0,0 +1,184 @@
+package com.library.book.search;
+
+import com.library.book.dto.BookDTO;
+import com.library.book.dto.FacetCountDTO;
+import com.library.book.dto.FacetedSearchResultDTO;
+import com.library.book.entity.Book;
+import com.library.book.mapper.BookMapper;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Multi-criteria search returning a page of books together with category and availability
+ * counts, computed in one $facet aggregation. Unfiltered requests are answered from
+ * {@link CatalogFacetCounts} instead of aggregating the whole catalog.
+ */
+@Service
+@RequiredArgsConstructor
+public class BookFacetService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final String NO_LANGUAGE = "none";
+
+    private final MongoTemplate mongoTemplate;
+    private final BookMapper bookMapper;
+    private final CatalogFacetCounts catalogFacetCounts;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            // Equality filters first: category or author, then the availability range
+            mongoTemplate.indexOps(Book.class).ensureIndex(new Index()
+                    .on("category", Sort.Direction.ASC)
+                    .on("availableCopies", Sort.Direction.ASC)
+                    .named("category_availability"));
+            mongoTemplate.indexOps(Book.class).ensureIndex(new Index()
+                    .on("authorId", Sort.Direction.ASC)
+                    .on("category", Sort.Direction.ASC)
+                    .on("availableCopies", Sort.Direction.ASC)
+                    .named("author_category_availability"));
+            refreshCatalogCounts();
+        } catch (Exception e) {
+            // Database not reachable yet, counts are loaded on the first search
+        }
+    }
+
+    @Scheduled(initialDelayString = "${library.facets.refresh-interval:300000}",
+            fixedDelayString = "${library.facets.refresh-interval:300000}")
+    public void scheduledRefresh() {
+        try {
+            refreshCatalogCounts();
+        } catch (Exception e) {
+            // Keep serving the incrementally maintained counts
+        }
+    }
+
+    public void refreshCatalogCounts() {
+        Document facets = aggregate(List.of(facetStage(null, 0, 0)));
+        Map<String, Long> categories = new HashMap<>();
+        for (FacetCountDTO count : readCounts(facets, "categories")) {
+            categories.put(count.getValue(), count.getCount());
+        }
+        long available = 0;
+        long unavailable = 0;
+        for (FacetCountDTO count : readCounts(facets, "availability")) {
+            if (CatalogFacetCounts.AVAILABLE.equals(count.getValue())) {
+                available = count.getCount();
+            } else {
+                unavailable = count.getCount();
+            }
+        }
+        catalogFacetCounts.reset(categories, available, unavailable);
+    }
+
+    public FacetedSearchResultDTO search(String text, String category, Long authorId, Boolean available,
+                                         int page, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        int pageNumber = Math.max(page, 0);
+        List<String> terms = TextNormalizer.tokenize(text);
+
+        List<Criteria> filters = new ArrayList<>();
+        if (category != null && !category.isEmpty()) {
+            filters.add(Criteria.where("category").is(category));
+        }
+        if (authorId != null) {
+            filters.add(Criteria.where("authorId").is(authorId));
+        }
+        if (available != null) {
+            filters.add(available
+                    ? Criteria.where("availableCopies").gt(0)
+                    : new Criteria().orOperator(
+                            Criteria.where("availableCopies").lte(0),
+                            Criteria.where("availableCopies").is(null)));
+        }
+
+        if (terms.isEmpty() && filters.isEmpty()) {
+            return browseCatalog(pageNumber, pageSize);
+        }
+
+        List<Document> pipeline = new ArrayList<>();
+        Document sort = new Document("_id", 1);
+        if (!terms.isEmpty()) {
+            // $text has to be the first stage of the pipeline
+            pipeline.add(new Document("$match", new Document("$text", new Document("$search", String.join(" ", terms))
+                    .append("$language", NO_LANGUAGE))));
+            pipeline.add(new Document("$addFields", new Document("score", new Document("$meta", "textScore"))));
+            sort = new Document("score", -1).append("_id", 1);
+        }
+        if (!filters.isEmpty()) {
+            pipeline.add(new Document("$match", new Criteria().andOperator(filters).getCriteriaObject()));
+        }
+        pipeline.add(facetStage(sort, (long) pageNumber * pageSize, pageSize));
+
+        Document facets = aggregate(pipeline);
+        List<BookDTO> results = facets.getList("results", Document.class, List.of()).stream()
+                .map(document -> bookMapper.toDTO(mongoTemplate.getConverter().read(Book.class, document)))
+                .collect(Collectors.toList());
+        List<Document> total = facets.getList("total", Document.class, List.of());
+        return new FacetedSearchResultDTO(pageNumber, pageSize,
+                total.isEmpty() ? 0 : total.get(0).get("count", Number.class).longValue(),
+                results, readCounts(facets, "categories"), readCounts(facets, "availability"));
+    }
+
+    private FacetedSearchResultDTO browseCatalog(int pageNumber, int pageSize) {
+        if (!catalogFacetCounts.isLoaded()) {
+            refreshCatalogCounts();
+        }
+        Query query = new Query().with(Sort.by("_id")).skip((long) pageNumber * pageSize).limit(pageSize);
+        List<BookDTO> results = mongoTemplate.find(query, Book.class).stream()
+                .map(bookMapper::toDTO)
+                .collect(Collectors.toList());
+        return new FacetedSearchResultDTO(pageNumber, pageSize, catalogFacetCounts.total(), results,
+                catalogFacetCounts.categoryCounts(), catalogFacetCounts.availabilityCounts());
+    }
+
+    // A null sort builds the counts-only facet used to load the catalog counts
+    private Document facetStage(Document sort, long skip, int limit) {
+        Document facet = new Document()
+                .append("categories", List.of(
+                        new Document("$group", new Document("_id", "$category")
+                                .append("count", new Document("$sum", 1)))))
+                .append("availability", List.of(
+                        new Document("$group", new Document("_id", new Document("$gt", List.of("$availableCopies", 0)))
+                                .append("count", new Document("$sum", 1)))));
+        if (sort != null) {
+            facet.append("results", List.of(
+                            new Document("$sort", sort),
+                            new Document("$skip", skip),
+                            new Document("$limit", limit)))
+                    .append("total", List.of(new Document("$count", "count")));
+        }
+        return new Document("$facet", facet);
+    }
+
+    private Document aggregate(List<Document> pipeline) {
+        Document result = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Book.class))
+                .aggregate(pipeline)
+                .first();
+        return result != null ? result : new Document();
+    }
+
+    private List<FacetCountDTO> readCounts(Document facets, String name) {
+        List<FacetCountDTO> counts = new ArrayList<>();
+        for (Document bucket : facets.getList(name, Document.class, List.of())) {
+            Object key = bucket.get("_id");
+            String value = key instanceof Boolean isAvailable
+                    ? (isAvailable ? CatalogFacetCounts.AVAILABLE : CatalogFacetCounts.UNAVAILABLE)
+                    : (String) key;
+            counts.add(new FacetCountDTO(value, bucket.get("count", Number.class).longValue()));
+        }
+        return CatalogFacetCounts.sorted(counts);
+    }
+}
@@ -0,0 +1,31 @@
+package com.library.book.search;
+
+import com.library.book.entity.Book;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class BookSearchIndexListener extends AbstractMongoEventListener<Book> {
+
+    private final BookSearchService bookSearchService;
+    private final BookSuggestionService bookSuggestionService;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Book> event) {
+        bookSearchService.indexTerms(event.getSource());
+        bookSuggestionService.index(event.getSource());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Book> event) {
+        Object id = event.getSource().get("_id");
+        if (id instanceof Number bookId) {
+            bookSearchService.removeTerms(bookId.longValue());
+            bookSuggestionService.remove(bookId.longValue());
+        }
+    }
+}
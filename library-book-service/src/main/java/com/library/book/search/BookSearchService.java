@@ -0,0 +1,103 @@
+package com.library.book.search;
+
+import com.library.book.dto.BookSearchHitDTO;
+import com.library.book.dto.BookSearchResultDTO;
+import com.library.book.entity.Book;
+import com.library.book.mapper.BookMapper;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class BookSearchService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final String TEXT_INDEX = "books_text";
+    private static final String NO_LANGUAGE = "none"; // no stemming or stop words, titles are multilingual
+
+    private final MongoTemplate mongoTemplate;
+    private final TermDictionary termDictionary;
+    private final BookMapper bookMapper;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            mongoTemplate.indexOps(Book.class).ensureIndex(new TextIndexDefinition.TextIndexDefinitionBuilder()
+                    .named(TEXT_INDEX)
+                    .onField("title", 10F)
+                    .onField("description", 2F)
+                    .withDefaultLanguage(NO_LANGUAGE)
+                    .build());
+            rebuildDictionary();
+        } catch (Exception e) {
+            // Database not reachable yet, the dictionary fills up as books are saved
+        }
+    }
+
+    public void rebuildDictionary() {
+        Query query = new Query();
+        query.fields().include("title").include("description");
+        termDictionary.clear();
+        try (Stream<Book> books = mongoTemplate.stream(query, Book.class)) {
+            books.forEach(this::indexTerms);
+        }
+    }
+
+    public void indexTerms(Book book) {
+        List<String> terms = new ArrayList<>(TextNormalizer.tokenize(book.getTitle()));
+        terms.addAll(TextNormalizer.tokenize(book.getDescription()));
+        termDictionary.index(book.getId(), terms);
+    }
+
+    public void removeTerms(Long bookId) {
+        termDictionary.remove(bookId);
+    }
+
+    public BookSearchResultDTO search(String text, int page, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        int pageNumber = Math.max(page, 0);
+
+        List<String> terms = TextNormalizer.tokenize(text);
+        Set<String> searchTerms = new LinkedHashSet<>(terms);
+        List<String> corrected = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            String correction = termDictionary.correct(term).orElse(term);
+            searchTerms.add(correction);
+            corrected.add(correction);
+        }
+        String correctedQuery = corrected.equals(terms) ? null : String.join(" ", corrected);
+
+        if (searchTerms.isEmpty()) {
+            return new BookSearchResultDTO(text, null, pageNumber, pageSize, false, List.of());
+        }
+
+        Query query = TextQuery.queryText(TextCriteria.forLanguage(NO_LANGUAGE)
+                        .matchingAny(searchTerms.toArray(String[]::new)))
+                .sortByScore()
+                .includeScore("score")
+                .skip((long) pageNumber * pageSize)
+                .limit(pageSize + 1);
+
+        List<Document> documents = mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(Book.class));
+        boolean hasMore = documents.size() > pageSize;
+        List<BookSearchHitDTO> hits = documents.stream()
+                .limit(pageSize)
+                .map(document -> new BookSearchHitDTO(
+                        bookMapper.toDTO(mongoTemplate.getConverter().read(Book.class, document)),
+                        document.get("score", Number.class).doubleValue()))
+                .collect(Collectors.toList());
+        return new BookSearchResultDTO(text, correctedQuery, pageNumber, pageSize, hasMore, hits);
+    }
+}
@@ -0,0 +1,93 @@
+package com.library.book.search;
+
+import com.library.book.dto.BookChangeEventDTO;
+import com.library.book.dto.SuggestionDTO;
+import com.library.book.entity.Book;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class BookSuggestionService {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final Set<String> INDEXED_FIELDS = Set.of("title", "availableCopies", "totalCopies");
+    private static final Set<String> WHOLE_DOCUMENT = Set.of("insert", "replace");
+
+    private final MongoTemplate mongoTemplate;
+    private final SuggestionTrie titleTrie = new SuggestionTrie(MAX_SUGGESTIONS);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // Database not reachable yet, titles are added as books are saved
+        }
+    }
+
+    public void rebuild() {
+        Query query = new Query();
+        query.fields().include(INDEXED_FIELDS.toArray(String[]::new));
+        titleTrie.clear();
+        try (Stream<Book> books = mongoTemplate.stream(query, Book.class)) {
+            books.forEach(this::index);
+        }
+    }
+
+    public void index(Book book) {
+        titleTrie.put(book.getId(), book.getTitle(), popularity(book));
+    }
+
+    public void remove(Long bookId) {
+        titleTrie.remove(bookId);
+    }
+
+    // Titles and loans changed through any instance
+    @EventListener
+    public void onBookChanged(BookChangeEventDTO event) {
+        if (event.getBookId() == null) {
+            // Events were missed
+            rebuild();
+            return;
+        }
+        if ("delete".equals(event.getOperation())) {
+            remove(event.getBookId());
+            return;
+        }
+        if (!WHOLE_DOCUMENT.contains(event.getOperation())
+                && event.getChangedFields().stream().noneMatch(INDEXED_FIELDS::contains)) {
+            return;
+        }
+        Query query = new Query(Criteria.where("_id").is(event.getBookId()));
+        query.fields().include(INDEXED_FIELDS.toArray(String[]::new));
+        Book book = mongoTemplate.findOne(query, Book.class);
+        if (book != null) {
+            index(book);
+        }
+    }
+
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        return titleTrie.suggest(prefix, Math.min(Math.max(limit, 1), MAX_SUGGESTIONS)).stream()
+                .map(entry -> new SuggestionDTO(entry.id(), entry.label()))
+                .collect(Collectors.toList());
+    }
+
+    // Copies on loan right now: what readers want, not what the library happened to stock
+    private static long popularity(Book book) {
+        int total = book.getTotalCopies() != null ? book.getTotalCopies() : 0;
+        int available = book.getAvailableCopies() != null ? book.getAvailableCopies() : 0;
+        return Math.max(0, total - available);
+    }
+}
@@ -0,0 +1,103 @@
+package com.library.book.search;
+
+import com.library.book.dto.FacetCountDTO;
+import com.library.book.entity.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Facet counts of the unfiltered catalog. Loaded by an aggregation, then kept current by the
+ * write paths of this instance; the periodic reload corrects drift from other instances.
+ */
+@Component
+public class CatalogFacetCounts {
+
+    public static final String AVAILABLE = "available";
+    public static final String UNAVAILABLE = "unavailable";
+
+    private static final Comparator<FacetCountDTO> BY_COUNT = Comparator
+            .comparingLong(FacetCountDTO::getCount).reversed()
+            .thenComparing(FacetCountDTO::getValue, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final Map<String, Long> categories = new HashMap<>();
+    private long available;
+    private long unavailable;
+    private boolean loaded;
+
+    public static boolean isAvailable(Book book) {
+        return book.getAvailableCopies() != null && book.getAvailableCopies() > 0;
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized void reset(Map<String, Long> categoryCounts, long availableCount, long unavailableCount) {
+        categories.clear();
+        categories.putAll(categoryCounts);
+        available = availableCount;
+        unavailable = unavailableCount;
+        loaded = true;
+    }
+
+    public synchronized void add(String category, boolean isAvailable) {
+        categories.merge(category, 1L, Long::sum);
+        if (isAvailable) {
+            available++;
+        } else {
+            unavailable++;
+        }
+    }
+
+    public synchronized void remove(String category, boolean isAvailable) {
+        categories.computeIfPresent(category, (key, count) -> count > 1 ? count - 1 : null);
+        if (isAvailable) {
+            available = Math.max(available - 1, 0);
+        } else {
+            unavailable = Math.max(unavailable - 1, 0);
+        }
+    }
+
+    public void add(Book book) {
+        add(book.getCategory(), isAvailable(book));
+    }
+
+    public void remove(Book book) {
+        remove(book.getCategory(), isAvailable(book));
+    }
+
+    public synchronized void availabilityChanged(boolean nowAvailable) {
+        if (nowAvailable) {
+            available++;
+            unavailable = Math.max(unavailable - 1, 0);
+        } else {
+            unavailable++;
+            available = Math.max(available - 1, 0);
+        }
+    }
+
+    public synchronized long total() {
+        return available + unavailable;
+    }
+
+    public synchronized List<FacetCountDTO> categoryCounts() {
+        List<FacetCountDTO> counts = new ArrayList<>(categories.size());
+        categories.forEach((category, count) -> counts.add(new FacetCountDTO(category, count)));
+        counts.sort(BY_COUNT);
+        return counts;
+    }
+
+    public synchronized List<FacetCountDTO> availabilityCounts() {
+        List<FacetCountDTO> counts = new ArrayList<>(2);
+        counts.add(new FacetCountDTO(AVAILABLE, available));
+        counts.add(new FacetCountDTO(UNAVAILABLE, unavailable));
+        counts.sort(BY_COUNT);
+        return counts;
+    }
+
+    static List<FacetCountDTO> sorted(List<FacetCountDTO> counts) {
+        counts.sort(BY_COUNT);
+        return counts;
+    }
+}
@@ -0,0 +1,222 @@
+package com.library.book.search;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix tree over normalized labels where every node caches the top-k entries of its subtree,
+ * so a lookup costs one walk down the prefix. Each word of a label is indexed as a key, which
+ * lets "pott" suggest "Harry Potter".
+ */
+public class SuggestionTrie {
+
+    public static final int MAX_KEY_LENGTH = 32;
+    private static final int MAX_WORDS = 8;
+
+    private final int topK;
+    private final Node root = new Node();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SuggestionTrie(int topK) {
+        this.topK = topK;
+    }
+
+    public record Entry(Long id, String label, long weight) {
+    }
+
+    public void put(Long id, String label, long weight) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            if (label == null || label.isBlank()) {
+                return;
+            }
+            Entry entry = new Entry(id, label, weight);
+            entries.put(id, entry);
+            for (String key : keysOf(label)) {
+                insert(key, entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            root.keys = new char[0];
+            root.children = new Node[0];
+            root.terminals = new ArrayList<>(0);
+            root.top = new ArrayList<>(0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Entry> suggest(String prefix, int limit) {
+        String key = TextNormalizer.normalize(prefix).strip();
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < Math.min(key.length(), MAX_KEY_LENGTH) && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            List<Entry> result = new ArrayList<>();
+            for (Entry entry : node.top) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                // Keys are truncated, so longer prefixes are checked against the label itself
+                if (key.length() <= MAX_KEY_LENGTH || containsWordPrefix(entry.label(), key)) {
+                    result.add(entry);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void insert(String key, Entry entry) {
+        Node node = root;
+        offer(node, entry);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+            offer(node, entry);
+        }
+        node.terminals.add(entry);
+    }
+
+    private void removeInternal(Long id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        for (String key : keysOf(entry.label())) {
+            Deque<Node> path = new ArrayDeque<>();
+            Node node = root;
+            path.push(node);
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+                if (node != null) {
+                    path.push(node);
+                }
+            }
+            if (node != null) {
+                node.terminals.remove(entry);
+            }
+            // Refill the caches bottom-up from the children
+            while (!path.isEmpty()) {
+                Node current = path.pop();
+                if (current.top.remove(entry)) {
+                    recompute(current);
+                }
+            }
+        }
+    }
+
+    private void offer(Node node, Entry entry) {
+        if (node.top.contains(entry)) {
+            return;
+        }
+        int position = 0;
+        while (position < node.top.size() && compare(node.top.get(position), entry) <= 0) {
+            position++;
+        }
+        if (position < topK) {
+            node.top.add(position, entry);
+            if (node.top.size() > topK) {
+                node.top.remove(node.top.size() - 1);
+            }
+        }
+    }
+
+    private void recompute(Node node) {
+        node.top = new ArrayList<>(topK + 1);
+        for (Entry entry : node.terminals) {
+            offer(node, entry);
+        }
+        for (Node child : node.children) {
+            for (Entry entry : child.top) {
+                offer(node, entry);
+            }
+        }
+    }
+
+    private static int compare(Entry a, Entry b) {
+        int byWeight = Long.compare(b.weight(), a.weight());
+        if (byWeight != 0) {
+            return byWeight;
+        }
+        int byLength = Integer.compare(a.label().length(), b.label().length());
+        return byLength != 0 ? byLength : a.label().compareToIgnoreCase(b.label());
+    }
+
+    private static Set<String> keysOf(String label) {
+        List<String> words = TextNormalizer.tokenize(label);
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < Math.min(words.size(), MAX_WORDS); i++) {
+            String key = String.join(" ", words.subList(i, words.size()));
+            keys.add(key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key);
+        }
+        return keys;
+    }
+
+    private static boolean containsWordPrefix(String label, String prefix) {
+        String normalized = String.join(" ", TextNormalizer.tokenize(label));
+        return normalized.startsWith(prefix) || normalized.contains(" " + prefix);
+    }
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private List<Entry> terminals = new ArrayList<>(0);
+        private List<Entry> top = new ArrayList<>(0);
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newKeys[insertAt] = c;
+            newChildren[insertAt] = new Node();
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[insertAt];
+        }
+    }
+}
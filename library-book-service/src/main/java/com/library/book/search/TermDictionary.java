@@ -0,0 +1,164 @@
+package com.library.book.search;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Vocabulary of the catalog with a trigram index, used to map misspelled query terms
+ * to the closest known terms. Only the distinct terms of each book are kept, not postings, so
+ * a book's old terms can be taken out again when it is renamed or deleted.
+ */
+@Component
+public class TermDictionary {
+
+    // Number of books using each term
+    private final Map<String, AtomicInteger> frequencies = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> trigrams = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>> termsByBook = new ConcurrentHashMap<>();
+
+    // Replaces the terms previously indexed for the book; writers are serialized, lookups are not
+    public synchronized void index(Long bookId, Collection<String> terms) {
+        Set<String> distinct = new HashSet<>(terms);
+        Set<String> previous = distinct.isEmpty() ? termsByBook.remove(bookId) : termsByBook.put(bookId, distinct);
+        if (previous != null) {
+            previous.stream().filter(term -> !distinct.contains(term)).forEach(this::release);
+        }
+        distinct.stream().filter(term -> previous == null || !previous.contains(term)).forEach(this::retain);
+    }
+
+    public synchronized void remove(Long bookId) {
+        Set<String> previous = termsByBook.remove(bookId);
+        if (previous != null) {
+            previous.forEach(this::release);
+        }
+    }
+
+    private void retain(String term) {
+        frequencies.computeIfAbsent(term, t -> {
+            for (String gram : trigramsOf(t)) {
+                trigrams.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(t);
+            }
+            return new AtomicInteger();
+        }).incrementAndGet();
+    }
+
+    // Drops the term and its trigram entries once no book uses it any more
+    private void release(String term) {
+        AtomicInteger frequency = frequencies.get(term);
+        if (frequency == null || frequency.decrementAndGet() > 0) {
+            return;
+        }
+        frequencies.remove(term);
+        for (String gram : trigramsOf(term)) {
+            Set<String> terms = trigrams.get(gram);
+            if (terms != null) {
+                terms.remove(term);
+                if (terms.isEmpty()) {
+                    trigrams.remove(gram);
+                }
+            }
+        }
+    }
+
+    public boolean contains(String term) {
+        return frequencies.containsKey(term);
+    }
+
+    public int size() {
+        return frequencies.size();
+    }
+
+    public synchronized void clear() {
+        frequencies.clear();
+        trigrams.clear();
+        termsByBook.clear();
+    }
+
+    // Closest known term within the allowed edit distance, most frequent first on ties
+    public Optional<String> correct(String term) {
+        int maxDistance = maxDistance(term);
+        if (maxDistance == 0 || contains(term)) {
+            return Optional.empty();
+        }
+
+        List<String> grams = trigramsOf(term);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : grams) {
+            for (String candidate : trigrams.getOrDefault(gram, Set.of())) {
+                if (Math.abs(candidate.length() - term.length()) <= maxDistance) {
+                    shared.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+
+        int minShared = Math.max(1, grams.size() - 4 * maxDistance); // a transposition breaks up to 4 trigrams
+        String best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        int bestFrequency = 0;
+        for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+            if (entry.getValue() < minShared) {
+                continue;
+            }
+            String candidate = entry.getKey();
+            int distance = distance(term, candidate, maxDistance);
+            if (distance > maxDistance) {
+                continue;
+            }
+            AtomicInteger frequency = frequencies.get(candidate);
+            if (frequency == null) {
+                continue; // released while we were looking
+            }
+            if (distance < bestDistance || (distance == bestDistance && frequency.get() > bestFrequency)) {
+                best = candidate;
+                bestDistance = distance;
+                bestFrequency = frequency.get();
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    private static int maxDistance(String term) {
+        if (term.length() <= 3) {
+            return 0;
+        }
+        return term.length() <= 7 ? 1 : 2;
+    }
+
+    private static List<String> trigramsOf(String term) {
+        String padded = "$" + term + "$";
+        List<String> grams = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    // Optimal string alignment distance, stops early once every cell exceeds the limit
+    private static int distance(String a, String b, int limit) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int rowMin = Integer.MAX_VALUE;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, d[i][j]);
+            }
+            if (rowMin > limit) {
+                return rowMin;
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
@@ -0,0 +1,122 @@
+package com.library.book.service;
+
+import com.library.book.dto.AuthorBatchRequestDTO;
+import com.library.book.dto.AuthorResponseDTO;
+import com.library.book.entity.Book;
+import com.library.book.feign.AuthorFeignClient;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the author display name denormalized onto each book. Names are resolved on book
+ * writes and pushed by the author service on rename; the backfill jobs catch up on books the
+ * author service could not be reached for.
+ */
+@Service
+@RequiredArgsConstructor
+public class AuthorNameService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthorNameService.class);
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final AuthorFeignClient authorFeignClient;
+
+    // Best effort: a null name is filled in later by the backfill
+    public String resolveAuthorName(Long authorId) {
+        if (authorId == null) {
+            return null;
+        }
+        try {
+            return displayName(authorFeignClient.getAuthorById(authorId));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public long applyAuthorName(Long authorId, String authorName) {
+        UpdateResult result = mongoTemplate.updateMulti(
+                new Query(Criteria.where("authorId").is(authorId)),
+                new Update().set("authorName", authorName),
+                Book.class);
+        return result.getModifiedCount();
+    }
+
+    @Scheduled(initialDelayString = "${library.author-name.backfill-initial-delay:60000}",
+            fixedDelayString = "${library.author-name.backfill-interval:600000}")
+    public void backfillMissing() {
+        backfill(false);
+    }
+
+    @Scheduled(cron = "${library.author-name.resync-cron:0 30 3 * * *}")
+    public void resyncAll() {
+        backfill(true);
+    }
+
+    // Walks the books in id order; full=false only visits books that have no name yet
+    public long backfill(boolean full) {
+        long updated = 0;
+        long after = 0;
+        while (true) {
+            Criteria criteria = Criteria.where("_id").gt(after).and("authorId").ne(null);
+            if (!full) {
+                criteria = criteria.and("authorName").is(null);
+            }
+            Query query = new Query(criteria).with(Sort.by("_id")).limit(BACKFILL_BATCH_SIZE);
+            query.fields().include("authorId").include("authorName");
+            List<Book> books = mongoTemplate.find(query, Book.class);
+            if (books.isEmpty()) {
+                break;
+            }
+
+            Map<Long, String> names;
+            try {
+                List<Long> authorIds = books.stream().map(Book::getAuthorId).distinct().collect(Collectors.toList());
+                names = authorFeignClient.getAuthorsByIds(new AuthorBatchRequestDTO(authorIds)).stream()
+                        .collect(Collectors.toMap(AuthorResponseDTO::getId, this::displayName, (a, b) -> a));
+            } catch (Exception e) {
+                logger.warn("Author service unavailable, author name backfill stopped after {} updates", updated);
+                return updated;
+            }
+
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Book.class);
+            int pending = 0;
+            for (Book book : books) {
+                String name = names.get(book.getAuthorId());
+                if (name != null && !Objects.equals(name, book.getAuthorName())) {
+                    bulk.updateOne(new Query(Criteria.where("_id").is(book.getId())),
+                            new Update().set("authorName", name));
+                    pending++;
+                }
+            }
+            if (pending > 0) {
+                updated += bulk.execute().getModifiedCount();
+            }
+            if (books.size() < BACKFILL_BATCH_SIZE) {
+                break;
+            }
+            after = books.get(books.size() - 1).getId();
+        }
+        return updated;
+    }
+
+    private String displayName(AuthorResponseDTO author) {
+        return author.getFirstName() + " " + author.getLastName();
+    }
+}
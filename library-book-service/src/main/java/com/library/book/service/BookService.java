@@ -1,70 +1,170 @@
 package com.library.book.service;
 
-import com.library.book.dto.AuthorResponseDTO;
+import com.library.book.availability.AvailabilityIndex;
+import com.library.book.cache.BookCache;
+import com.library.book.dto.AuthorBookCountDTO;
+import com.library.book.dto.CursorPageDTO;
 import com.library.book.dto.BookDTO;
 import com.library.book.dto.BookWithAuthorDTO;
+import com.library.book.dto.CopyReturnResultDTO;
 import com.library.book.entity.Book;
-import com.library.book.feign.AuthorFeignClient;
+import com.library.book.exception.CopyChangeConflictException;
+import com.library.book.exception.UnknownBookFieldException;
 import com.library.book.mapper.BookMapper;
 import com.library.book.repository.BookRepository;
+import com.library.book.search.CatalogFacetCounts;
+import com.library.book.search.BookSuggestionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class BookService {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // Names a batch request may project, anything else would reach MongoDB as a raw path
+    private static final Set<String> BOOK_FIELDS = Arrays.stream(BookDTO.class.getDeclaredFields())
+            .map(Field::getName)
+            .collect(Collectors.toUnmodifiableSet());
+
     private final BookRepository bookRepository;
     private final BookMapper bookMapper;
-    private final AuthorFeignClient authorFeignClient;
+    private final ObjectMapper objectMapper;
+    private final MongoTemplate mongoTemplate;
+    private final BookSuggestionService bookSuggestionService;
+    private final AuthorNameService authorNameService;
+    private final BookCache bookCache;
+    private final CatalogFacetCounts catalogFacetCounts;
+    private final AvailabilityIndex availabilityIndex;
+    private final CopyShardService copyShardService;
 
     public BookDTO createBook(BookDTO bookDTO) {
         if (bookDTO.getAvailableCopies() == null) {
             bookDTO.setAvailableCopies(bookDTO.getTotalCopies());
         }
         Book book = bookMapper.toEntity(bookDTO);
+        book.setAuthorName(authorNameService.resolveAuthorName(book.getAuthorId()));
         Book saved = bookRepository.save(book);
+        catalogFacetCounts.add(saved);
+        availabilityIndex.update(saved);
         return bookMapper.toDTO(saved);
     }
 
     @Transactional(readOnly = true)
     public BookDTO getBookById(Long id) {
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
-        return bookMapper.toDTO(book);
+        return getCachedBook(id).book();
+    }
+
+    // Read-through: a miss loads the book from MongoDB, writes below evict the entry
+    @Transactional(readOnly = true)
+    public BookCache.CachedBook getCachedBook(Long id) {
+        return bookCache.get(id, () -> bookRepository.findById(id)
+                .map(copyShardService::withSummedCopies)
+                .map(bookMapper::toDTO)
+                .orElseThrow(() -> new RuntimeException("Book not found with id: " + id)));
     }
 
     @Transactional(readOnly = true)
     public BookWithAuthorDTO getBookWithAuthorById(Long id) {
         Book book = bookRepository.findById(id)
+                .map(copyShardService::withSummedCopies)
                 .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
         BookWithAuthorDTO dto = bookMapper.toBookWithAuthorDTO(book);
-        if (book.getAuthorId() != null) {
-            try {
-                AuthorResponseDTO author = authorFeignClient.getAuthorById(book.getAuthorId());
-                dto.setAuthorName(author.getFirstName() + " " + author.getLastName());
-            } catch (Exception e) {
-                dto.setAuthorName("Unknown Author");
-            }
+        // Name not backfilled yet
+        if (book.getAuthorId() != null && dto.getAuthorName() == null) {
+            dto.setAuthorName("Unknown Author");
         }
         return dto;
     }
 
+    @Transactional(readOnly = true)
+    public List<BookDTO> getBooksByIds(List<Long> ids, List<String> fields) {
+        Query query = new Query(Criteria.where("_id").in(new LinkedHashSet<>(ids)));
+        if (fields != null && !fields.isEmpty()) {
+            List<String> unknown = fields.stream().filter(field -> !BOOK_FIELDS.contains(field)).toList();
+            if (!unknown.isEmpty()) {
+                throw new UnknownBookFieldException("Unknown book fields: " + String.join(", ", unknown));
+            }
+            fields.forEach(field -> query.fields().include(field));
+            if (fields.contains("availableCopies")) {
+                // Tells withSummedCopies the book is sharded
+                query.fields().include("copyShards");
+            }
+        }
+        return mongoTemplate.find(query, Book.class).stream()
+                .map(copyShardService::withSummedCopies)
+                .map(bookMapper::toDTO)
+                .collect(Collectors.toList());
+    }
+
     @Transactional(readOnly = true)
     public List<BookDTO> getAllBooks() {
         return bookRepository.findAll().stream()
+                .map(copyShardService::withSummedCopies)
+                .map(bookMapper::toDTO)
+                .collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageDTO<BookDTO> getBooksPage(Long after, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<BookDTO> items = bookRepository
+                .findByIdGreaterThanOrderByIdAsc(after != null ? after : 0L, PageRequest.of(0, pageSize)).stream()
+                .map(copyShardService::withSummedCopies)
                 .map(bookMapper::toDTO)
                 .collect(Collectors.toList());
+        Long nextAfter = items.size() == pageSize ? items.get(items.size() - 1).getId() : null;
+        return new CursorPageDTO<>(items, nextAfter);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllBooks(OutputStream out) throws IOException {
+        try (Stream<Book> books = bookRepository.streamAllByOrderByIdAsc()) {
+            Iterator<Book> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(
+                        bookMapper.toDTO(copyShardService.withSummedCopies(iterator.next()))));
+                out.write('\n');
+            }
+        }
+        out.flush();
     }
 
     public BookDTO updateBook(Long id, BookDTO bookDTO) {
         Book book = bookRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
+        if (book.getCopyShards() != null
+                && (!Objects.equals(book.getTotalCopies(), bookDTO.getTotalCopies())
+                || !Objects.equals(book.getAvailableCopies(), bookDTO.getAvailableCopies()))) {
+            throw new CopyChangeConflictException("Disable copy sharding before changing the copies of book with id: " + id);
+        }
+        String previousCategory = book.getCategory();
+        boolean wasAvailable = CatalogFacetCounts.isAvailable(book);
         book.setTitle(bookDTO.getTitle());
         book.setIsbn(bookDTO.getIsbn());
         book.setDescription(bookDTO.getDescription());
@@ -72,32 +172,46 @@ public class BookService {
         book.setCategory(bookDTO.getCategory());
         book.setTotalCopies(bookDTO.getTotalCopies());
         book.setAvailableCopies(bookDTO.getAvailableCopies());
+        if (!Objects.equals(book.getAuthorId(), bookDTO.getAuthorId()) || book.getAuthorName() == null) {
+            book.setAuthorName(authorNameService.resolveAuthorName(bookDTO.getAuthorId()));
+        }
         book.setAuthorId(bookDTO.getAuthorId());
         Book updated = bookRepository.save(book);
+        bookCache.evict(id);
+        catalogFacetCounts.remove(previousCategory, wasAvailable);
+        catalogFacetCounts.add(updated);
+        availabilityIndex.update(updated);
         return bookMapper.toDTO(updated);
     }
 
     public void deleteBook(Long id) {
-        if (!bookRepository.existsById(id)) {
-            throw new RuntimeException("Book not found with id: " + id);
-        }
+        Book book = bookRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
         bookRepository.deleteById(id);
+        copyShardService.deleteShards(id);
+        bookCache.evict(id);
+        catalogFacetCounts.remove(book);
+        availabilityIndex.set(id, false);
     }
 
     @Transactional(readOnly = true)
     public List<BookDTO> searchBooks(String title, String isbn, String category) {
         if (title != null && !title.isEmpty()) {
+            // Substring match without a limit, as before; ranked, typo-tolerant search is ?q=
             return bookRepository.searchByTitle(title).stream()
+                    .map(copyShardService::withSummedCopies)
                     .map(bookMapper::toDTO)
                     .collect(Collectors.toList());
         }
         if (isbn != null && !isbn.isEmpty()) {
             return bookRepository.findByIsbn(isbn)
-                    .map(book -> List.of(bookMapper.toDTO(book)))
+                    .map(book -> List.of(bookMapper.toDTO(copyShardService.withSummedCopies(book))))
                     .orElse(List.of());
         }
         if (category != null && !category.isEmpty()) {
+            // Case-insensitive substring match, as before; exact indexed matches are on /search/faceted
             return bookRepository.searchByCategory(category).stream()
+                    .map(copyShardService::withSummedCopies)
                     .map(bookMapper::toDTO)
                     .collect(Collectors.toList());
         }
@@ -105,29 +219,99 @@ public class BookService {
     }
 
     public void decreaseAvailableCopies(Long bookId) {
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new RuntimeException("Book not found with id: " + bookId));
-        if (book.getAvailableCopies() > 0) {
-            book.setAvailableCopies(book.getAvailableCopies() - 1);
-            bookRepository.save(book);
-        } else {
+        if (tryDecreaseAvailableCopies(bookId) == null) {
+            if (!bookRepository.existsById(bookId)) {
+                throw new RuntimeException("Book not found with id: " + bookId);
+            }
             throw new RuntimeException("No available copies for book with id: " + bookId);
         }
     }
 
     public void increaseAvailableCopies(Long bookId) {
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new RuntimeException("Book not found with id: " + bookId));
-        if (book.getAvailableCopies() < book.getTotalCopies()) {
-            book.setAvailableCopies(book.getAvailableCopies() + 1);
-            bookRepository.save(book);
+        if (tryIncreaseAvailableCopies(bookId) == null && !bookRepository.existsById(bookId)) {
+            throw new RuntimeException("Book not found with id: " + bookId);
+        }
+    }
+
+    // One result per returned copy, in request order; a missing book does not fail the others
+    public List<CopyReturnResultDTO> increaseAvailableCopies(List<Long> bookIds) {
+        List<CopyReturnResultDTO> results = new ArrayList<>(bookIds.size());
+        for (Long bookId : bookIds) {
+            try {
+                increaseAvailableCopies(bookId);
+                results.add(new CopyReturnResultDTO(bookId, true, "Copy returned"));
+            } catch (RuntimeException e) {
+                results.add(new CopyReturnResultDTO(bookId, false, e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    // Returns the updated book, or null if it is missing or has no copy left
+    public Book tryDecreaseAvailableCopies(Long bookId) {
+        return updateCopies(bookId, -1);
+    }
+
+    // Returns the updated book, or null if it is missing or already fully stocked
+    public Book tryIncreaseAvailableCopies(Long bookId) {
+        return updateCopies(bookId, 1);
+    }
+
+    // Hot titles count copies in slots; the local hint picks the path, a miss re-checks the book
+    // in case sharding was switched on or off through another instance
+    private Book updateCopies(Long bookId, int delta) {
+        boolean sharded = copyShardService.isSharded(bookId);
+        Book book = sharded ? copyShardService.tryAdjust(bookId, delta) : adjustCopies(bookId, delta);
+        if (book == null && copyShardService.checkSharded(bookId) != sharded) {
+            book = sharded ? adjustCopies(bookId, delta) : copyShardService.tryAdjust(bookId, delta);
         }
+        if (book != null && book.getCopyShards() != null) {
+            // Suggestions and availability counts follow the mirror, refreshed by the rebalance pass
+            bookCache.evict(bookId);
+            return book;
+        }
+        return afterCopiesChanged(book, delta);
+    }
+
+    // Single conditional update on the book document, guarded so stock stays within 0..totalCopies
+    private Book adjustCopies(Long bookId, int delta) {
+        Criteria criteria = Criteria.where("_id").is(bookId).and("copyShards").is(null);
+        criteria = delta < 0
+                ? criteria.and("availableCopies").gt(0)
+                : criteria.andOperator(Criteria.expr(ComparisonOperators.Lt.valueOf("availableCopies")
+                        .lessThan("totalCopies")));
+        return mongoTemplate.findAndModify(new Query(criteria),
+                new Update().inc("availableCopies", delta),
+                FindAndModifyOptions.options().returnNew(true),
+                Book.class);
+    }
+
+    // Served by the index on authorId
+    @Transactional(readOnly = true)
+    public List<AuthorBookCountDTO> countBooksByAuthor() {
+        return mongoTemplate.aggregate(Aggregation.newAggregation(
+                        Aggregation.match(Criteria.where("authorId").ne(null)),
+                        Aggregation.group("authorId").count().as("count"),
+                        Aggregation.project("count").and("authorId").previousOperation()),
+                Book.class, AuthorBookCountDTO.class).getMappedResults();
     }
 
     @Transactional(readOnly = true)
     public boolean isBookAvailable(Long bookId) {
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new RuntimeException("Book not found with id: " + bookId));
-        return book.getAvailableCopies() > 0;
+        return getBookById(bookId).getAvailableCopies() > 0;
+    }
+
+    private Book afterCopiesChanged(Book book, int delta) {
+        if (book != null) {
+            bookCache.evict(book.getId());
+            bookSuggestionService.index(book);
+            // The last copy went out, or the first one came back
+            int copies = book.getAvailableCopies();
+            if ((delta < 0 && copies == 0) || (delta > 0 && copies == delta)) {
+                catalogFacetCounts.availabilityChanged(delta > 0);
+                availabilityIndex.set(book.getId(), delta > 0);
+            }
+        }
+        return book;
     }
 }
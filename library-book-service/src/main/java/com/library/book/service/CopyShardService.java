@@ -0,0 +1,427 @@
+package com.library.book.service;
+
+import com.library.book.availability.AvailabilityIndex;
+import com.library.book.cache.BookCache;
+import com.library.book.dto.CopyShardStatusDTO;
+import com.library.book.entity.Book;
+import com.library.book.entity.BookCopyShard;
+import com.library.book.entity.ShardMove;
+import com.library.book.exception.CopyChangeConflictException;
+import com.library.book.exception.InvalidCopyShardSlotsException;
+import com.library.book.search.BookSuggestionService;
+import com.library.book.search.CatalogFacetCounts;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Sharded copy counters for hot titles. A sharded book's copies live in N slot documents, so
+ * concurrent borrows of the same title update different documents instead of queueing on one.
+ * Each slot owns a capacity (copies on the shelf or on loan) so returns cannot overfill it.
+ * The book's own availableCopies becomes a mirror refreshed on every rebalance pass, which also
+ * takes care of the cache, suggestions and availability counts that plain borrows update inline.
+ * Rebalancing runs on one instance at a time under a lease; a move between slots is recorded on
+ * the giving slot first, so a move cut short by a crash is finished on the next pass.
+ */
+@Service
+public class CopyShardService {
+
+    public static final int MAX_SLOTS = 64;
+    private static final int ENABLE_ATTEMPTS = 5;
+    private static final int RETURN_PASSES = 3;
+    private static final String LEASE_NAME = "copy-shard-rebalance";
+    private static final int LEASE_ATTEMPTS = 50;
+    private static final long LEASE_RETRY_MILLIS = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final BookCache bookCache;
+    private final SchedulerLeaseService leaseService;
+    private final BookSuggestionService bookSuggestionService;
+    private final CatalogFacetCounts catalogFacetCounts;
+    private final AvailabilityIndex availabilityIndex;
+    private final Duration leaseTtl;
+
+    // Local hint of sharded books, the book document is authoritative
+    private final Map<Long, ShardedBook> shardedBooks = new ConcurrentHashMap<>();
+    // The lease owner is the instance, this keeps rebalancing and disabling apart within it
+    private final ReentrantLock rebalanceLock = new ReentrantLock();
+
+    // Slot count and an estimate of the copies on the shelf, reset from the slots on every pass
+    private record ShardedBook(int slots, AtomicInteger available) {
+    }
+
+    public CopyShardService(MongoTemplate mongoTemplate, BookCache bookCache, SchedulerLeaseService leaseService,
+                            BookSuggestionService bookSuggestionService, CatalogFacetCounts catalogFacetCounts,
+                            AvailabilityIndex availabilityIndex,
+                            @Value("${library.copy-shards.lease-ttl:30000}") long leaseTtlMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.bookCache = bookCache;
+        this.leaseService = leaseService;
+        this.bookSuggestionService = bookSuggestionService;
+        this.catalogFacetCounts = catalogFacetCounts;
+        this.availabilityIndex = availabilityIndex;
+        this.leaseTtl = Duration.ofMillis(leaseTtlMillis);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            mongoTemplate.indexOps(BookCopyShard.class).ensureIndex(new Index().on("bookId", Sort.Direction.ASC));
+            // Only sharded books are indexed, so the reload reads a handful of entries, not the catalog
+            mongoTemplate.indexOps(Book.class).ensureIndex(new Index()
+                    .on("copyShards", Sort.Direction.ASC)
+                    .partial(PartialIndexFilter.of(Criteria.where("copyShards").gt(0)))
+                    .named("sharded_copyShards"));
+            reloadShardedBooks();
+        } catch (Exception e) {
+            // Database not reachable yet, the hint is filled in by the rebalance job
+        }
+    }
+
+    public boolean isSharded(Long bookId) {
+        return shardedBooks.containsKey(bookId);
+    }
+
+    // Reads the book document and refreshes the local hint
+    public boolean checkSharded(Long bookId) {
+        Query query = new Query(Criteria.where("_id").is(bookId));
+        query.fields().include("copyShards").include("availableCopies");
+        Book book = mongoTemplate.findOne(query, Book.class);
+        if (book == null || book.getCopyShards() == null) {
+            shardedBooks.remove(bookId);
+            return false;
+        }
+        remember(book);
+        return true;
+    }
+
+    /**
+     * Takes (delta -1) or returns (delta 1) a copy on a random slot, probing the others if it is
+     * empty or full. One update on one slot when the first pick has room: the result carries the
+     * id and an estimate of the copies on the shelf, not the rest of the book.
+     */
+    public Book tryAdjust(Long bookId, int delta) {
+        ShardedBook sharded = shardedBooks.get(bookId);
+        if (sharded == null) {
+            return null;
+        }
+        // A returned copy always has room somewhere, but a probe can miss it while concurrent
+        // borrows and returns shift that room between slots, so returns go round a few times
+        int probes = sharded.slots() * (delta > 0 ? RETURN_PASSES : 1);
+        int start = ThreadLocalRandom.current().nextInt(sharded.slots());
+        for (int i = 0; i < probes; i++) {
+            Criteria criteria = Criteria.where("_id").is(shardId(bookId, (start + i) % sharded.slots()));
+            criteria = delta < 0
+                    ? criteria.and("availableCopies").gt(0)
+                    : criteria.andOperator(Criteria.expr(ComparisonOperators.Lt.valueOf("availableCopies")
+                            .lessThan("capacity")));
+            if (mongoTemplate.updateFirst(new Query(criteria), new Update().inc("availableCopies", delta),
+                    BookCopyShard.class).getModifiedCount() > 0) {
+                Book book = new Book();
+                book.setId(bookId);
+                book.setCopyShards(sharded.slots());
+                book.setAvailableCopies(Math.max(sharded.available().addAndGet(delta), 0));
+                return book;
+            }
+        }
+        return null;
+    }
+
+    // Sharded books report the sum of their slots, others are returned as they are
+    public Book withSummedCopies(Book book) {
+        if (book != null && book.getCopyShards() != null) {
+            book.setAvailableCopies(shards(book.getId()).stream().mapToInt(BookCopyShard::getAvailableCopies).sum());
+        }
+        return book;
+    }
+
+    public CopyShardStatusDTO getStatus(Long bookId) {
+        Book book = mongoTemplate.findById(bookId, Book.class);
+        if (book == null) {
+            throw new RuntimeException("Book not found with id: " + bookId);
+        }
+        if (book.getCopyShards() == null) {
+            return new CopyShardStatusDTO(bookId, null, book.getAvailableCopies(), List.of());
+        }
+        List<Integer> perSlot = shards(bookId).stream()
+                .map(BookCopyShard::getAvailableCopies)
+                .collect(Collectors.toList());
+        return new CopyShardStatusDTO(bookId, book.getCopyShards(),
+                perSlot.stream().mapToInt(Integer::intValue).sum(), perSlot);
+    }
+
+    public CopyShardStatusDTO enable(Long bookId, int slots) {
+        if (slots < 2 || slots > MAX_SLOTS) {
+            throw new InvalidCopyShardSlotsException("Slots must be between 2 and " + MAX_SLOTS);
+        }
+        for (int attempt = 0; attempt < ENABLE_ATTEMPTS; attempt++) {
+            Book book = mongoTemplate.findById(bookId, Book.class);
+            if (book == null) {
+                throw new RuntimeException("Book not found with id: " + bookId);
+            }
+            if (book.getCopyShards() != null) {
+                throw new CopyChangeConflictException("Copy sharding is already enabled for book with id: " + bookId);
+            }
+            int available = book.getAvailableCopies() != null ? book.getAvailableCopies() : 0;
+            int total = book.getTotalCopies() != null ? book.getTotalCopies() : 0;
+            int onLoan = Math.max(total - available, 0);
+
+            // Slots are filled before the switch, so borrows never see an empty set of slots
+            mongoTemplate.remove(new Query(Criteria.where("bookId").is(bookId)), BookCopyShard.class);
+            List<BookCopyShard> shards = new ArrayList<>(slots);
+            for (int slot = 0; slot < slots; slot++) {
+                int shelf = share(available, slots, slot);
+                shards.add(new BookCopyShard(shardId(bookId, slot), bookId, slot, shelf,
+                        shelf + share(onLoan, slots, slot), null, null));
+            }
+            mongoTemplate.insertAll(shards);
+
+            Criteria unchanged = Criteria.where("_id").is(bookId).and("copyShards").is(null)
+                    .and("availableCopies").is(book.getAvailableCopies())
+                    .and("totalCopies").is(book.getTotalCopies());
+            Book switched = mongoTemplate.findAndModify(new Query(unchanged),
+                    new Update().set("copyShards", slots), FindAndModifyOptions.options().returnNew(true),
+                    Book.class);
+            if (switched != null) {
+                remember(switched);
+                bookCache.evict(bookId);
+                return getStatus(bookId);
+            }
+            // A copy moved in the meantime, the slots are rebuilt on the next attempt
+        }
+        mongoTemplate.remove(new Query(Criteria.where("bookId").is(bookId)), BookCopyShard.class);
+        throw new CopyChangeConflictException("Book with id: " + bookId + " is too busy to enable copy sharding, retry later");
+    }
+
+    public CopyShardStatusDTO disable(Long bookId) {
+        // No rebalance may move copies while the slots are drained, here or on another instance
+        rebalanceLock.lock();
+        try {
+            acquireLease();
+            try {
+                return drain(bookId);
+            } finally {
+                leaseService.release(LEASE_NAME);
+            }
+        } finally {
+            rebalanceLock.unlock();
+        }
+    }
+
+    private CopyShardStatusDTO drain(Long bookId) {
+        // Switch back first: from here on borrows and returns use the book document, which the
+        // slots are drained into; in-flight slot updates fail on the drained slots and retry there
+        Book book = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(bookId).and("copyShards").ne(null)),
+                new Update().unset("copyShards").set("availableCopies", 0),
+                Book.class);
+        if (book == null) {
+            throw new CopyChangeConflictException("Copy sharding is not enabled for book with id: " + bookId);
+        }
+        shardedBooks.remove(bookId);
+        // A move cut short by a crash still holds copies that are in neither slot
+        finishPendingMoves(bookId);
+        int drained = 0;
+        for (BookCopyShard shard : shards(bookId)) {
+            BookCopyShard before = mongoTemplate.findAndModify(
+                    new Query(Criteria.where("_id").is(shard.getId())),
+                    new Update().set("availableCopies", 0).set("capacity", 0),
+                    BookCopyShard.class);
+            if (before != null) {
+                drained += before.getAvailableCopies();
+            }
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(bookId)),
+                new Update().inc("availableCopies", drained), Book.class);
+        mongoTemplate.remove(new Query(Criteria.where("bookId").is(bookId)), BookCopyShard.class);
+        bookCache.evict(bookId);
+        return getStatus(bookId);
+    }
+
+    public void deleteShards(Long bookId) {
+        shardedBooks.remove(bookId);
+        mongoTemplate.remove(new Query(Criteria.where("bookId").is(bookId)), BookCopyShard.class);
+    }
+
+    // Every instance refreshes its hint, only the lease holder moves copies and writes the mirror
+    @Scheduled(initialDelayString = "${library.copy-shards.rebalance-interval:5000}",
+            fixedDelayString = "${library.copy-shards.rebalance-interval:5000}")
+    public void rebalanceAll() {
+        if (!rebalanceLock.tryLock()) {
+            return;
+        }
+        try {
+            reloadShardedBooks();
+            if (shardedBooks.isEmpty() || !leaseService.tryAcquire(LEASE_NAME, leaseTtl)) {
+                return;
+            }
+            try {
+                for (Long bookId : shardedBooks.keySet()) {
+                    // Extends the lease, a holder that lost it stops instead of racing the new one
+                    if (!leaseService.tryAcquire(LEASE_NAME, leaseTtl)) {
+                        return;
+                    }
+                    rebalance(bookId);
+                }
+            } finally {
+                leaseService.release(LEASE_NAME);
+            }
+        } catch (Exception e) {
+            // Database not reachable, try again on the next pass
+        } finally {
+            rebalanceLock.unlock();
+        }
+    }
+
+    /**
+     * Evens out the copies on the shelf so random slot picks rarely hit an empty slot, then
+     * refreshes the mirror on the book document. Callers hold the rebalance lease.
+     */
+    void rebalance(Long bookId) {
+        finishPendingMoves(bookId);
+        List<BookCopyShard> shards = new ArrayList<>(shards(bookId));
+        // Drained slots take no part, their copies already went back to the book document
+        shards.removeIf(shard -> shard.getCapacity() <= 0);
+        shards.sort(Comparator.comparingInt(BookCopyShard::getAvailableCopies));
+        for (int poor = 0, rich = shards.size() - 1; poor < rich; poor++, rich--) {
+            int moved = (shards.get(rich).getAvailableCopies() - shards.get(poor).getAvailableCopies()) / 2;
+            if (moved <= 0) {
+                break;
+            }
+            // Capacity moves along with the copies; the move is recorded on the giving slot in the
+            // same update that takes the copies, so a crash before the give is finished next pass
+            ShardMove move = new ShardMove(UUID.randomUUID().toString(), shards.get(poor).getId(), moved);
+            BookCopyShard taken = mongoTemplate.findAndModify(
+                    new Query(Criteria.where("_id").is(shards.get(rich).getId())
+                            .and("availableCopies").gte(moved).and("pendingMove").is(null)),
+                    new Update().inc("availableCopies", -moved).inc("capacity", -moved).set("pendingMove", move),
+                    BookCopyShard.class);
+            if (taken != null) {
+                finishMove(bookId, taken.getId(), move);
+            }
+        }
+        refreshMirror(bookId);
+    }
+
+    private void finishPendingMoves(Long bookId) {
+        mongoTemplate.find(new Query(Criteria.where("bookId").is(bookId).and("pendingMove").ne(null)),
+                BookCopyShard.class)
+                .forEach(shard -> finishMove(bookId, shard.getId(), shard.getPendingMove()));
+    }
+
+    // Adds the copies of a recorded move to the receiving slot, at most once. If that slot was
+    // drained they go back to the giving slot, or to the book document if both were drained.
+    private void finishMove(Long bookId, String from, ShardMove move) {
+        boolean given = mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(move.getTo()).and("capacity").gt(0)
+                        .and("lastMove").ne(move.getMoveId())),
+                new Update().inc("availableCopies", move.getCopies()).inc("capacity", move.getCopies())
+                        .set("lastMove", move.getMoveId()),
+                BookCopyShard.class).getModifiedCount() > 0;
+        Query pending = new Query(Criteria.where("_id").is(from).and("pendingMove.moveId").is(move.getMoveId()));
+        if (!given && !mongoTemplate.exists(
+                new Query(Criteria.where("_id").is(move.getTo()).and("lastMove").is(move.getMoveId())),
+                BookCopyShard.class)) {
+            boolean returned = mongoTemplate.updateFirst(
+                    Query.of(pending).addCriteria(Criteria.where("capacity").gt(0)),
+                    new Update().inc("availableCopies", move.getCopies()).inc("capacity", move.getCopies())
+                            .unset("pendingMove"),
+                    BookCopyShard.class).getModifiedCount() > 0;
+            if (returned) {
+                return;
+            }
+            if (mongoTemplate.findAndModify(pending, new Update().unset("pendingMove"), BookCopyShard.class) != null) {
+                mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(bookId)),
+                        new Update().inc("availableCopies", move.getCopies()), Book.class);
+                bookCache.evict(bookId);
+            }
+            return;
+        }
+        mongoTemplate.updateFirst(pending, new Update().unset("pendingMove"), BookCopyShard.class);
+    }
+
+    // Writes the summed slots to the book document and applies what borrows on the slots skipped:
+    // cache, suggestion and, when the title ran out or came back, the availability counts
+    private void refreshMirror(Long bookId) {
+        int available = shards(bookId).stream().mapToInt(BookCopyShard::getAvailableCopies).sum();
+        Book before = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(bookId).and("copyShards").ne(null)),
+                new Update().set("availableCopies", available), Book.class);
+        ShardedBook sharded = shardedBooks.get(bookId);
+        if (sharded != null) {
+            sharded.available().set(available);
+        }
+        if (before == null || Objects.equals(before.getAvailableCopies(), available)) {
+            return;
+        }
+        boolean wasAvailable = CatalogFacetCounts.isAvailable(before);
+        before.setAvailableCopies(available);
+        bookCache.evict(bookId);
+        bookSuggestionService.index(before);
+        if (wasAvailable != available > 0) {
+            catalogFacetCounts.availabilityChanged(available > 0);
+            availabilityIndex.set(bookId, available > 0);
+        }
+    }
+
+    private void reloadShardedBooks() {
+        // Served by the partial index on copyShards
+        Query query = new Query(Criteria.where("copyShards").gt(0));
+        query.fields().include("copyShards").include("availableCopies");
+        List<Book> books = mongoTemplate.find(query, Book.class);
+        shardedBooks.keySet().retainAll(books.stream().map(Book::getId).collect(Collectors.toSet()));
+        books.forEach(this::remember);
+    }
+
+    private void remember(Book book) {
+        int available = book.getAvailableCopies() != null ? book.getAvailableCopies() : 0;
+        shardedBooks.put(book.getId(), new ShardedBook(book.getCopyShards(), new AtomicInteger(available)));
+    }
+
+    private void acquireLease() {
+        for (int attempt = 0; attempt < LEASE_ATTEMPTS; attempt++) {
+            if (leaseService.tryAcquire(LEASE_NAME, leaseTtl)) {
+                return;
+            }
+            try {
+                Thread.sleep(LEASE_RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        throw new CopyChangeConflictException("Copy shards are being rebalanced by another instance, retry later");
+    }
+
+    private List<BookCopyShard> shards(Long bookId) {
+        return mongoTemplate.find(new Query(Criteria.where("bookId").is(bookId)), BookCopyShard.class);
+    }
+
+    private static String shardId(Long bookId, int slot) {
+        return bookId + ":" + slot;
+    }
+
+    // Spreads count over slots as evenly as possible
+    private static int share(int count, int slots, int slot) {
+        return count / slots + (slot < count % slots ? 1 : 0);
+    }
+}
@@ -0,0 +1,87 @@
+package com.library.book.availability;
+
+import com.library.book.dto.AvailabilityDeltaDTO;
+import com.library.book.dto.AvailabilitySnapshotDTO;
+import com.library.book.dto.BookChangeEventDTO;
+import com.library.book.entity.Book;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AvailabilityIndexLoaderTest {
+
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private AvailabilityIndex index;
+    private AvailabilityIndexLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new MongoTemplate(client, "test");
+        index = new AvailabilityIndex(100);
+        loader = new AvailabilityIndexLoader(mongoTemplate, index);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void changesMadeThroughOtherInstancesReachTheIndex() {
+        book(1L, 2);
+        book(2L, 0);
+        loader.reload();
+        AvailabilitySnapshotDTO snapshot = index.snapshot();
+
+        // Another instance lends the last copies of 1 and returns one of 2, then deletes 3
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(1L)), new Update().set("availableCopies", 0), Book.class);
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(2L)), new Update().set("availableCopies", 1), Book.class);
+        loader.onBookChanged(event(1L, "update", List.of("availableCopies")));
+        loader.onBookChanged(event(2L, "update", List.of("availableCopies")));
+        loader.onBookChanged(event(2L, "update", List.of("title")));
+
+        AvailabilityDeltaDTO delta = index.changesSince(snapshot.getEpoch(), snapshot.getVersion());
+        assertThat(delta.getAvailable()).containsExactly(2L);
+        assertThat(delta.getUnavailable()).containsExactly(1L);
+    }
+
+    @Test
+    void aDeletedBookIsNoLongerAvailable() {
+        book(1L, 2);
+        loader.reload();
+
+        loader.onBookChanged(event(1L, "delete", List.of()));
+
+        assertThat(index.snapshot().getAvailableCount()).isZero();
+    }
+
+    private void book(Long id, int availableCopies) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle("Title " + id);
+        book.setAvailableCopies(availableCopies);
+        mongoTemplate.insert(book);
+    }
+
+    private static BookChangeEventDTO event(Long bookId, String operation, List<String> changedFields) {
+        return new BookChangeEventDTO(0, bookId, operation, changedFields, Instant.now());
+    }
+}
@@ -0,0 +1,190 @@
+package com.library.book.availability;
+
+import com.library.book.dto.AvailabilityDeltaDTO;
+import com.library.book.dto.AvailabilitySnapshotDTO;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AvailabilityIndexTest {
+
+    @Test
+    void snapshotRoundTripsThroughThePortableFormat() throws IOException {
+        AvailabilityIndex index = new AvailabilityIndex(100);
+        reload(index, bitmap(1, 2, 3, 1_000_000_000_000L));
+        index.set(2, false);
+
+        AvailabilitySnapshotDTO snapshot = index.snapshot();
+
+        assertThat(snapshot.getAvailableCount()).isEqualTo(3);
+        assertThat(toSet(read(snapshot.getBitmap()))).containsExactlyInAnyOrder(1L, 3L, 1_000_000_000_000L);
+        assertThat(index.snapshot()).isSameAs(snapshot); // cached until the version moves
+    }
+
+    @Test
+    void deltaCarriesOnlyTheLatestStateOfEachBook() {
+        AvailabilityIndex index = new AvailabilityIndex(100);
+        reload(index, bitmap(1, 2));
+        AvailabilitySnapshotDTO snapshot = index.snapshot();
+
+        index.set(1, false);
+        index.set(1, true);
+        index.set(2, false);
+        index.set(5, true);
+        index.set(5, true); // no change, no version
+
+        AvailabilityDeltaDTO delta = index.changesSince(snapshot.getEpoch(), snapshot.getVersion());
+        assertThat(delta.isFullSnapshotRequired()).isFalse();
+        assertThat(delta.getVersion()).isEqualTo(snapshot.getVersion() + 4);
+        assertThat(delta.getAvailable()).containsExactlyInAnyOrder(1L, 5L);
+        assertThat(delta.getUnavailable()).containsExactly(2L);
+
+        AvailabilityDeltaDTO empty = index.changesSince(snapshot.getEpoch(), delta.getVersion());
+        assertThat(empty.getAvailable()).isEmpty();
+        assertThat(empty.getUnavailable()).isEmpty();
+    }
+
+    @Test
+    void unknownEpochFutureVersionOrTrimmedLogRequireASnapshot() {
+        AvailabilityIndex index = new AvailabilityIndex(2);
+        reload(index, bitmap());
+        String epoch = index.snapshot().getEpoch();
+        long start = index.snapshot().getVersion();
+
+        assertThat(index.changesSince("another-epoch", start).isFullSnapshotRequired()).isTrue();
+        assertThat(index.changesSince(epoch, start + 1).isFullSnapshotRequired()).isTrue();
+
+        index.set(1, true);
+        index.set(2, true);
+        assertThat(index.changesSince(epoch, start).isFullSnapshotRequired()).isFalse();
+        index.set(3, true); // pushes the first change out of the log
+        assertThat(index.changesSince(epoch, start).isFullSnapshotRequired()).isTrue();
+        assertThat(index.changesSince(epoch, start + 1).isFullSnapshotRequired()).isFalse();
+    }
+
+    @Test
+    void reloadLogsTheDifferencesAsChanges() {
+        AvailabilityIndex index = new AvailabilityIndex(100);
+        reload(index, bitmap(1, 2, 3));
+        AvailabilitySnapshotDTO snapshot = index.snapshot();
+
+        reload(index, bitmap(2, 3, 4));
+
+        AvailabilityDeltaDTO delta = index.changesSince(snapshot.getEpoch(), snapshot.getVersion());
+        assertThat(delta.getAvailable()).containsExactly(4L);
+        assertThat(delta.getUnavailable()).containsExactly(1L);
+    }
+
+    @Test
+    void aCallerFollowingDeltasStaysInStepWithTheIndex() throws IOException {
+        Random random = new Random(7);
+        AvailabilityIndex index = new AvailabilityIndex(50);
+        Set<Long> truth = new HashSet<>();
+        reload(index, bitmap());
+
+        AvailabilitySnapshotDTO snapshot = index.snapshot();
+        String epoch = snapshot.getEpoch();
+        long version = snapshot.getVersion();
+        Set<Long> replica = toSet(read(snapshot.getBitmap()));
+        int resets = 0;
+
+        for (int round = 0; round < 500; round++) {
+            int writes = random.nextInt(round % 50 == 0 ? 120 : 10);
+            for (int i = 0; i < writes; i++) {
+                long bookId = random.nextInt(200);
+                boolean isAvailable = random.nextBoolean();
+                index.set(bookId, isAvailable);
+                if (isAvailable) {
+                    truth.add(bookId);
+                } else {
+                    truth.remove(bookId);
+                }
+            }
+            if (round % 97 == 0) {
+                // Periodic reload from the database with a few drifted entries
+                truth.add(1_000L + round);
+                reload(index, bitmap(truth.stream().mapToLong(Long::longValue).toArray()));
+            }
+
+            AvailabilityDeltaDTO delta = index.changesSince(epoch, version);
+            if (delta.isFullSnapshotRequired()) {
+                snapshot = index.snapshot();
+                replica = toSet(read(snapshot.getBitmap()));
+                version = snapshot.getVersion();
+                resets++;
+            } else {
+                replica.addAll(delta.getAvailable());
+                replica.removeAll(delta.getUnavailable());
+                version = delta.getVersion();
+            }
+            assertThat(replica).as("round %d", round).isEqualTo(truth);
+        }
+        assertThat(resets).isPositive(); // the small change log forced some snapshots
+    }
+
+    @Test
+    void aWriteDuringTheReadIsNotRevertedByTheReload() {
+        AvailabilityIndex index = new AvailabilityIndex(100);
+        reload(index, bitmap(1, 2));
+        AvailabilitySnapshotDTO snapshot = index.snapshot();
+
+        long mark = index.version();
+        index.set(3, true); // made while the bitmap below was being read
+        index.set(1, false);
+        index.reload(bitmap(1, 2), mark, 0);
+
+        AvailabilityDeltaDTO delta = index.changesSince(snapshot.getEpoch(), snapshot.getVersion());
+        assertThat(delta.getAvailable()).containsExactly(3L);
+        assertThat(delta.getUnavailable()).containsExactly(1L);
+        assertThat(delta.getVersion()).isEqualTo(snapshot.getVersion() + 2); // nothing logged twice
+    }
+
+    @Test
+    void followingTheChangeStreamVersionsByClusterTimeUnderTheSharedEpoch() {
+        AvailabilityIndex index = new AvailabilityIndex(100);
+        index.followChangeStream("shared");
+        index.reload(bitmap(1), index.version(), 1_000);
+        AvailabilitySnapshotDTO snapshot = index.snapshot();
+
+        index.set(2, true); // the change stream delivers it
+        index.changed(2, true, 1_005);
+        index.changed(3, true, 1_003); // delivered late, still ordered after the last change
+
+        assertThat(snapshot.getEpoch()).isEqualTo("shared");
+        assertThat(snapshot.getVersion()).isEqualTo(1_000);
+        AvailabilityDeltaDTO delta = index.changesSince("shared", 1_000);
+        assertThat(delta.getVersion()).isEqualTo(1_006);
+        assertThat(delta.getAvailable()).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(index.changesSince("shared", 1_005).getAvailable()).containsExactly(3L);
+    }
+
+    private static void reload(AvailabilityIndex index, Roaring64NavigableMap fresh) {
+        index.reload(fresh, index.version(), 0);
+    }
+
+    private static Roaring64NavigableMap bitmap(long... ids) {
+        Roaring64NavigableMap bitmap = new Roaring64NavigableMap();
+        for (long id : ids) {
+            bitmap.addLong(id);
+        }
+        return bitmap;
+    }
+
+    private static Roaring64NavigableMap read(byte[] bytes) throws IOException {
+        Roaring64NavigableMap bitmap = new Roaring64NavigableMap();
+        bitmap.deserializePortable(new DataInputStream(new ByteArrayInputStream(bytes)));
+        return bitmap;
+    }
+
+    private static Set<Long> toSet(Roaring64NavigableMap bitmap) {
+        Set<Long> ids = new HashSet<>();
+        bitmap.forEach(ids::add);
+        return ids;
+    }
+}
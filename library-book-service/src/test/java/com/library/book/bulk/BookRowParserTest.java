@@ -0,0 +1,96 @@
+package com.library.book.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.library.book.dto.BookDTO;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BookRowParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    void splitsPlainAndQuotedFields() {
+        assertThat(BookRowParser.splitCsv("a,b,c")).containsExactly("a", "b", "c");
+        assertThat(BookRowParser.splitCsv("\"Dune, Part One\",123")).containsExactly("Dune, Part One", "123");
+        assertThat(BookRowParser.splitCsv("\"She said \"\"hi\"\"\",x")).containsExactly("She said \"hi\"", "x");
+    }
+
+    @Test
+    void keepsEmptyFieldsIncludingTrailingOnes() {
+        assertThat(BookRowParser.splitCsv(",,")).containsExactly("", "", "");
+        assertThat(BookRowParser.splitCsv("a,")).containsExactly("a", "");
+        assertThat(BookRowParser.splitCsv("\"\"")).containsExactly("");
+    }
+
+    @Test
+    void keepsLineBreaksInsideQuotedFields() {
+        assertThat(BookRowParser.splitCsv("\"line one\nline two\",b")).containsExactly("line one\nline two", "b");
+    }
+
+    @Test
+    void readsCsvRowsByHeaderNameInAnyOrder() throws IOException {
+        BookRowParser parser = parser(BookRowParser.Format.CSV, """
+                ISBN,Title,total_copies,publicationDate,author_id,description
+                978-1,"Dune, Part One",3,1965-08-01,7,"A desert
+                planet"
+
+                978-2,Emma,,,,
+                """);
+
+        BookDTO dune = parser.parse(parser.nextLine());
+        assertThat(parser.getRow()).isEqualTo(2);
+        assertThat(dune.getTitle()).isEqualTo("Dune, Part One");
+        assertThat(dune.getIsbn()).isEqualTo("978-1");
+        assertThat(dune.getTotalCopies()).isEqualTo(3);
+        assertThat(dune.getPublicationDate()).isEqualTo(LocalDate.of(1965, 8, 1));
+        assertThat(dune.getAuthorId()).isEqualTo(7L);
+        assertThat(dune.getDescription()).isEqualTo("A desert\nplanet");
+
+        // Blank lines are skipped and the row number still points at the source line
+        BookDTO emma = parser.parse(parser.nextLine());
+        assertThat(parser.getRow()).isEqualTo(5);
+        assertThat(emma.getTotalCopies()).isNull();
+        assertThat(emma.getAuthorId()).isNull();
+        assertThat(parser.nextLine()).isNull();
+    }
+
+    @Test
+    void aMalformedRowFailsOnlyItself() throws IOException {
+        BookRowParser parser = parser(BookRowParser.Format.CSV, "title,isbn,totalCopies\nA,1,many\nB,2,4\n");
+
+        String bad = parser.nextLine();
+        assertThatThrownBy(() -> parser.parse(bad)).isInstanceOf(NumberFormatException.class);
+        assertThat(parser.parse(parser.nextLine()).getTotalCopies()).isEqualTo(4);
+    }
+
+    @Test
+    void rejectsCsvWithoutTheRequiredColumns() {
+        assertThatThrownBy(() -> parser(BookRowParser.Format.CSV, "title,category\n"))
+                .isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> parser(BookRowParser.Format.CSV, ""))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void readsNdjsonLines() throws IOException {
+        BookRowParser parser = parser(BookRowParser.Format.NDJSON,
+                "{\"title\":\"Emma\",\"isbn\":\"978-2\",\"publicationDate\":\"1815-12-23\"}\n\n{\"title\":\"Dune\"}\n");
+
+        assertThat(parser.parse(parser.nextLine()).getPublicationDate()).isEqualTo(LocalDate.of(1815, 12, 23));
+        assertThat(parser.parse(parser.nextLine()).getTitle()).isEqualTo("Dune");
+        assertThat(parser.getRow()).isEqualTo(3);
+    }
+
+    private BookRowParser parser(BookRowParser.Format format, String input) throws IOException {
+        return new BookRowParser(new BufferedReader(new StringReader(input)), format, objectMapper);
+    }
+}
@@ -0,0 +1,82 @@
+package com.library.book.changes;
+
+import com.library.book.dto.BookChangeBatchDTO;
+import com.library.book.dto.BookChangeEventDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class BookChangeBroadcasterTest {
+
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    @Test
+    void catchUpWorksAcrossGapsBetweenVersions() {
+        BookChangeBroadcaster broadcaster = new BookChangeBroadcaster(eventPublisher, 10);
+        broadcaster.startAt(100);
+        broadcaster.publish(event(250, 1L));
+        broadcaster.publish(event(900, 2L));
+
+        BookChangeBatchDTO batch = broadcaster.changesSince(100);
+        assertThat(batch.isResetRequired()).isFalse();
+        assertThat(batch.getEvents()).extracting(BookChangeEventDTO::getVersion).containsExactly(250L, 900L);
+        assertThat(broadcaster.changesSince(250).getEvents()).extracting(BookChangeEventDTO::getBookId)
+                .containsExactly(2L);
+        assertThat(broadcaster.changesSince(99).isResetRequired()).isTrue();
+    }
+
+    @Test
+    void replayedEventsAreDeliveredOnce() {
+        BookChangeBroadcaster broadcaster = new BookChangeBroadcaster(eventPublisher, 10);
+        broadcaster.startAt(100);
+        broadcaster.publish(event(200, 1L));
+        broadcaster.startAt(100); // resumed from an older checkpoint
+        broadcaster.publish(event(200, 1L));
+        broadcaster.publish(event(300, 2L));
+
+        assertThat(broadcaster.changesSince(100).getEvents()).hasSize(2);
+        verify(eventPublisher, times(2)).publishEvent((Object) argThat((Object event) -> event instanceof BookChangeEventDTO));
+    }
+
+    @Test
+    void trimmedBufferRequiresAResetFromBeforeTheOldestRetainedEvent() {
+        BookChangeBroadcaster broadcaster = new BookChangeBroadcaster(eventPublisher, 2);
+        broadcaster.startAt(0);
+        broadcaster.publish(event(10, 1L));
+        broadcaster.publish(event(20, 2L));
+        broadcaster.publish(event(30, 3L));
+
+        assertThat(broadcaster.changesSince(5).isResetRequired()).isTrue();
+        assertThat(broadcaster.changesSince(10).getEvents()).extracting(BookChangeEventDTO::getVersion)
+                .containsExactly(20L, 30L);
+    }
+
+    @Test
+    void resetDropsTheBufferAndTellsListeners() {
+        BookChangeBroadcaster broadcaster = new BookChangeBroadcaster(eventPublisher, 10);
+        broadcaster.startAt(0);
+        broadcaster.publish(event(10, 1L));
+
+        broadcaster.reset(500);
+
+        verify(eventPublisher).publishEvent((Object) argThat((Object event) -> event instanceof BookChangeEventDTO change
+                && change.getBookId() == null && change.getVersion() == 500));
+        assertThat(broadcaster.changesSince(10).isResetRequired()).isTrue();
+        BookChangeBatchDTO batch = broadcaster.changesSince(500);
+        assertThat(batch.isResetRequired()).isFalse();
+        assertThat(batch.getVersion()).isEqualTo(500);
+        assertThat(batch.getEvents()).isEmpty();
+    }
+
+    private static BookChangeEventDTO event(long version, Long bookId) {
+        return new BookChangeEventDTO(version, bookId, "update", List.of("title"), Instant.now());
+    }
+}
@@ -0,0 +1,91 @@
+package com.library.book.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SequenceBlockAllocatorTest {
+
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final MongoOperations mongoOperations = mock(MongoOperations.class);
+
+    SequenceBlockAllocatorTest() {
+        // Behaves like the $inc upsert on the counter document
+        when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                any(Class.class))).thenAnswer(invocation -> {
+                    Query query = invocation.getArgument(0);
+                    Update update = invocation.getArgument(1);
+                    String name = query.getQueryObject().getString("_id");
+                    long size = ((Number) update.getUpdateObject().get("$inc", org.bson.Document.class).get("seq"))
+                            .longValue();
+                    Object counter = BeanUtils.instantiateClass((Class<?>) invocation.getArgument(3));
+                    ReflectionTestUtils.setField(counter, "seq",
+                            counters.computeIfAbsent(name, ignored -> new AtomicLong()).addAndGet(size));
+                    return counter;
+                });
+    }
+
+    @Test
+    void handsOutConsecutiveIdsFromOneBlock() {
+        SequenceBlockAllocator allocator = new SequenceBlockAllocator(mongoOperations, 10);
+
+        for (long expected = 1; expected <= 25; expected++) {
+            assertThat(allocator.next("books_sequence")).isEqualTo(expected);
+        }
+        // Three blocks of ten for 25 ids
+        verify(mongoOperations, times(3)).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), any(Class.class));
+    }
+
+    @Test
+    void keepsSequencesApart() {
+        SequenceBlockAllocator allocator = new SequenceBlockAllocator(mongoOperations, 10);
+
+        assertThat(allocator.next("books_sequence")).isEqualTo(1L);
+        assertThat(allocator.next("authors_sequence")).isEqualTo(1L);
+        assertThat(allocator.next("books_sequence")).isEqualTo(2L);
+    }
+
+    @Test
+    void instancesSharingACounterNeverHandOutTheSameId() throws Exception {
+        SequenceBlockAllocator first = new SequenceBlockAllocator(mongoOperations, 7);
+        SequenceBlockAllocator second = new SequenceBlockAllocator(mongoOperations, 7);
+        int threads = 8;
+        int idsPerThread = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            SequenceBlockAllocator allocator = t % 2 == 0 ? first : second;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < idsPerThread; i++) {
+                    assertThat(ids.add(allocator.next("books_sequence"))).isTrue();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(ids).hasSize(threads * idsPerThread);
+        // Each block is claimed once, so at most one partly used block per instance is left over
+        assertThat(counters.get("books_sequence").get()).isLessThan(threads * idsPerThread + 2 * 7);
+    }
+}
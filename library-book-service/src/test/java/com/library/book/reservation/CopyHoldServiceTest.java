@@ -0,0 +1,172 @@
+package com.library.book.reservation;
+
+import com.library.book.dto.CopyReservationDTO;
+import com.library.book.entity.Book;
+import com.library.book.entity.CopyHold;
+import com.library.book.entity.HoldStatus;
+import com.library.book.exception.ReservationNotConfirmableException;
+import com.library.book.repository.BookRepository;
+import com.library.book.service.BookService;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CopyHoldServiceTest {
+
+    private final BookService bookService = mock(BookService.class);
+    // Copies put back per book, every hold below is on its own book
+    private final Map<Long, AtomicInteger> returned = new ConcurrentHashMap<>();
+
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new MongoTemplate(client, "test");
+        when(bookService.tryDecreaseAvailableCopies(anyLong())).thenAnswer(invocation -> book(invocation.getArgument(0)));
+        when(bookService.tryIncreaseAvailableCopies(anyLong())).thenAnswer(invocation -> {
+            Long bookId = invocation.getArgument(0);
+            returned.computeIfAbsent(bookId, id -> new AtomicInteger()).incrementAndGet();
+            return book(bookId);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void confirmedHoldIsNotExpiredAndReleaseReturnsItsCopyOnce() {
+        CopyHoldService service = service(60_000);
+        String token = service.reserve(1L).getToken();
+
+        assertThat(service.confirm(token).getStatus()).isEqualTo("CONFIRMED");
+        assertThat(service.confirm(token).getStatus()).isEqualTo("CONFIRMED");
+        service.sweepExpired();
+        assertThat(service.release(token).getStatus()).isEqualTo("RELEASED");
+        assertThat(service.release(token).getStatus()).isEqualTo("RELEASED");
+
+        assertThat(returned.get(1L)).hasValue(1);
+    }
+
+    @Test
+    void expiredHoldCannotBeConfirmed() throws InterruptedException {
+        CopyHoldService service = service(1);
+        String token = service.reserve(1L).getToken();
+        Thread.sleep(20);
+
+        service.expireDue();
+        service.sweepExpired();
+
+        assertThat(service.getHold(token).getStatus()).isEqualTo("EXPIRED");
+        assertThatThrownBy(() -> service.confirm(token)).isInstanceOf(ReservationNotConfirmableException.class);
+        assertThat(returned.get(1L)).hasValue(1);
+    }
+
+    @Test
+    void confirmRacingExpiryReturnsEachCopyAtMostOnce() throws Exception {
+        int holds = 100;
+        CopyHoldService service = service(5_000);
+        List<CopyReservationDTO> reservations = new ArrayList<>(holds);
+        for (long bookId = 0; bookId < holds; bookId++) {
+            reservations.add(service.reserve(bookId));
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> expirers = new ArrayList<>();
+        expirers.add(pool.submit(() -> {
+            while (running.get()) {
+                service.expireDue();
+            }
+        }));
+        expirers.add(pool.submit(() -> {
+            while (running.get()) {
+                service.sweepExpired();
+            }
+        }));
+        // Two confirmers per token, so confirm also races itself
+        List<Future<?>> confirmers = new ArrayList<>();
+        for (int c = 0; c < 2; c++) {
+            confirmers.add(pool.submit(() -> {
+                for (int i = 0; i < holds; i++) {
+                    // Every fourth hold is confirmed early and every fourth is left to expire,
+                    // the rest are confirmed within a few ms of their deadline
+                    CopyReservationDTO reservation = reservations.get(i);
+                    if (i % 4 == 1) {
+                        continue;
+                    }
+                    long wait = reservation.getExpiresAt().toEpochMilli() - System.currentTimeMillis()
+                            + (i % 4 == 0 ? -500 : ThreadLocalRandom.current().nextInt(-5, 6));
+                    try {
+                        Thread.sleep(Math.max(wait, 0));
+                        service.confirm(reservation.getToken());
+                    } catch (ReservationNotConfirmableException e) {
+                        // Expired first
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }));
+        }
+        for (Future<?> confirmer : confirmers) {
+            confirmer.get(60, TimeUnit.SECONDS);
+        }
+        Thread.sleep(50);
+        running.set(false);
+        for (Future<?> expirer : expirers) {
+            expirer.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        service.sweepExpired();
+
+        int confirmed = 0;
+        for (CopyReservationDTO reservation : reservations) {
+            String token = reservation.getToken();
+            CopyHold hold = mongoTemplate.findById(token, CopyHold.class);
+            AtomicInteger copies = returned.getOrDefault(hold.getBookId(), new AtomicInteger());
+            if (hold.getStatus() == HoldStatus.CONFIRMED) {
+                confirmed++;
+                assertThat(copies).as("confirmed hold %s", token).hasValue(0);
+            } else {
+                assertThat(hold.getStatus()).isEqualTo(HoldStatus.EXPIRED);
+                assertThat(copies).as("expired hold %s", token).hasValue(1);
+            }
+        }
+        assertThat(confirmed).isPositive().isLessThan(holds);
+    }
+
+    private CopyHoldService service(long holdTtlMillis) {
+        return new CopyHoldService(mongoTemplate, bookService, mock(BookRepository.class), holdTtlMillis, 60_000, 5);
+    }
+
+    private static Book book(Long bookId) {
+        Book book = new Book();
+        book.setId(bookId);
+        book.setAvailableCopies(1);
+        return book;
+    }
+}
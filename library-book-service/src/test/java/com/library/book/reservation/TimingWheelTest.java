@@ -0,0 +1,96 @@
+package com.library.book.reservation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    @Test
+    void itemFiresOnTheTickOfItsDeadlineAndNotBefore() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 0);
+        wheel.schedule("a", 35); // rounds up to tick 4
+
+        assertThat(wheel.advance(39)).isEmpty();
+        assertThat(wheel.advance(40)).containsExactly("a");
+        assertThat(wheel.advance(50)).isEmpty();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void deadlineInThePastFiresOnTheNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 100);
+        wheel.schedule("late", 20);
+
+        assertThat(wheel.advance(105)).isEmpty();
+        assertThat(wheel.advance(110)).containsExactly("late");
+    }
+
+    @Test
+    void cancelledItemDoesNotFire() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 0);
+        wheel.schedule("a", 30);
+        wheel.schedule("b", 30);
+        wheel.cancel("a");
+
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.advance(30)).containsExactly("b");
+    }
+
+    @Test
+    void deadlineBeyondOneTurnWaitsForItsOwnTurn() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 0);
+        wheel.schedule("far", 200); // tick 20, shares bucket 4 with ticks 4 and 12
+        wheel.schedule("near", 40); // tick 4
+
+        assertThat(wheel.advance(40)).containsExactly("near");
+        assertThat(wheel.advance(120)).isEmpty();
+        assertThat(wheel.advance(199)).isEmpty();
+        assertThat(wheel.advance(200)).containsExactly("far");
+    }
+
+    @Test
+    void scheduleAcrossTheWrapOfTheBucketIndex() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 0);
+        wheel.advance(60); // current tick 6, buckets 7, 0, 1 ... come next
+        wheel.schedule("a", 70);
+        wheel.schedule("b", 80); // tick 8, bucket 0
+        wheel.schedule("c", 95); // tick 10, bucket 2
+
+        assertThat(wheel.advance(70)).containsExactly("a");
+        assertThat(wheel.advance(89)).containsExactly("b");
+        assertThat(wheel.advance(100)).containsExactly("c");
+    }
+
+    @Test
+    void advanceAfterALongPauseVisitsEachBucketOnceAndFiresEverythingDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 0);
+        List<String> scheduled = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            wheel.schedule("item-" + i, i * 10L); // five turns of the wheel
+            scheduled.add("item-" + i);
+        }
+        wheel.schedule("later", 1_000_000_010L);
+
+        // From is clamped to the last turn, yet items from every earlier turn are found in their buckets
+        List<String> expired = wheel.advance(1_000_000_000L);
+
+        assertThat(expired).containsExactlyInAnyOrderElementsOf(scheduled);
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.advance(1_000_000_009L)).isEmpty();
+        assertThat(wheel.advance(1_000_000_010L)).containsExactly("later");
+    }
+
+    @Test
+    void advanceBackwardsDoesNotRewindTheWheel() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 100);
+        wheel.advance(200);
+        wheel.schedule("a", 150); // already past, goes to tick 21
+
+        assertThat(wheel.advance(120)).isEmpty();
+        assertThat(wheel.advance(210)).containsExactly("a");
+    }
+}
@@ -0,0 +1,80 @@
+package com.library.book.search;
+
+import com.library.book.dto.BookChangeEventDTO;
+import com.library.book.dto.SuggestionDTO;
+import com.library.book.entity.Book;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookSuggestionServiceTest {
+
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private BookSuggestionService service;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new MongoTemplate(client, "test");
+        service = new BookSuggestionService(mongoTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void titlesOnLoanRankAboveTitlesThatAreMerelyWellStocked() {
+        book(1L, "Dune", 50, 50);
+        book(2L, "Dune Messiah", 3, 1);
+        service.rebuild();
+
+        assertThat(service.suggest("dun", 10)).extracting(SuggestionDTO::getId).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void changesMadeThroughOtherInstancesReachTheTrie() {
+        book(1L, "Dune", 5, 5);
+        book(2L, "Emma", 5, 5);
+        service.rebuild();
+
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(1L)), new Update().set("title", "Dune Messiah"),
+                Book.class);
+        service.onBookChanged(event(1L, "update", List.of("title")));
+        service.onBookChanged(event(2L, "delete", List.of()));
+
+        assertThat(service.suggest("mess", 10)).extracting(SuggestionDTO::getId).containsExactly(1L);
+        assertThat(service.suggest("emma", 10)).isEmpty();
+    }
+
+    private void book(Long id, String title, int totalCopies, int availableCopies) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(title);
+        book.setTotalCopies(totalCopies);
+        book.setAvailableCopies(availableCopies);
+        mongoTemplate.insert(book);
+    }
+
+    private static BookChangeEventDTO event(Long bookId, String operation, List<String> changedFields) {
+        return new BookChangeEventDTO(0, bookId, operation, changedFields, Instant.now());
+    }
+}
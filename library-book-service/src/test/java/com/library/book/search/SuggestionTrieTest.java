@@ -0,0 +1,135 @@
+package com.library.book.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SuggestionTrieTest {
+
+    @Test
+    void suggestsByAnyWordOfTheLabelHeaviestFirst() {
+        SuggestionTrie trie = new SuggestionTrie(5);
+        trie.put(1L, "Harry Potter and the Philosopher's Stone", 10);
+        trie.put(2L, "The Pottery Handbook", 50);
+        trie.put(3L, "Dune", 100);
+
+        assertThat(labels(trie.suggest("pott", 5)))
+                .containsExactly("The Pottery Handbook", "Harry Potter and the Philosopher's Stone");
+        assertThat(labels(trie.suggest("HARRY p", 5))).containsExactly("Harry Potter and the Philosopher's Stone");
+        assertThat(labels(trie.suggest("the", 5)))
+                .containsExactly("The Pottery Handbook", "Harry Potter and the Philosopher's Stone");
+        assertThat(trie.suggest("x", 5)).isEmpty();
+        assertThat(trie.suggest("  ", 5)).isEmpty();
+    }
+
+    @Test
+    void matchesAccentedLabelsWithPlainPrefixes() {
+        SuggestionTrie trie = new SuggestionTrie(5);
+        trie.put(1L, "L'Étranger", 1);
+
+        assertThat(labels(trie.suggest("etr", 5))).containsExactly("L'Étranger");
+        assertThat(labels(trie.suggest("Étr", 5))).containsExactly("L'Étranger");
+    }
+
+    @Test
+    void removingATopEntryRefillsTheCacheFromBelow() {
+        SuggestionTrie trie = new SuggestionTrie(2);
+        trie.put(1L, "Alpha", 30);
+        trie.put(2L, "Alpine", 20);
+        trie.put(3L, "Altitude", 10);
+        assertThat(labels(trie.suggest("al", 5))).containsExactly("Alpha", "Alpine");
+
+        trie.remove(1L);
+
+        assertThat(labels(trie.suggest("al", 5))).containsExactly("Alpine", "Altitude");
+        assertThat(trie.size()).isEqualTo(2);
+    }
+
+    @Test
+    void puttingAnIdAgainReplacesItsLabelAndWeight() {
+        SuggestionTrie trie = new SuggestionTrie(5);
+        trie.put(1L, "Old Title", 1);
+        trie.put(2L, "Other", 5);
+        trie.put(1L, "New Title", 10);
+
+        assertThat(trie.suggest("old", 5)).isEmpty();
+        assertThat(labels(trie.suggest("o", 5))).containsExactly("Other");
+        assertThat(labels(trie.suggest("new", 5))).containsExactly("New Title");
+        trie.put(1L, " ", 10);
+        assertThat(trie.size()).isEqualTo(1);
+    }
+
+    @Test
+    void prefixesLongerThanTheKeysAreCheckedAgainstTheLabel() {
+        SuggestionTrie trie = new SuggestionTrie(5);
+        trie.put(1L, "An extraordinarily long title that keeps going on", 1);
+        trie.put(2L, "An extraordinarily long title that keeps growing", 1);
+
+        assertThat(labels(trie.suggest("an extraordinarily long title that keeps go", 5)))
+                .containsExactly("An extraordinarily long title that keeps going on");
+    }
+
+    @Test
+    void agreesWithABruteForceScanUnderRandomPutsAndRemoves() {
+        Random random = new Random(42);
+        String[] words = {"red", "read", "reader", "blue", "blues", "green", "grey", "dragon", "drag", "dream"};
+        int topK = 4;
+        SuggestionTrie trie = new SuggestionTrie(topK);
+        Map<Long, SuggestionTrie.Entry> expected = new HashMap<>();
+
+        for (int step = 0; step < 3_000; step++) {
+            long id = random.nextInt(60);
+            if (random.nextInt(4) == 0) {
+                trie.remove(id);
+                expected.remove(id);
+            } else {
+                int length = 1 + random.nextInt(3);
+                List<String> label = new ArrayList<>();
+                for (int i = 0; i < length; i++) {
+                    label.add(words[random.nextInt(words.length)]);
+                }
+                SuggestionTrie.Entry entry = new SuggestionTrie.Entry(id, String.join(" ", label), random.nextInt(5));
+                trie.put(id, entry.label(), entry.weight());
+                expected.put(id, entry);
+            }
+            if (step % 10 == 0) {
+                String word = words[random.nextInt(words.length)];
+                String prefix = word.substring(0, 1 + random.nextInt(word.length()));
+                assertThat(weightsAndLengths(trie.suggest(prefix, topK)))
+                        .as("prefix %s after step %d", prefix, step)
+                        .isEqualTo(weightsAndLengths(bruteForce(expected.values(), prefix, topK)));
+            }
+        }
+    }
+
+    // Ties on weight and length are ordered by label, which may repeat, so only the sort keys are compared
+    private static List<String> weightsAndLengths(List<SuggestionTrie.Entry> entries) {
+        return entries.stream().map(e -> e.weight() + "/" + e.label()).collect(Collectors.toList());
+    }
+
+    private static List<SuggestionTrie.Entry> bruteForce(Collection<SuggestionTrie.Entry> entries, String prefix,
+                                                         int limit) {
+        return entries.stream()
+                .filter(entry -> {
+                    List<String> tokens = TextNormalizer.tokenize(entry.label());
+                    for (int i = 0; i < tokens.size(); i++) {
+                        if (String.join(" ", tokens.subList(i, tokens.size())).startsWith(prefix)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                })
+                .sorted(Comparator.comparingLong(SuggestionTrie.Entry::weight).reversed()
+                        .thenComparingInt(entry -> entry.label().length())
+                        .thenComparing(SuggestionTrie.Entry::label, String.CASE_INSENSITIVE_ORDER))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> labels(List<SuggestionTrie.Entry> entries) {
+        return entries.stream().map(SuggestionTrie.Entry::label).collect(Collectors.toList());
+    }
+}
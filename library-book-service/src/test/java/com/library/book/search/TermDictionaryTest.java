@@ -0,0 +1,81 @@
+package com.library.book.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TermDictionaryTest {
+
+    private final TermDictionary dictionary = new TermDictionary();
+
+    @Test
+    void correctsTyposWithinTheEditDistance() {
+        dictionary.index(1L, List.of("harry", "potter", "philosopher"));
+
+        assertThat(dictionary.correct("pottr")).contains("potter");
+        assertThat(dictionary.correct("hrary")).contains("harry");        // transposition
+        assertThat(dictionary.correct("philosofer")).contains("philosopher");
+        assertThat(dictionary.correct("potter")).isEmpty();               // already known
+        assertThat(dictionary.correct("pot")).isEmpty();                  // too short to correct
+        assertThat(dictionary.correct("pxtxex")).isEmpty();               // too far from anything
+    }
+
+    @Test
+    void prefersTheTermMoreBooksUse() {
+        dictionary.index(1L, List.of("mouse"));
+        dictionary.index(2L, List.of("house"));
+        dictionary.index(3L, List.of("house"));
+
+        assertThat(dictionary.correct("hous")).contains("house");
+        assertThat(dictionary.correct("louse")).contains("house");
+    }
+
+    @Test
+    void reindexingABookDropsItsOldTerms() {
+        dictionary.index(1L, List.of("dragon", "castle"));
+        dictionary.index(1L, List.of("dragon", "tower"));
+
+        assertThat(dictionary.contains("castle")).isFalse();
+        assertThat(dictionary.correct("castl")).isEmpty();
+        assertThat(dictionary.contains("tower")).isTrue();
+        assertThat(dictionary.size()).isEqualTo(2);
+    }
+
+    @Test
+    void repeatedSavesDoNotInflateFrequencies() {
+        dictionary.index(1L, List.of("house"));
+        for (int i = 0; i < 10; i++) {
+            dictionary.index(2L, List.of("mouse"));
+        }
+        dictionary.index(3L, List.of("mouse"));
+        dictionary.index(4L, List.of("house"));
+        dictionary.index(5L, List.of("house"));
+
+        // Three books use "house", two use "mouse", however often book 2 was saved
+        assertThat(dictionary.correct("louse")).contains("house");
+    }
+
+    @Test
+    void termsSharedWithOtherBooksSurviveADelete() {
+        dictionary.index(1L, List.of("wizard", "school"));
+        dictionary.index(2L, List.of("wizard"));
+
+        dictionary.remove(1L);
+
+        assertThat(dictionary.contains("school")).isFalse();
+        assertThat(dictionary.contains("wizard")).isTrue();
+        dictionary.remove(2L);
+        assertThat(dictionary.size()).isZero();
+        assertThat(dictionary.correct("wizrd")).isEmpty();
+    }
+
+    @Test
+    void duplicateTermsInOneBookCountOnce() {
+        dictionary.index(1L, List.of("the", "the", "ring"));
+        dictionary.remove(1L);
+
+        assertThat(dictionary.size()).isZero();
+    }
+}
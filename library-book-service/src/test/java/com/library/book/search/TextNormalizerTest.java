@@ -0,0 +1,28 @@
+package com.library.book.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextNormalizerTest {
+
+    @Test
+    void lowerCasesAndStripsAccents() {
+        assertThat(TextNormalizer.normalize("Élan Vital")).isEqualTo("elan vital");
+        assertThat(TextNormalizer.normalize("Ça GRÜNDET")).isEqualTo("ca grundet");
+        assertThat(TextNormalizer.normalize(null)).isEmpty();
+    }
+
+    @Test
+    void splitsOnAnythingButLettersAndDigits() {
+        assertThat(TextNormalizer.tokenize("  L'Étranger -- 1942 edition!"))
+                .containsExactly("l", "etranger", "1942", "edition");
+        assertThat(TextNormalizer.tokenize("Harry_Potter/Vol.2")).containsExactly("harry", "potter", "vol", "2");
+    }
+
+    @Test
+    void blankTextHasNoTokens() {
+        assertThat(TextNormalizer.tokenize("  ...  ")).isEmpty();
+        assertThat(TextNormalizer.tokenize(null)).isEmpty();
+    }
+}
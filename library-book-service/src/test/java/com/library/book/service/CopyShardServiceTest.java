@@ -0,0 +1,292 @@
+package com.library.book.service;
+
+import com.library.book.availability.AvailabilityIndex;
+import com.library.book.cache.BookCache;
+import com.library.book.entity.Book;
+import com.library.book.entity.BookCopyShard;
+import com.library.book.entity.ShardMove;
+import com.library.book.search.BookSuggestionService;
+import com.library.book.search.CatalogFacetCounts;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class CopyShardServiceTest {
+
+    private static final long BOOK_ID = 1L;
+
+    private final List<String> commands = new CopyOnWriteArrayList<>();
+    private final AvailabilityIndex availabilityIndex = mock(AvailabilityIndex.class);
+    private final CatalogFacetCounts catalogFacetCounts = mock(CatalogFacetCounts.class);
+
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private CopyShardService service;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        CommandListener listener = new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                commands.add(event.getCommandName());
+            }
+        };
+        client = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(server.bindAndGetConnectionString()))
+                .addCommandListener(listener)
+                .build());
+        mongoTemplate = new MongoTemplate(client, "test");
+        service = newInstance();
+
+        Book book = new Book();
+        book.setId(BOOK_ID);
+        book.setTitle("Hot title");
+        book.setAvailableCopies(20);
+        book.setTotalCopies(30);
+        mongoTemplate.insert(book);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void borrowIsOneSlotUpdateWithAnEstimatedTotal() {
+        service.enable(BOOK_ID, 4); // 5 copies on every slot
+
+        commands.clear();
+        Book book = service.tryAdjust(BOOK_ID, -1);
+
+        assertThat(commands).containsExactly("update");
+        assertThat(book.getId()).isEqualTo(BOOK_ID);
+        assertThat(book.getAvailableCopies()).isEqualTo(19);
+        assertThat(shelf()).isEqualTo(19);
+    }
+
+    @Test
+    void slotsNeverGoBelowZeroOrAboveCapacity() {
+        service.enable(BOOK_ID, 2);
+
+        int borrowed = 0;
+        while (service.tryAdjust(BOOK_ID, -1) != null) {
+            borrowed++;
+        }
+        int returned = 0;
+        while (service.tryAdjust(BOOK_ID, 1) != null) {
+            returned++;
+        }
+
+        assertThat(borrowed).isEqualTo(20);
+        assertThat(returned).isEqualTo(30);
+        assertThat(shelf()).isEqualTo(30);
+    }
+
+    @Test
+    void concurrentBorrowsAndReturnsWithRebalancingConserveCopies() throws Exception {
+        service.enable(BOOK_ID, 4);
+        AtomicInteger onLoan = new AtomicInteger(10);
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(5);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            workers.add(pool.submit(() -> {
+                for (int i = 0; i < 300; i++) {
+                    if (ThreadLocalRandom.current().nextBoolean()) {
+                        if (service.tryAdjust(BOOK_ID, -1) != null) {
+                            onLoan.incrementAndGet();
+                        }
+                    } else if (onLoan.getAndUpdate(n -> n > 0 ? n - 1 : n) > 0) {
+                        // A slot with room always exists while a copy is on loan
+                        assertThat(service.tryAdjust(BOOK_ID, 1)).isNotNull();
+                    }
+                }
+            }));
+        }
+        Future<?> rebalancer = pool.submit(() -> {
+            while (running.get()) {
+                service.rebalanceAll();
+            }
+        });
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        running.set(false);
+        rebalancer.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        List<BookCopyShard> shards = shards();
+        assertThat(shards).allMatch(shard -> shard.getPendingMove() == null);
+        assertThat(shards.stream().mapToInt(BookCopyShard::getCapacity).sum()).isEqualTo(30);
+        assertThat(shelf() + onLoan.get()).isEqualTo(30);
+    }
+
+    @Test
+    void rebalanceEvensOutSlotsAndRefreshesTheMirror() {
+        service.enable(BOOK_ID, 2);
+        for (int i = 0; i < 10; i++) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(BOOK_ID + ":0")),
+                    new Update().inc("availableCopies", -1), BookCopyShard.class);
+        }
+
+        service.rebalanceAll();
+
+        assertThat(shards()).extracting(BookCopyShard::getAvailableCopies).containsExactly(5, 5);
+        assertThat(shards()).extracting(BookCopyShard::getCapacity).containsExactly(20, 10);
+        assertThat(mongoTemplate.findById(BOOK_ID, Book.class).getAvailableCopies()).isEqualTo(10);
+    }
+
+    @Test
+    void mirrorReportsWhenTheLastCopyGoesOut() {
+        service.enable(BOOK_ID, 2);
+        while (service.tryAdjust(BOOK_ID, -1) != null) {
+            // borrow everything
+        }
+
+        service.rebalanceAll();
+
+        assertThat(mongoTemplate.findById(BOOK_ID, Book.class).getAvailableCopies()).isZero();
+        verify(catalogFacetCounts).availabilityChanged(false);
+        verify(availabilityIndex).set(BOOK_ID, false);
+    }
+
+    @Test
+    void moveCutShortAfterTheTakeIsFinishedOnTheNextPass() {
+        service.enable(BOOK_ID, 2); // 10 + 10 on the shelf, capacity 15 + 15
+        takeWithoutGive(0, 1, 4);
+
+        service.rebalanceAll();
+
+        List<BookCopyShard> shards = shards();
+        assertThat(shards).allMatch(shard -> shard.getPendingMove() == null);
+        assertThat(shards).extracting(BookCopyShard::getAvailableCopies).containsExactly(10, 10);
+        assertThat(shards.stream().mapToInt(BookCopyShard::getCapacity).sum()).isEqualTo(30);
+    }
+
+    @Test
+    void moveCutShortAfterTheGiveIsNotAppliedTwice() {
+        service.enable(BOOK_ID, 2);
+        ShardMove move = takeWithoutGive(0, 1, 4);
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(BOOK_ID + ":1")),
+                new Update().inc("availableCopies", 4).inc("capacity", 4).set("lastMove", move.getMoveId()),
+                BookCopyShard.class);
+
+        service.rebalanceAll();
+
+        List<BookCopyShard> shards = shards();
+        assertThat(shards).allMatch(shard -> shard.getPendingMove() == null);
+        assertThat(shelf()).isEqualTo(20);
+        assertThat(shards.stream().mapToInt(BookCopyShard::getCapacity).sum()).isEqualTo(30);
+    }
+
+    @Test
+    void moveIntoADrainedSlotGoesBackToTheGivingSlot() {
+        service.enable(BOOK_ID, 2);
+        takeWithoutGive(0, 1, 4);
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(BOOK_ID + ":1")),
+                new Update().set("availableCopies", 0).set("capacity", 0), BookCopyShard.class);
+
+        service.rebalanceAll();
+
+        BookCopyShard giver = mongoTemplate.findById(BOOK_ID + ":0", BookCopyShard.class);
+        assertThat(giver.getPendingMove()).isNull();
+        assertThat(giver.getAvailableCopies()).isEqualTo(10);
+        assertThat(giver.getCapacity()).isEqualTo(15);
+        assertThat(mongoTemplate.findById(BOOK_ID + ":1", BookCopyShard.class).getCapacity()).isZero();
+    }
+
+    @Test
+    void disableReturnsEveryCopyIncludingAMoveInFlight() {
+        service.enable(BOOK_ID, 4);
+        service.tryAdjust(BOOK_ID, -1);
+        takeWithoutGive(0, 1, 2);
+
+        service.disable(BOOK_ID);
+
+        Book book = mongoTemplate.findById(BOOK_ID, Book.class);
+        assertThat(book.getCopyShards()).isNull();
+        assertThat(book.getAvailableCopies()).isEqualTo(19);
+        assertThat(shards()).isEmpty();
+        assertThat(service.isSharded(BOOK_ID)).isFalse();
+    }
+
+    @Test
+    void onlyTheLeaseHolderMovesCopies() {
+        service.enable(BOOK_ID, 2);
+        for (int i = 0; i < 10; i++) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(BOOK_ID + ":0")),
+                    new Update().inc("availableCopies", -1), BookCopyShard.class);
+        }
+        SchedulerLeaseService otherInstance = new SchedulerLeaseService(mongoTemplate);
+        assertThat(otherInstance.tryAcquire("copy-shard-rebalance", Duration.ofMinutes(1))).isTrue();
+
+        service.rebalanceAll();
+        assertThat(shards()).extracting(BookCopyShard::getAvailableCopies).containsExactly(0, 10);
+
+        otherInstance.release("copy-shard-rebalance");
+        service.rebalanceAll();
+        assertThat(shards()).extracting(BookCopyShard::getAvailableCopies).containsExactly(5, 5);
+    }
+
+    @Test
+    void otherInstancesPickUpShardingFromTheBookDocument() {
+        service.enable(BOOK_ID, 2);
+        CopyShardService other = newInstance();
+        assertThat(other.isSharded(BOOK_ID)).isFalse();
+
+        other.rebalanceAll();
+
+        assertThat(other.isSharded(BOOK_ID)).isTrue();
+        assertThat(other.tryAdjust(BOOK_ID, -1).getAvailableCopies()).isEqualTo(19);
+    }
+
+    private CopyShardService newInstance() {
+        return new CopyShardService(mongoTemplate, mock(BookCache.class), new SchedulerLeaseService(mongoTemplate),
+                mock(BookSuggestionService.class), catalogFacetCounts, availabilityIndex, 30_000);
+    }
+
+    // The first half of a rebalance move, as left behind by a crash
+    private ShardMove takeWithoutGive(int from, int to, int copies) {
+        ShardMove move = new ShardMove("move-" + from + "-" + to, BOOK_ID + ":" + to, copies);
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(BOOK_ID + ":" + from)),
+                new Update().inc("availableCopies", -copies).inc("capacity", -copies).set("pendingMove", move),
+                BookCopyShard.class);
+        return move;
+    }
+
+    private List<BookCopyShard> shards() {
+        return mongoTemplate.find(new Query(Criteria.where("bookId").is(BOOK_ID))
+                .with(Sort.by("slot")), BookCopyShard.class);
+    }
+
+    private int shelf() {
+        return shards().stream().mapToInt(BookCopyShard::getAvailableCopies).sum();
+    }
+}
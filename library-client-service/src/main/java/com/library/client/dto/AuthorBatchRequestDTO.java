@@ -0,0 +1,14 @@
+package com.library.client.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthorBatchRequestDTO {
+    private List<Long> ids;
+}
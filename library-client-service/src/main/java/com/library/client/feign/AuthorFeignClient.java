@@ -1,13 +1,20 @@
 package com.library.client.feign;
 
+import com.library.client.dto.AuthorBatchRequestDTO;
 import com.library.client.dto.AuthorResponseDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.List;
 
 @FeignClient(name = "library-author-service")
 public interface AuthorFeignClient {
     @GetMapping("/api/authors/{id}")
     AuthorResponseDTO getAuthorById(@PathVariable("id") Long id);
-}
 
+    @PostMapping("/api/authors/batch")
+    List<AuthorResponseDTO> getAuthorsByIds(@RequestBody AuthorBatchRequestDTO request);
+}
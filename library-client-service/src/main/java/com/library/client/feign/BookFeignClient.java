@@ -1,9 +1,12 @@
 package com.library.client.feign;
 
+import com.library.client.dto.BookBatchRequestDTO;
 import com.library.client.dto.BookResponseDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 
 import java.util.List;
 
@@ -14,5 +17,7 @@ public interface BookFeignClient {
 
     @GetMapping("/api/books/{id}/with-author")
     BookResponseDTO getBookWithAuthorById(@PathVariable("id") Long id);
-}
 
+    @PostMapping("/api/books/batch")
+    List<BookResponseDTO> getBooksByIds(@RequestBody BookBatchRequestDTO request);
+}
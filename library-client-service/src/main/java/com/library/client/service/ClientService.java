@@ -1,5 +1,6 @@
 package com.library.client.service;
 
+import com.library.client.dto.AuthorBatchRequestDTO;
 import com.library.client.dto.AuthorResponseDTO;
 import com.library.client.dto.BookResponseDTO;
 import com.library.client.dto.BookWithAuthorDTO;
@@ -10,13 +11,15 @@ import com.library.client.feign.RecommendationFeignClient;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ClientService {
 
+    private static final int AUTHOR_BATCH_SIZE = 1000;
+
     private final BookFeignClient bookFeignClient;
     private final AuthorFeignClient authorFeignClient;
     private final RecommendationFeignClient recommendationFeignClient;
@@ -24,6 +27,10 @@ public class ClientService {
     public List<BookWithAuthorDTO> getAllBooksWithAuthors() {
         try {
             List<BookResponseDTO> books = bookFeignClient.getAllBooks();
+            Map<Long, AuthorResponseDTO> authors = getAuthorsByIds(books.stream()
+                    .map(BookResponseDTO::getAuthorId)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toCollection(LinkedHashSet::new)));
             List<BookWithAuthorDTO> result = new ArrayList<>();
 
             for (BookResponseDTO book : books) {
@@ -39,12 +46,12 @@ public class ClientService {
                 dto.setAuthorId(book.getAuthorId());
 
                 if (book.getAuthorId() != null) {
-                    try {
-                        AuthorResponseDTO author = authorFeignClient.getAuthorById(book.getAuthorId());
+                    AuthorResponseDTO author = authors.get(book.getAuthorId());
+                    if (author != null) {
                         dto.setAuthorFirstName(author.getFirstName());
                         dto.setAuthorLastName(author.getLastName());
                         dto.setAuthorBio(author.getBio());
-                    } catch (Exception e) {
+                    } else {
                         dto.setAuthorFirstName("Unknown");
                         dto.setAuthorLastName("Author");
                     }
@@ -74,6 +81,19 @@ public class ClientService {
             return new ArrayList<>();
         }
     }
-}
-
 
+    private Map<Long, AuthorResponseDTO> getAuthorsByIds(Collection<Long> ids) {
+        List<Long> idList = new ArrayList<>(ids);
+        Map<Long, AuthorResponseDTO> authors = new HashMap<>();
+        for (int from = 0; from < idList.size(); from += AUTHOR_BATCH_SIZE) {
+            List<Long> chunk = idList.subList(from, Math.min(from + AUTHOR_BATCH_SIZE, idList.size()));
+            try {
+                authorFeignClient.getAuthorsByIds(new AuthorBatchRequestDTO(new ArrayList<>(chunk)))
+                        .forEach(author -> authors.put(author.getId(), author));
+            } catch (Exception e) {
+                // Books of this chunk fall back to "Unknown Author"
+            }
+        }
+        return authors;
+    }
+}
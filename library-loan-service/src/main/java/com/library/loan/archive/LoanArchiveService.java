@@ -0,0 +1,209 @@
+package com.library.loan.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.loan.entity.Loan;
+import com.library.loan.entity.LoanHistoryBucket;
+import com.library.loan.entity.LoanStatus;
+import com.library.loan.mapper.LoanMapper;
+import com.library.loan.service.SchedulerLeaseService;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves returned loans older than library.archive.min-age-days out of the loans collection into
+ * one history document per user and borrow month, so the hot collection and its indexes only
+ * carry recent and open loans. A page is appended to its buckets with $addToSet before it is
+ * deleted from the hot collection; an interrupted run is simply repeated without duplicating
+ * entries. Pages can also be written to gzipped NDJSON files before they leave the hot tier.
+ */
+@Service
+public class LoanArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoanArchiveService.class);
+
+    private static final String LEASE_NAME = "loan-archive";
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final DateTimeFormatter EXPORT_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final MongoTemplate mongoTemplate;
+    private final SchedulerLeaseService leaseService;
+    private final LoanMapper loanMapper;
+    private final ObjectMapper objectMapper;
+    private final int minAgeDays;
+    private final int batchSize;
+    private final int maxBatches;
+    private final String exportDir;
+    private final Duration leaseTtl;
+
+    public LoanArchiveService(MongoTemplate mongoTemplate, SchedulerLeaseService leaseService,
+                              LoanMapper loanMapper, ObjectMapper objectMapper,
+                              @Value("${library.archive.min-age-days:180}") int minAgeDays,
+                              @Value("${library.archive.batch-size:1000}") int batchSize,
+                              @Value("${library.archive.max-batches:500}") int maxBatches,
+                              @Value("${library.archive.export-dir:}") String exportDir,
+                              @Value("${library.archive.lease-ttl:600000}") long leaseTtlMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.leaseService = leaseService;
+        this.loanMapper = loanMapper;
+        this.objectMapper = objectMapper;
+        this.minAgeDays = minAgeDays;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.exportDir = exportDir;
+        this.leaseTtl = Duration.ofMillis(leaseTtlMillis);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            // Only returned loans are indexed, the archive job is the only reader
+            mongoTemplate.indexOps(Loan.class).ensureIndex(new Index()
+                    .on("returnDate", Sort.Direction.ASC)
+                    .partial(PartialIndexFilter.of(Criteria.where("status").is(LoanStatus.RETURNED.name())))
+                    .named("returned_returnDate"));
+            mongoTemplate.indexOps(LoanHistoryBucket.class).ensureIndex(new Index()
+                    .on("userId", Sort.Direction.ASC)
+                    .on("month", Sort.Direction.ASC)
+                    .named("userId_month"));
+        } catch (Exception e) {
+            // Database not reachable yet, indexes are created on the next start
+        }
+    }
+
+    @Scheduled(cron = "${library.archive.cron:0 0 2 * * *}")
+    public void scheduledArchive() {
+        try {
+            archive();
+        } catch (Exception e) {
+            logger.warn("Loan archiving stopped: {}", e.getMessage());
+        }
+    }
+
+    // Returns the number of loans moved to the history tier; 0 when another instance is archiving
+    public long archive() {
+        if (!leaseService.tryAcquire(LEASE_NAME, leaseTtl)) {
+            return 0;
+        }
+        long archived = 0;
+        try {
+            LocalDate cutoff = LocalDate.now().minusDays(minAgeDays);
+            Path exportFile = exportFile();
+            for (int batch = 0; batch < maxBatches; batch++) {
+                Query query = new Query(Criteria.where("status").is(LoanStatus.RETURNED).and("returnDate").lt(cutoff))
+                        .with(Sort.by("returnDate"))
+                        .limit(batchSize);
+                List<Loan> loans = mongoTemplate.find(query, Loan.class);
+                if (loans.isEmpty()) {
+                    break;
+                }
+                if (exportFile != null) {
+                    export(exportFile, loans);
+                }
+                appendToBuckets(loans);
+                mongoTemplate.remove(new Query(Criteria.where("_id").in(loans.stream().map(Loan::getId)
+                        .collect(Collectors.toList())).and("status").is(LoanStatus.RETURNED)), Loan.class);
+                archived += loans.size();
+
+                if (loans.size() < batchSize || !leaseService.tryAcquire(LEASE_NAME, leaseTtl)) {
+                    break;
+                }
+            }
+        } finally {
+            leaseService.release(LEASE_NAME);
+        }
+        if (archived > 0) {
+            logger.info("Archived {} returned loans", archived);
+        }
+        return archived;
+    }
+
+    public List<Loan> getArchivedLoans(Long userId) {
+        Query query = new Query(Criteria.where("userId").is(userId)).with(Sort.by("month"));
+        return mongoTemplate.find(query, LoanHistoryBucket.class).stream()
+                .flatMap(bucket -> bucket.getLoans().stream())
+                .collect(Collectors.toList());
+    }
+
+    private void appendToBuckets(List<Loan> loans) {
+        Map<String, List<Loan>> buckets = loans.stream()
+                .collect(Collectors.groupingBy(this::bucketId, LinkedHashMap::new, Collectors.toList()));
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LoanHistoryBucket.class);
+        buckets.forEach((id, bucketLoans) -> {
+            Loan first = bucketLoans.get(0);
+            bulk.upsert(new Query(Criteria.where("_id").is(id)), new Update()
+                    .setOnInsert("userId", first.getUserId())
+                    .setOnInsert("month", month(first))
+                    .addToSet("loans").each(bucketLoans.stream().map(this::toDocument).toArray()));
+        });
+        bulk.execute();
+    }
+
+    // Written field by field through the converter, so a repeated append is an exact duplicate $addToSet skips
+    private Document toDocument(Loan loan) {
+        Document document = new Document();
+        mongoTemplate.getConverter().write(loan, document);
+        document.remove("_class");
+        return document;
+    }
+
+    private String bucketId(Loan loan) {
+        return loan.getUserId() + ":" + month(loan);
+    }
+
+    private static String month(Loan loan) {
+        LocalDate date = loan.getBorrowDate() != null ? loan.getBorrowDate() : loan.getReturnDate();
+        return date.format(MONTH);
+    }
+
+    private Path exportFile() {
+        if (exportDir == null || exportDir.isBlank()) {
+            return null;
+        }
+        return Path.of(exportDir, "loans-archive-" + LocalDateTime.now().format(EXPORT_STAMP) + ".ndjson.gz");
+    }
+
+    // Each page is its own gzip member; concatenated members read back as one NDJSON stream
+    private void export(Path file, List<Loan> loans) {
+        try {
+            Files.createDirectories(file.getParent());
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+                for (Loan loan : loans) {
+                    out.write(objectMapper.writeValueAsBytes(loanMapper.toDTO(loan)));
+                    out.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            // Nothing leaves the hot tier without its export
+            throw new UncheckedIOException("Could not write archive export " + file, e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.library.loan.config;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out ids from blocks reserved on the *_sequence counter documents. Each block is claimed
+ * with one findAndModify, so ids stay unique across instances and the counter is hit once per
+ * block instead of once per insert. Ids of a block not fully used before shutdown are skipped.
+ */
+@Component
+public class SequenceBlockAllocator {
+
+    private final MongoDatabaseFactory databaseFactory;
+    private final String counterCollection;
+    private final int blockSize;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public SequenceBlockAllocator(MongoOperations mongoOperations, MongoDatabaseFactory databaseFactory,
+                                  @Value("${library.sequence.block-size:1000}") int blockSize) {
+        this.databaseFactory = databaseFactory;
+        this.counterCollection = mongoOperations.getCollectionName(SequenceCounter.class);
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    public Long next(String seqName) {
+        while (true) {
+            Block block = blocks.get(seqName);
+            if (block != null) {
+                long id = block.cursor.getAndIncrement();
+                if (id <= block.max) {
+                    return id;
+                }
+            }
+            synchronized (this) {
+                if (blocks.get(seqName) == block) {
+                    blocks.put(seqName, reserve(seqName, blockSize));
+                }
+            }
+        }
+    }
+
+    // Claims count consecutive ids straight from the counter, bypassing the cached blocks, and
+    // returns the first one
+    public long nextRange(String seqName, int count) {
+        // The plain database handle keeps the claim out of any surrounding transaction: a claim
+        // rolled back with it would let another instance claim the same ids
+        Document counter = databaseFactory.getMongoDatabase()
+                .getCollection(counterCollection)
+                .findOneAndUpdate(Filters.eq("_id", seqName), Updates.inc("seq", count),
+                        new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+        long max = counter != null ? counter.get("seq", Number.class).longValue() : count;
+        return max - count + 1;
+    }
+
+    private Block reserve(String seqName, int size) {
+        long first = nextRange(seqName, size);
+        return new Block(first, first + size - 1);
+    }
+
+    private static class Block {
+        private final AtomicLong cursor;
+        private final long max;
+
+        Block(long first, long max) {
+            this.cursor = new AtomicLong(first);
+            this.max = max;
+        }
+    }
+
+    private static class SequenceCounter {
+        private String id;
+        private Long seq;
+
+        public Long getSeq() {
+            return seq;
+        }
+
+        public void setSeq(Long seq) {
+            this.seq = seq;
+        }
+    }
+}
@@ -1,15 +1,25 @@
 package com.library.loan.controller;
 
+import com.library.loan.archive.LoanArchiveService;
+import com.library.loan.dto.BatchBorrowRequestDTO;
+import com.library.loan.dto.BatchLoanResultDTO;
+import com.library.loan.dto.BatchReturnRequestDTO;
 import com.library.loan.dto.BorrowRequestDTO;
+import com.library.loan.dto.CursorPageDTO;
 import com.library.loan.dto.LoanDTO;
+import com.library.loan.dto.UserEventDTO;
+import com.library.loan.service.IdempotencyService;
 import com.library.loan.service.LoanService;
+import com.library.loan.users.UserExistenceCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -19,20 +29,67 @@ import java.util.List;
 @Tag(name = "Loan Controller", description = "API for managing book loans")
 public class LoanController {
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
     private final LoanService loanService;
+    private final IdempotencyService idempotencyService;
+    private final UserExistenceCache userExistenceCache;
+    private final LoanArchiveService loanArchiveService;
 
     @PostMapping("/borrow")
     @Operation(summary = "Borrow a book")
-    public ResponseEntity<LoanDTO> borrowBook(@Valid @RequestBody BorrowRequestDTO request) {
-        LoanDTO loan = loanService.borrowBook(request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(loan);
+    public ResponseEntity<LoanDTO> borrowBook(
+            @Valid @RequestBody BorrowRequestDTO request,
+            @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey
+    ) {
+        IdempotencyService.Outcome outcome = idempotencyService.execute(idempotencyKey,
+                "borrow:" + request.getUserId() + ":" + request.getBookId(),
+                () -> loanService.borrowBook(request));
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(REPLAYED_HEADER, Boolean.toString(outcome.replayed()))
+                .body(outcome.response());
     }
 
     @PutMapping("/{id}/return")
     @Operation(summary = "Return a book")
-    public ResponseEntity<LoanDTO> returnBook(@PathVariable("id") Long id) {
-        LoanDTO loan = loanService.returnBook(id);
-        return ResponseEntity.ok(loan);
+    public ResponseEntity<LoanDTO> returnBook(
+            @PathVariable("id") Long id,
+            @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey
+    ) {
+        IdempotencyService.Outcome outcome = idempotencyService.execute(idempotencyKey,
+                "return:" + id,
+                () -> loanService.returnBook(id));
+        return ResponseEntity.ok()
+                .header(REPLAYED_HEADER, Boolean.toString(outcome.replayed()))
+                .body(outcome.response());
+    }
+
+    @PostMapping("/borrow/batch")
+    @Operation(summary = "Borrow several books for one user, with a result per book")
+    public ResponseEntity<BatchLoanResultDTO> borrowBooks(@Valid @RequestBody BatchBorrowRequestDTO request) {
+        BatchLoanResultDTO result = loanService.borrowBooks(request);
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/return/batch")
+    @Operation(summary = "Return several loans, with a result per loan")
+    public ResponseEntity<BatchLoanResultDTO> returnBooks(@Valid @RequestBody BatchReturnRequestDTO request) {
+        BatchLoanResultDTO result = loanService.returnBooks(request);
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/users/events")
+    @Operation(summary = "Apply a user created or deleted event to the user existence cache (internal use)")
+    public ResponseEntity<Void> onUserEvent(@RequestBody UserEventDTO event) {
+        userExistenceCache.onUserEvent(event);
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping("/archive")
+    @Operation(summary = "Move old returned loans into the history tier now, returns the number of loans moved (internal use)")
+    public ResponseEntity<Long> archiveReturnedLoans() {
+        return ResponseEntity.ok(loanArchiveService.archive());
     }
 
     @GetMapping("/{id}")
@@ -49,6 +106,23 @@ public class LoanController {
         return ResponseEntity.ok(loans);
     }
 
+    @GetMapping(params = "limit")
+    @Operation(summary = "Get loans one keyset page at a time, ordered by ID")
+    public ResponseEntity<CursorPageDTO<LoanDTO>> getLoansPage(
+            @RequestParam(name = "after", required = false) Long after,
+            @RequestParam(name = "limit") int limit
+    ) {
+        CursorPageDTO<LoanDTO> page = loanService.getLoansPage(after, limit);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream all loans as NDJSON straight from the database cursor")
+    public ResponseEntity<StreamingResponseBody> streamAllLoans() {
+        StreamingResponseBody body = loanService::streamAllLoans;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @GetMapping("/user/{userId}")
     @Operation(summary = "Get all loans for a user")
     public ResponseEntity<List<LoanDTO>> getLoansByUserId(@PathVariable("userId") Long userId) {
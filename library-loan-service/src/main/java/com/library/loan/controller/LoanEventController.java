@@ -0,0 +1,51 @@
+package com.library.loan.controller;
+
+import com.library.loan.dto.BorrowCountSnapshotDTO;
+import com.library.loan.dto.LoanEventBatchDTO;
+import com.library.loan.dto.LoanEventOffsetDTO;
+import com.library.loan.outbox.LoanEventStream;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/loans/events")
+@RequiredArgsConstructor
+@Tag(name = "Loan Event Controller", description = "Replayable stream of loan events")
+public class LoanEventController {
+
+    private final LoanEventStream loanEventStream;
+
+    @GetMapping
+    @Operation(summary = "Read loan events after an offset, in offset order")
+    public ResponseEntity<LoanEventBatchDTO> read(
+            @RequestParam(name = "after", defaultValue = "0") long after,
+            @RequestParam(name = "limit", defaultValue = "100") int limit
+    ) {
+        return ResponseEntity.ok(loanEventStream.read(after, limit));
+    }
+
+    @GetMapping("/borrow-counts")
+    @Operation(summary = "Get borrow counts per book and the stream offset to read on from")
+    public ResponseEntity<BorrowCountSnapshotDTO> getBorrowCounts() {
+        return ResponseEntity.ok(loanEventStream.borrowCounts());
+    }
+
+    @GetMapping("/consumers/{consumer}")
+    @Operation(summary = "Get the offset a consumer committed")
+    public ResponseEntity<LoanEventOffsetDTO> getOffset(@PathVariable("consumer") String consumer) {
+        return ResponseEntity.ok(loanEventStream.getOffset(consumer));
+    }
+
+    @PutMapping("/consumers/{consumer}")
+    @Operation(summary = "Commit the offset a consumer has processed up to; offsets never move back")
+    public ResponseEntity<LoanEventOffsetDTO> commitOffset(
+            @PathVariable("consumer") String consumer,
+            @Valid @RequestBody LoanEventOffsetDTO request
+    ) {
+        return ResponseEntity.ok(loanEventStream.commitOffset(consumer, request.getOffset()));
+    }
+}
@@ -0,0 +1,100 @@
+package com.library.loan.controller;
+
+import com.library.loan.dto.BookBorrowCountDTO;
+import com.library.loan.dto.LoanTimeseriesDTO;
+import com.library.loan.dto.UserBorrowCountDTO;
+import com.library.loan.entity.LoanStatus;
+import com.library.loan.entity.RollupDimension;
+import com.library.loan.entity.RollupGranularity;
+import com.library.loan.rollup.LoanRollupService;
+import com.library.loan.service.LoanStatsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/loans/stats")
+@RequiredArgsConstructor
+@Tag(name = "Loan Stats Controller", description = "Aggregated loan statistics")
+public class LoanStatsController {
+
+    private final LoanStatsService loanStatsService;
+    private final LoanRollupService loanRollupService;
+
+    @GetMapping("/by-book")
+    @Operation(summary = "Get borrow counts grouped by book, most borrowed first")
+    public ResponseEntity<List<BookBorrowCountDTO>> countByBook(
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "status", required = false) LoanStatus status
+    ) {
+        List<BookBorrowCountDTO> counts = loanStatsService.countByBook(limit, from, to, status);
+        return ResponseEntity.ok(counts);
+    }
+
+    @GetMapping("/by-book/{bookId}")
+    @Operation(summary = "Get the borrow count of a single book")
+    public ResponseEntity<BookBorrowCountDTO> countForBook(
+            @PathVariable("bookId") Long bookId,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "status", required = false) LoanStatus status
+    ) {
+        BookBorrowCountDTO count = loanStatsService.countForBook(bookId, from, to, status);
+        return ResponseEntity.ok(count);
+    }
+
+    @GetMapping("/by-book/user/{userId}")
+    @Operation(summary = "Get borrow counts grouped by book for a single user")
+    public ResponseEntity<List<BookBorrowCountDTO>> countByBookForUser(
+            @PathVariable("userId") Long userId,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "status", required = false) LoanStatus status
+    ) {
+        List<BookBorrowCountDTO> counts = loanStatsService.countByBookForUser(userId, limit, from, to, status);
+        return ResponseEntity.ok(counts);
+    }
+
+    @GetMapping("/by-user")
+    @Operation(summary = "Get borrow counts grouped by user, most active first")
+    public ResponseEntity<List<UserBorrowCountDTO>> countByUser(
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "status", required = false) LoanStatus status
+    ) {
+        List<UserBorrowCountDTO> counts = loanStatsService.countByUser(limit, from, to, status);
+        return ResponseEntity.ok(counts);
+    }
+
+    @GetMapping("/timeseries")
+    @Operation(summary = "Get daily or hourly borrow and return counts for a book, a category or the whole library")
+    public ResponseEntity<LoanTimeseriesDTO> getTimeseries(
+            @RequestParam(name = "granularity", defaultValue = "DAY") RollupGranularity granularity,
+            @RequestParam(name = "dimension", defaultValue = "ALL") RollupDimension dimension,
+            @RequestParam(name = "key", required = false) String key,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        LoanTimeseriesDTO timeseries = loanRollupService.getTimeseries(granularity, dimension, key, from, to);
+        return ResponseEntity.ok(timeseries);
+    }
+
+    @PostMapping("/timeseries/rebuild")
+    @Operation(summary = "Recompute the rollups of a date range from the loans, returns the number of buckets written (internal use)")
+    public ResponseEntity<Long> rebuildTimeseries(
+            @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return ResponseEntity.ok(loanRollupService.rebuild(from, to));
+    }
+}
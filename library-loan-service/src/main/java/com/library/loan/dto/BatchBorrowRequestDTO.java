@@ -0,0 +1,22 @@
+package com.library.loan.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchBorrowRequestDTO {
+    @NotNull(message = "User ID is required")
+    private Long userId;
+
+    @NotEmpty(message = "At least one book ID is required")
+    @Size(max = 50, message = "No more than 50 books per checkout")
+    private List<Long> bookIds;
+}
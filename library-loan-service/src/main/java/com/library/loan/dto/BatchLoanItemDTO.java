@@ -0,0 +1,16 @@
+package com.library.loan.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchLoanItemDTO {
+    private Long bookId;
+    private Long loanId;
+    private boolean success;
+    private String message;
+    private LoanDTO loan;
+}
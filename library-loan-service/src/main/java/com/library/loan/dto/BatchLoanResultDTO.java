@@ -0,0 +1,17 @@
+package com.library.loan.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchLoanResultDTO {
+    private int succeeded;
+    private int failed;
+    // One entry per requested book or loan, in request order
+    private List<BatchLoanItemDTO> items;
+}
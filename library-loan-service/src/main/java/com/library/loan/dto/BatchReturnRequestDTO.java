@@ -0,0 +1,18 @@
+package com.library.loan.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchReturnRequestDTO {
+    @NotEmpty(message = "At least one loan ID is required")
+    @Size(max = 50, message = "No more than 50 loans per return")
+    private List<Long> loanIds;
+}
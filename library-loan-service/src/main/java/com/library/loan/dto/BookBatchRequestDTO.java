@@ -0,0 +1,15 @@
+package com.library.loan.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBatchRequestDTO {
+    private List<Long> ids;
+    private List<String> fields;
+}
@@ -0,0 +1,16 @@
+package com.library.loan.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookDayCountDTO {
+    private Long bookId;
+    private LocalDate date;
+    private Long count;
+}
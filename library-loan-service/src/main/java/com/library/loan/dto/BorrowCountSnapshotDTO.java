@@ -0,0 +1,16 @@
+package com.library.loan.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BorrowCountSnapshotDTO {
+    // The counts include every event up to this stream offset and none after it: read on from here
+    private long offset;
+    private List<BookBorrowCountDTO> counts;
+}
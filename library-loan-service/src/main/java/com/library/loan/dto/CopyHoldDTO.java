@@ -0,0 +1,17 @@
+package com.library.loan.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CopyHoldDTO {
+    private String token;
+    private Long bookId;
+    private String status;
+    private Instant expiresAt;
+}
@@ -0,0 +1,19 @@
+package com.library.loan.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CopyReservationDTO {
+    private Long bookId;
+    private boolean reserved;
+    private Integer availableCopies;
+    private String message;
+    private String token;
+    private Instant expiresAt;
+}
@@ -0,0 +1,14 @@
+package com.library.loan.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CopyReturnResultDTO {
+    private Long bookId;
+    private boolean returned;
+    private String message;
+}
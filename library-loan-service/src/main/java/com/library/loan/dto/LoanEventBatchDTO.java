@@ -0,0 +1,18 @@
+package com.library.loan.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanEventBatchDTO {
+    // Pass as ?after= to read on; equals the requested offset when nothing new arrived
+    private long lastOffset;
+    // Events after the requested offset were already dropped by retention, rebuild the read model
+    private boolean resetRequired;
+    private List<LoanEventDTO> events;
+}
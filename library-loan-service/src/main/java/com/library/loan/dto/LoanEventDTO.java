@@ -0,0 +1,20 @@
+package com.library.loan.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanEventDTO {
+    // Position in the loan event stream, increasing but not necessarily contiguous
+    private Long offset;
+    private Long loanId;
+    private Long userId;
+    private Long bookId;
+    private String type; // BORROWED, RETURNED, OVERDUE or BORROW_CANCELLED
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,16 @@
+package com.library.loan.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanEventOffsetDTO {
+    private String consumer;
+
+    @NotNull(message = "Offset is required")
+    private Long offset;
+}
@@ -0,0 +1,22 @@
+package com.library.loan.dto;
+
+import com.library.loan.entity.RollupDimension;
+import com.library.loan.entity.RollupGranularity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanTimeseriesDTO {
+    private RollupGranularity granularity;
+    private RollupDimension dimension;
+    private String key;
+    private long totalBorrowed;
+    private long totalReturned;
+    // One point per day or hour of the range, empty buckets included
+    private List<TimeseriesPointDTO> points;
+}
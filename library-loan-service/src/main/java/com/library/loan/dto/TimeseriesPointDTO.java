@@ -0,0 +1,16 @@
+package com.library.loan.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimeseriesPointDTO {
+    private LocalDateTime bucket;
+    private long borrowed;
+    private long returned;
+}
@@ -0,0 +1,34 @@
+package com.library.loan.entity;
+
+import com.library.loan.dto.LoanDTO;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Document(collection = "idempotency_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+    @Id
+    private String key;
+
+    // Operation and arguments the key was first used with
+    private String fingerprint;
+
+    private IdempotencyStatus status;
+
+    private LoanDTO response;
+
+    // Message of the failure a FAILED key replays
+    private String error;
+
+    private Instant startedAt;
+
+    // Removed by a TTL index
+    private Instant expiresAt;
+}
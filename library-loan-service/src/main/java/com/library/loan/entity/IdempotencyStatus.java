@@ -0,0 +1,5 @@
+package com.library.loan.entity;
+
+public enum IdempotencyStatus {
+    IN_PROGRESS, COMPLETED, FAILED
+}
@@ -0,0 +1,38 @@
+package com.library.loan.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+@Document(collection = "loan_events")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanEvent {
+    @Id
+    private String id;
+
+    private Long loanId;
+
+    private Long userId;
+
+    private Long bookId;
+
+    private String type;
+
+    private LocalDateTime occurredAt;
+
+    // Position in the event stream, assigned by the relay; missing while the event waits in the outbox
+    private Long offset;
+
+    // Delivered to the event bus
+    private boolean published;
+
+    // Dropped from the stream by the retention job after this instant
+    private Instant purgeAt;
+}
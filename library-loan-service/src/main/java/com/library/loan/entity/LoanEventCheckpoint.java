@@ -0,0 +1,23 @@
+package com.library.loan.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Document(collection = "loan_event_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanEventCheckpoint {
+    // "consumer:<name>" for a consumer's committed offset, "purged" for the retention horizon
+    @Id
+    private String id;
+
+    private long offset;
+
+    private Instant updatedAt;
+}
@@ -0,0 +1,27 @@
+package com.library.loan.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Document(collection = "loan_history")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanHistoryBucket {
+    // "<userId>:<yyyy-MM>"
+    @Id
+    private String id;
+
+    private Long userId;
+
+    // Month of the borrow date, yyyy-MM
+    private String month;
+
+    // Archived returned loans, stored exactly as they were in the loans collection
+    private List<Loan> loans;
+}
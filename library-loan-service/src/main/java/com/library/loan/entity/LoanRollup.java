@@ -0,0 +1,33 @@
+package com.library.loan.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Document(collection = "loan_rollups")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanRollup {
+    // "<granularity>:<dimension>:<key>:<bucket>", e.g. "DAY:CATEGORY:Fiction:2024-03-01T00:00"
+    @Id
+    private String id;
+
+    private RollupGranularity granularity;
+
+    private RollupDimension dimension;
+
+    // Book id or category name; "all" for the library-wide counters
+    private String key;
+
+    // Start of the day or hour the counters cover
+    private LocalDateTime bucket;
+
+    private long borrowed;
+
+    private long returned;
+}
@@ -0,0 +1,9 @@
+package com.library.loan.exception;
+
+// An Idempotency-Key reused for a different request
+public class IdempotencyKeyConflictException extends RuntimeException {
+
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
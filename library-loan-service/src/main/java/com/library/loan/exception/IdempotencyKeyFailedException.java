@@ -0,0 +1,9 @@
+package com.library.loan.exception;
+
+// Replays the failure of a request whose outcome is unknown, so its Idempotency-Key cannot run again
+public class IdempotencyKeyFailedException extends RuntimeException {
+
+    public IdempotencyKeyFailedException(String message) {
+        super(message);
+    }
+}
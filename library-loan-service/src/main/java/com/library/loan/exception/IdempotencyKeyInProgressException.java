@@ -0,0 +1,9 @@
+package com.library.loan.exception;
+
+// A retry that arrives while the request holding its Idempotency-Key is still running
+public class IdempotencyKeyInProgressException extends RuntimeException {
+
+    public IdempotencyKeyInProgressException(String message) {
+        super(message);
+    }
+}
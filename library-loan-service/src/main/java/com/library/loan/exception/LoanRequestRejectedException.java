@@ -0,0 +1,9 @@
+package com.library.loan.exception;
+
+// A borrow or return refused before anything changed, or after its changes were undone
+public class LoanRequestRejectedException extends RuntimeException {
+
+    public LoanRequestRejectedException(String message) {
+        super(message);
+    }
+}
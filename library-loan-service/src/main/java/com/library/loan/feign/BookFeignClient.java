@@ -1,19 +1,46 @@
 package com.library.loan.feign;
 
+import com.library.loan.dto.BookBatchRequestDTO;
+import com.library.loan.dto.BookResponseDTO;
+import com.library.loan.dto.CopyBatchRequestDTO;
+import com.library.loan.dto.CopyHoldDTO;
+import com.library.loan.dto.CopyReservationDTO;
+import com.library.loan.dto.CopyReturnResultDTO;
+import com.library.loan.dto.ReservationBatchRequestDTO;
 import org.springframework.cloud.openfeign.FeignClient;
-import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.List;
 
 @FeignClient(name = "library-book-service")
 public interface BookFeignClient {
-    @PutMapping("/api/books/{id}/decrease-copies")
-    void decreaseAvailableCopies(@PathVariable("id") Long id);
+    @PostMapping("/api/books/{id}/reserve-copy")
+    CopyReservationDTO reserveCopy(@PathVariable("id") Long id);
+
+    @PostMapping("/api/books/reserve-copies")
+    List<CopyReservationDTO> reserveCopies(@RequestBody CopyBatchRequestDTO request);
+
+    @PostMapping("/api/books/reservations/{token}/confirm")
+    CopyHoldDTO confirmReservation(@PathVariable("token") String token);
+
+    @PostMapping("/api/books/reservations/{token}/release")
+    CopyHoldDTO releaseReservation(@PathVariable("token") String token);
+
+    @PostMapping("/api/books/reservations/confirm")
+    List<CopyHoldDTO> confirmReservations(@RequestBody ReservationBatchRequestDTO request);
+
+    @PostMapping("/api/books/reservations/release")
+    List<CopyHoldDTO> releaseReservations(@RequestBody ReservationBatchRequestDTO request);
 
     @PutMapping("/api/books/{id}/increase-copies")
     void increaseAvailableCopies(@PathVariable("id") Long id);
 
-    @GetMapping("/api/books/{id}/check-availability")
-    boolean isBookAvailable(@PathVariable("id") Long id);
-}
+    @PutMapping("/api/books/increase-copies")
+    List<CopyReturnResultDTO> increaseAvailableCopies(@RequestBody CopyBatchRequestDTO request);
 
+    @PostMapping("/api/books/batch")
+    List<BookResponseDTO> getBooksByIds(@RequestBody BookBatchRequestDTO request);
+}
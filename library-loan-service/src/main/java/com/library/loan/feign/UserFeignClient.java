@@ -1,13 +1,19 @@
 package com.library.loan.feign;
 
+import com.library.loan.dto.CursorPageDTO;
 import com.library.loan.dto.UserResponseDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 
 @FeignClient(name = "library-user-service")
 public interface UserFeignClient {
     @GetMapping("/api/users/{id}")
     UserResponseDTO getUserById(@PathVariable("id") Long id);
+
+    @GetMapping("/api/users/ids")
+    CursorPageDTO<Long> getUserIds(@RequestParam(name = "after", required = false) Long after,
+                                   @RequestParam(name = "limit") int limit);
 }
 
@@ -0,0 +1,32 @@
+package com.library.loan.outbox;
+
+import com.library.loan.dto.LoanEventDTO;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Embedded bus for tests and local runs: events go to in-process subscribers on the relay thread
+@Component
+@ConditionalOnProperty(name = "library.outbox.bus", havingValue = "in-memory")
+public class InMemoryLoanEventBus implements LoanEventBus {
+
+    private final List<Consumer<LoanEventDTO>> subscribers = new CopyOnWriteArrayList<>();
+
+    public void subscribe(Consumer<LoanEventDTO> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<LoanEventDTO> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    @Override
+    public void publish(List<LoanEventDTO> events) {
+        for (LoanEventDTO event : events) {
+            subscribers.forEach(subscriber -> subscriber.accept(event));
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.library.loan.outbox;
+
+import com.library.loan.dto.LoanEventDTO;
+
+import java.util.List;
+
+/**
+ * Destination the {@link LoanOutboxRelay} delivers loan events to, chosen with library.outbox.bus.
+ * Delivery is at least once: events are handed over in offset order and handed over again if
+ * publish throws.
+ */
+public interface LoanEventBus {
+
+    void publish(List<LoanEventDTO> events);
+}
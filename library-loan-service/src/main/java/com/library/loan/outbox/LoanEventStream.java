@@ -0,0 +1,169 @@
+package com.library.loan.outbox;
+
+import com.library.loan.dto.BookBorrowCountDTO;
+import com.library.loan.dto.BorrowCountSnapshotDTO;
+import com.library.loan.dto.LoanEventBatchDTO;
+import com.library.loan.dto.LoanEventDTO;
+import com.library.loan.dto.LoanEventOffsetDTO;
+import com.library.loan.entity.LoanEvent;
+import com.library.loan.entity.LoanEventCheckpoint;
+import com.library.loan.service.LoanStatsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Read side of the loan event stream. Consumers read forward from an offset, optionally commit
+ * the offset they reached here, and replay from any retained offset to rebuild a read model.
+ * Events are kept for library.outbox.retention; the purge job records how far it went, so a
+ * consumer that fell behind the retention is told to start over.
+ */
+@Service
+@RequiredArgsConstructor
+public class LoanEventStream {
+
+    public static final int MAX_BATCH_SIZE = 1000;
+    private static final int PURGE_BATCH_SIZE = 1000;
+    private static final String CONSUMER_PREFIX = "consumer:";
+    private static final String PURGED = "purged";
+    private static final String BORROWED = "BORROWED";
+    private static final String BORROW_CANCELLED = "BORROW_CANCELLED";
+
+    private final MongoTemplate mongoTemplate;
+    private final LoanOutbox loanOutbox;
+    private final LoanStatsService loanStatsService;
+
+    public LoanEventBatchDTO read(long after, int limit) {
+        int batchSize = Math.min(Math.max(limit, 1), MAX_BATCH_SIZE);
+        Query query = new Query(Criteria.where("offset").gt(after)).with(Sort.by("offset")).limit(batchSize);
+        List<LoanEventDTO> events = mongoTemplate.find(query, LoanEvent.class).stream()
+                .map(LoanOutbox::toDTO)
+                .collect(Collectors.toList());
+        long lastOffset = events.isEmpty() ? after : events.get(events.size() - 1).getOffset();
+        return new LoanEventBatchDTO(lastOffset, after < checkpoint(PURGED), events);
+    }
+
+    /**
+     * Borrow counts per book together with the stream offset they match, for a read model that
+     * is rebuilt from the counts and then reads the stream from that offset. The counts, the
+     * highest assigned offset and the events still waiting for an offset are read in one
+     * transaction; the waiting events are taken back out of the counts, since they reach the
+     * stream after that offset. Without transactions the reads are not one snapshot and a loan
+     * written meanwhile can be counted twice or not at all.
+     */
+    public BorrowCountSnapshotDTO borrowCounts() {
+        return loanOutbox.inTransaction(() -> {
+            Map<Long, Long> counts = loanStatsService.countAllByBook();
+            long offset = headOffset();
+
+            Query waiting = new Query(Criteria.where("offset").is(null).and("type").in(BORROWED, BORROW_CANCELLED));
+            waiting.fields().include("bookId").include("type");
+            for (LoanEvent event : mongoTemplate.find(waiting, LoanEvent.class)) {
+                counts.merge(event.getBookId(), BORROWED.equals(event.getType()) ? -1L : 1L, Long::sum);
+            }
+            List<BookBorrowCountDTO> result = counts.entrySet().stream()
+                    .filter(entry -> entry.getValue() > 0)
+                    .map(entry -> new BookBorrowCountDTO(entry.getKey(), entry.getValue()))
+                    .collect(Collectors.toList());
+            return new BorrowCountSnapshotDTO(offset, result);
+        });
+    }
+
+    // Highest offset given out so far, also when the purge has removed that event
+    public long headOffset() {
+        Query last = new Query(Criteria.where("offset").ne(null)).with(Sort.by(Sort.Direction.DESC, "offset"))
+                .limit(1);
+        last.fields().include("offset");
+        LoanEvent newest = mongoTemplate.findOne(last, LoanEvent.class);
+        return Math.max(newest != null ? newest.getOffset() : 0, purgedOffset());
+    }
+
+    // Highest offset removed by the purge, readers behind it have missed events
+    public long purgedOffset() {
+        return checkpoint(PURGED);
+    }
+
+    public LoanEventOffsetDTO getOffset(String consumer) {
+        return new LoanEventOffsetDTO(consumer, checkpoint(CONSUMER_PREFIX + consumer));
+    }
+
+    // A consumer seen for the first time starts at the head, one already known keeps its offset
+    public LoanEventOffsetDTO register(String consumer) {
+        try {
+            mongoTemplate.upsert(new Query(Criteria.where("_id").is(CONSUMER_PREFIX + consumer)),
+                    new Update().setOnInsert("offset", headOffset()).setOnInsert("updatedAt", Instant.now()),
+                    LoanEventCheckpoint.class);
+        } catch (DuplicateKeyException e) {
+            // Registered by another instance at the same time
+        }
+        return getOffset(consumer);
+    }
+
+    // Offsets only move forward, so a late or repeated commit cannot rewind a consumer
+    public LoanEventOffsetDTO commitOffset(String consumer, long offset) {
+        advance(CONSUMER_PREFIX + consumer, offset);
+        return getOffset(consumer);
+    }
+
+    // Drops published events past their retention, oldest offsets first
+    @Scheduled(initialDelayString = "${library.outbox.purge-interval:3600000}",
+            fixedDelayString = "${library.outbox.purge-interval:3600000}")
+    public void purgeExpired() {
+        try {
+            Instant now = Instant.now();
+            while (true) {
+                Query query = new Query(Criteria.where("offset").gt(checkpoint(PURGED)))
+                        .with(Sort.by("offset"))
+                        .limit(PURGE_BATCH_SIZE);
+                query.fields().include("offset").include("published").include("purgeAt");
+                List<LoanEvent> oldest = mongoTemplate.find(query, LoanEvent.class);
+                long horizon = 0;
+                int expired = 0;
+                for (LoanEvent event : oldest) {
+                    if (!event.isPublished() || event.getPurgeAt() == null || event.getPurgeAt().isAfter(now)) {
+                        break;
+                    }
+                    horizon = event.getOffset();
+                    expired++;
+                }
+                if (expired == 0) {
+                    return;
+                }
+                // Move the horizon first, so readers never miss events without being told
+                advance(PURGED, horizon);
+                mongoTemplate.remove(new Query(Criteria.where("offset").lte(horizon)), LoanEvent.class);
+                if (expired < PURGE_BATCH_SIZE) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            // Database not reachable, the next run catches up
+        }
+    }
+
+    private long checkpoint(String id) {
+        LoanEventCheckpoint checkpoint = mongoTemplate.findById(id, LoanEventCheckpoint.class);
+        return checkpoint != null ? checkpoint.getOffset() : 0;
+    }
+
+    private void advance(String id, long offset) {
+        try {
+            mongoTemplate.upsert(new Query(Criteria.where("_id").is(id).and("offset").lt(offset)),
+                    new Update().set("offset", offset).set("updatedAt", Instant.now()),
+                    LoanEventCheckpoint.class);
+        } catch (DuplicateKeyException e) {
+            // Already at or past this offset
+        }
+    }
+}
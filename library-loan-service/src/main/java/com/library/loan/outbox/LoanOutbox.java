@@ -0,0 +1,147 @@
+package com.library.loan.outbox;
+
+import com.library.loan.dto.LoanEventDTO;
+import com.library.loan.entity.Loan;
+import com.library.loan.entity.LoanEvent;
+import com.mongodb.MongoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox for loan events. Loan writes append their events here inside the same
+ * MongoDB transaction, so a loan change and its event are stored together or not at all; the
+ * {@link LoanOutboxRelay} later gives them stream offsets and delivers them.
+ * Transactions need a replica set. On a standalone server the first transactional write fails
+ * before anything is stored, and the outbox falls back to plain writes from then on.
+ */
+@Component
+public class LoanOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoanOutbox.class);
+
+    // Code MongoDB answers with when transactions are used against a standalone server
+    private static final int ILLEGAL_OPERATION = 20;
+
+    private final MongoTemplate mongoTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private volatile boolean transactional;
+
+    public LoanOutbox(MongoTemplate mongoTemplate,
+                      @Value("${library.outbox.transactional:true}") boolean transactional) {
+        this.mongoTemplate = mongoTemplate;
+        // Deliberately not a bean, so the service-level @Transactional annotations stay inactive
+        this.transactionTemplate = new TransactionTemplate(
+                new MongoTransactionManager(mongoTemplate.getMongoDatabaseFactory()));
+        this.transactional = transactional;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            // Serves both relay queries: waiting events by age, offset-assigned ones by offset
+            mongoTemplate.indexOps(LoanEvent.class).ensureIndex(new Index()
+                    .on("published", Sort.Direction.ASC)
+                    .on("offset", Sort.Direction.ASC)
+                    .on("occurredAt", Sort.Direction.ASC)
+                    .named("published_offset_occurredAt"));
+            mongoTemplate.indexOps(LoanEvent.class).ensureIndex(new Index()
+                    .on("offset", Sort.Direction.ASC)
+                    .unique()
+                    .partial(PartialIndexFilter.of(Criteria.where("offset").exists(true)))
+                    .named("offset_unique"));
+            mongoTemplate.indexOps(LoanEvent.class).ensureIndex(new Index()
+                    .on("loanId", Sort.Direction.ASC)
+                    .named("loanId"));
+        } catch (Exception e) {
+            // Database not reachable yet, indexes are created on the next start
+        }
+    }
+
+    public <T> T inTransaction(Supplier<T> work) {
+        if (transactional) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (RuntimeException e) {
+                if (!transactionsUnsupported(e)) {
+                    throw e;
+                }
+                transactional = false;
+                logger.warn("MongoDB transactions are not available, loan events are written without one");
+            }
+        }
+        return work.get();
+    }
+
+    public void inTransaction(Runnable work) {
+        inTransaction(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public void append(Loan loan, String type) {
+        mongoTemplate.insert(newEvent(loan.getId(), loan.getUserId(), loan.getBookId(), type));
+    }
+
+    public void append(Collection<Loan> loans, String type) {
+        if (loans.isEmpty()) {
+            return;
+        }
+        mongoTemplate.insertAll(loans.stream()
+                .map(loan -> newEvent(loan.getId(), loan.getUserId(), loan.getBookId(), type))
+                .collect(Collectors.toList()));
+    }
+
+    // Takes back the events of undone loan writes: events still in the outbox are dropped, events
+    // already on the stream are followed by a compensating event
+    public void retract(Collection<Long> loanIds, String type, String compensatingType) {
+        mongoTemplate.remove(new Query(Criteria.where("loanId").in(loanIds).and("type").is(type)
+                .and("offset").is(null)), LoanEvent.class);
+        List<LoanEvent> delivered = mongoTemplate.find(new Query(Criteria.where("loanId").in(loanIds)
+                .and("type").is(type)), LoanEvent.class);
+        if (!delivered.isEmpty()) {
+            mongoTemplate.insertAll(delivered.stream()
+                    .map(event -> newEvent(event.getLoanId(), event.getUserId(), event.getBookId(), compensatingType))
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    static LoanEventDTO toDTO(LoanEvent event) {
+        return new LoanEventDTO(event.getOffset(), event.getLoanId(), event.getUserId(), event.getBookId(),
+                event.getType(), event.getOccurredAt());
+    }
+
+    private static LoanEvent newEvent(Long loanId, Long userId, Long bookId, String type) {
+        return new LoanEvent(null, loanId, userId, bookId, type, LocalDateTime.now(), null, false, null);
+    }
+
+    private static boolean transactionsUnsupported(Throwable e) {
+        Set<Throwable> seen = new HashSet<>();
+        for (Throwable cause = e; cause != null && seen.add(cause); cause = cause.getCause()) {
+            if (cause instanceof MongoException mongo && mongo.getCode() == ILLEGAL_OPERATION) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
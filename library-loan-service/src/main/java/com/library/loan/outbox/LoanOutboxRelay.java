@@ -0,0 +1,124 @@
+package com.library.loan.outbox;
+
+import com.library.loan.config.SequenceBlockAllocator;
+import com.library.loan.entity.LoanEvent;
+import com.library.loan.service.SchedulerLeaseService;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Moves loan events from the outbox onto the stream. Waiting events get stream offsets from a
+ * counter in the order they were written, then go to the {@link LoanEventBus} in offset order and
+ * are flagged as published. Only the instance holding the relay lease assigns offsets, which keeps
+ * them in write order; it holds on to the lease between passes.
+ */
+@Component
+public class LoanOutboxRelay {
+
+    private static final String LEASE_NAME = "loan-outbox-relay";
+    private static final String OFFSET_SEQUENCE = "loan_event_offset";
+
+    private final MongoTemplate mongoTemplate;
+    private final SchedulerLeaseService leaseService;
+    private final SequenceBlockAllocator sequenceBlockAllocator;
+    private final LoanEventBus bus;
+    private final int batchSize;
+    private final Duration retention;
+    private final Duration leaseTtl;
+
+    public LoanOutboxRelay(MongoTemplate mongoTemplate, SchedulerLeaseService leaseService,
+                           SequenceBlockAllocator sequenceBlockAllocator, LoanEventBus bus,
+                           @Value("${library.outbox.batch-size:500}") int batchSize,
+                           @Value("${library.outbox.retention:604800000}") long retentionMillis,
+                           @Value("${library.outbox.lease-ttl:30000}") long leaseTtlMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.leaseService = leaseService;
+        this.sequenceBlockAllocator = sequenceBlockAllocator;
+        this.bus = bus;
+        this.batchSize = batchSize;
+        this.retention = Duration.ofMillis(retentionMillis);
+        this.leaseTtl = Duration.ofMillis(leaseTtlMillis);
+    }
+
+    @Scheduled(initialDelayString = "${library.outbox.relay-interval:1000}",
+            fixedDelayString = "${library.outbox.relay-interval:1000}")
+    public void scheduledRelay() {
+        try {
+            relay();
+        } catch (Exception e) {
+            // Bus or database not reachable, the events wait in the outbox for the next pass
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        try {
+            leaseService.release(LEASE_NAME);
+        } catch (Exception e) {
+            // The lease runs out on its own
+        }
+    }
+
+    // Returns the number of events delivered; 0 when another instance holds the lease
+    public int relay() {
+        int delivered = 0;
+        while (leaseService.tryAcquire(LEASE_NAME, leaseTtl)) {
+            assignOffsets();
+            int pushed = push();
+            delivered += pushed;
+            if (pushed < batchSize) {
+                break;
+            }
+        }
+        return delivered;
+    }
+
+    private void assignOffsets() {
+        Query query = new Query(Criteria.where("published").is(false).and("offset").is(null))
+                .with(Sort.by("occurredAt", "_id"))
+                .limit(batchSize);
+        query.fields().include("_id");
+        List<LoanEvent> waiting = mongoTemplate.find(query, LoanEvent.class);
+        if (waiting.isEmpty()) {
+            return;
+        }
+        // A crash before the bulk write leaves a gap in the offsets, which consumers tolerate
+        long offset = sequenceBlockAllocator.nextRange(OFFSET_SEQUENCE, waiting.size());
+        Instant purgeAt = Instant.now().plus(retention);
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, LoanEvent.class);
+        for (LoanEvent event : waiting) {
+            bulk.updateOne(new Query(Criteria.where("_id").is(event.getId()).and("offset").is(null)),
+                    new Update().set("offset", offset++).set("purgeAt", purgeAt));
+        }
+        bulk.execute();
+    }
+
+    private int push() {
+        Query query = new Query(Criteria.where("published").is(false).and("offset").gt(0L))
+                .with(Sort.by("offset"))
+                .limit(batchSize);
+        List<LoanEvent> due = mongoTemplate.find(query, LoanEvent.class);
+        if (due.isEmpty()) {
+            return 0;
+        }
+        bus.publish(due.stream().map(LoanOutbox::toDTO).collect(Collectors.toList()));
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("_id").in(due.stream().map(LoanEvent::getId).collect(Collectors.toList()))),
+                new Update().set("published", true),
+                LoanEvent.class);
+        return due.size();
+    }
+}
@@ -0,0 +1,19 @@
+package com.library.loan.outbox;
+
+import com.library.loan.dto.LoanEventDTO;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Default bus: consumers such as every recommendation instance read /api/loans/events at their own
+// offset, so handing events over only lets the relay flag them as published
+@Component
+@ConditionalOnProperty(name = "library.outbox.bus", havingValue = "stream", matchIfMissing = true)
+public class StreamLoanEventBus implements LoanEventBus {
+
+    @Override
+    public void publish(List<LoanEventDTO> events) {
+        // Nothing to push
+    }
+}
@@ -2,10 +2,13 @@ package com.library.loan.repository;
 
 import com.library.loan.entity.Loan;
 import com.library.loan.entity.LoanStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface LoanRepository extends MongoRepository<Loan, Long> {
@@ -16,4 +19,10 @@ public interface LoanRepository extends MongoRepository<Loan, Long> {
     List<Loan> findByStatus(LoanStatus status);
 
     List<Loan> findByUserIdAndStatus(Long userId, LoanStatus status);
+
+    List<Loan> findByUserIdAndStatusIn(Long userId, Collection<LoanStatus> statuses);
+
+    List<Loan> findByIdGreaterThanOrderByIdAsc(Long after, Pageable pageable);
+
+    Stream<Loan> streamAllByOrderByIdAsc();
 }
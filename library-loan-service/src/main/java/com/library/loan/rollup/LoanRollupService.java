@@ -0,0 +1,433 @@
+package com.library.loan.rollup;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.library.loan.dto.BookBatchRequestDTO;
+import com.library.loan.dto.BookDayCountDTO;
+import com.library.loan.dto.BookResponseDTO;
+import com.library.loan.dto.LoanEventBatchDTO;
+import com.library.loan.dto.LoanEventDTO;
+import com.library.loan.dto.LoanTimeseriesDTO;
+import com.library.loan.dto.TimeseriesPointDTO;
+import com.library.loan.entity.LoanEvent;
+import com.library.loan.entity.LoanRollup;
+import com.library.loan.entity.RollupDimension;
+import com.library.loan.entity.RollupGranularity;
+import com.library.loan.feign.BookFeignClient;
+import com.library.loan.outbox.LoanEventStream;
+import com.library.loan.outbox.LoanOutbox;
+import com.library.loan.service.LoanStatsService;
+import com.library.loan.service.SchedulerLeaseService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Pre-aggregated circulation counters: borrows and returns per day and per hour, for each book,
+ * each category and the whole library, so a time series costs one read per bucket instead of a
+ * scan over the loans. The counters follow the loan event stream: the instance holding the lease
+ * reads it from the committed "rollups" offset and bumps the buckets of each event with $inc
+ * upserts, committing the new offset in the same transaction. A batch that fails is read again on
+ * the next pass. Without transactions a crash between the two writes counts the batch twice.
+ * {@link #rebuild} recomputes a date range from the loans (daily buckets) and the loan event log
+ * (hourly buckets, as far back as the events are retained).
+ */
+@Service
+public class LoanRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoanRollupService.class);
+
+    public static final int MAX_POINTS = 2000;
+    public static final int MAX_REBUILD_DAYS = 366;
+    private static final int BOOK_BATCH_SIZE = 1000;
+    private static final int WRITE_BATCH_SIZE = 1000;
+    private static final String ALL_KEY = "all";
+    private static final String BORROWED = "borrowed";
+    private static final String RETURNED = "returned";
+    private static final String CONSUMER = "rollups";
+    private static final String LEASE_NAME = "loan-rollups";
+    private static final Set<String> COUNTED_EVENTS = Set.of("BORROWED", "RETURNED", "BORROW_CANCELLED");
+
+    private final MongoTemplate mongoTemplate;
+    private final LoanStatsService loanStatsService;
+    private final BookFeignClient bookFeignClient;
+    private final LoanEventStream loanEventStream;
+    private final LoanOutbox loanOutbox;
+    private final SchedulerLeaseService leaseService;
+    // Category per book id, a book missing from the book service maps to an empty string
+    private final Cache<Long, String> categories;
+    private final int batchSize;
+    private final Duration leaseTtl;
+    private volatile boolean registered;
+
+    public LoanRollupService(MongoTemplate mongoTemplate, LoanStatsService loanStatsService,
+                             BookFeignClient bookFeignClient, LoanEventStream loanEventStream, LoanOutbox loanOutbox,
+                             SchedulerLeaseService leaseService,
+                             @Value("${library.rollups.category-cache-size:50000}") long categoryCacheSize,
+                             @Value("${library.rollups.category-cache-ttl:3600000}") long categoryCacheTtlMillis,
+                             @Value("${library.rollups.batch-size:500}") int batchSize,
+                             @Value("${library.rollups.lease-ttl:30000}") long leaseTtlMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.loanStatsService = loanStatsService;
+        this.bookFeignClient = bookFeignClient;
+        this.loanEventStream = loanEventStream;
+        this.loanOutbox = loanOutbox;
+        this.leaseService = leaseService;
+        this.categories = Caffeine.newBuilder()
+                .maximumSize(categoryCacheSize)
+                .expireAfterWrite(Duration.ofMillis(categoryCacheTtlMillis))
+                .build();
+        this.batchSize = batchSize;
+        this.leaseTtl = Duration.ofMillis(leaseTtlMillis);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            mongoTemplate.indexOps(LoanRollup.class).ensureIndex(new Index()
+                    .on("granularity", Sort.Direction.ASC)
+                    .on("dimension", Sort.Direction.ASC)
+                    .on("key", Sort.Direction.ASC)
+                    .on("bucket", Sort.Direction.ASC)
+                    .named("granularity_dimension_key_bucket"));
+            mongoTemplate.indexOps(LoanRollup.class).ensureIndex(new Index()
+                    .on("granularity", Sort.Direction.ASC)
+                    .on("bucket", Sort.Direction.ASC)
+                    .named("granularity_bucket"));
+        } catch (Exception e) {
+            // Database not reachable yet, indexes are created on the next start
+        }
+    }
+
+    @Scheduled(initialDelayString = "${library.rollups.poll-interval:1000}",
+            fixedDelayString = "${library.rollups.poll-interval:1000}")
+    public void scheduledApply() {
+        try {
+            applyLoanEvents();
+        } catch (Exception e) {
+            // Book service or database not reachable, the events are read again on the next pass
+            logger.warn("Loan rollups not updated: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        try {
+            leaseService.release(LEASE_NAME);
+        } catch (Exception e) {
+            // The lease runs out on its own
+        }
+    }
+
+    // Returns the number of events read; 0 when another instance holds the lease
+    public int applyLoanEvents() {
+        int read = 0;
+        while (leaseService.tryAcquire(LEASE_NAME, leaseTtl)) {
+            if (!registered) {
+                // Loans before the first run are counted by a rebuild, not read from the stream
+                logger.info("Loan rollups follow the loan event stream from offset {}",
+                        loanEventStream.register(CONSUMER).getOffset());
+                registered = true;
+            }
+            long offset = loanEventStream.getOffset(CONSUMER).getOffset();
+            LoanEventBatchDTO batch = loanEventStream.read(offset, batchSize);
+            if (batch.isResetRequired()) {
+                long purged = loanEventStream.purgedOffset();
+                logger.warn("Loan events {} to {} were purged before they reached the rollups, "
+                        + "rebuild the days they cover", offset + 1, purged);
+                loanEventStream.commitOffset(CONSUMER, purged);
+                continue;
+            }
+            if (batch.getEvents().isEmpty()) {
+                break;
+            }
+            List<LoanEventDTO> events = batch.getEvents().stream()
+                    .filter(event -> COUNTED_EVENTS.contains(event.getType()))
+                    .collect(Collectors.toList());
+            // Before the transaction: without categories the batch is not applied at all
+            Map<Long, String> bookCategories = resolveCategories(
+                    events.stream().map(LoanEventDTO::getBookId).collect(Collectors.toList()));
+            Map<String, Rollup> rollups = new HashMap<>();
+            for (LoanEventDTO event : events) {
+                String counter = "RETURNED".equals(event.getType()) ? RETURNED : BORROWED;
+                long delta = "BORROW_CANCELLED".equals(event.getType()) ? -1 : 1;
+                String category = bookCategories.get(event.getBookId());
+                accumulate(rollups, RollupGranularity.DAY, event.getOccurredAt().truncatedTo(ChronoUnit.DAYS),
+                        event.getBookId(), category, counter, delta);
+                accumulate(rollups, RollupGranularity.HOUR, event.getOccurredAt().truncatedTo(ChronoUnit.HOURS),
+                        event.getBookId(), category, counter, delta);
+            }
+            boolean applied = loanOutbox.inTransaction(() -> {
+                // Another instance applied the batch after the lease ran out: the write on the
+                // offset document makes one of two overlapping transactions abort
+                if (loanEventStream.getOffset(CONSUMER).getOffset() != offset) {
+                    return false;
+                }
+                increment(rollups.values());
+                loanEventStream.commitOffset(CONSUMER, batch.getLastOffset());
+                return true;
+            });
+            if (!applied) {
+                break;
+            }
+            read += batch.getEvents().size();
+            if (batch.getEvents().size() < batchSize) {
+                break;
+            }
+        }
+        return read;
+    }
+
+    private void increment(Collection<Rollup> rollups) {
+        if (rollups.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LoanRollup.class);
+        for (Rollup rollup : rollups) {
+            bulk.upsert(new Query(Criteria.where("_id").is(rollup.id)), new Update()
+                    .setOnInsert("granularity", rollup.granularity)
+                    .setOnInsert("dimension", rollup.dimension)
+                    .setOnInsert("key", rollup.key)
+                    .setOnInsert("bucket", rollup.bucket)
+                    .inc(BORROWED, rollup.borrowed)
+                    .inc(RETURNED, rollup.returned));
+        }
+        bulk.execute();
+    }
+
+    public LoanTimeseriesDTO getTimeseries(RollupGranularity granularity, RollupDimension dimension, String key,
+                                           LocalDate from, LocalDate to) {
+        if (dimension != RollupDimension.ALL && (key == null || key.isBlank())) {
+            throw new IllegalArgumentException("A key is required for the " + dimension + " dimension");
+        }
+        String rollupKey = dimension == RollupDimension.ALL ? ALL_KEY : key;
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : (granularity == RollupGranularity.DAY ? end.minusDays(29) : end);
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("From must not be after to");
+        }
+        ChronoUnit unit = granularity == RollupGranularity.DAY ? ChronoUnit.DAYS : ChronoUnit.HOURS;
+        LocalDateTime first = start.atStartOfDay();
+        LocalDateTime last = end.plusDays(1).atStartOfDay();
+        if (unit.between(first, last) > MAX_POINTS) {
+            throw new IllegalArgumentException("No more than " + MAX_POINTS + " points per time series");
+        }
+
+        Query query = new Query(Criteria.where("granularity").is(granularity).and("dimension").is(dimension)
+                .and("key").is(rollupKey).and("bucket").gte(first).lt(last))
+                .with(Sort.by("bucket"));
+        Map<LocalDateTime, LoanRollup> stored = mongoTemplate.find(query, LoanRollup.class).stream()
+                .collect(Collectors.toMap(LoanRollup::getBucket, rollup -> rollup, (a, b) -> a));
+
+        // Buckets nobody touched are not stored, they come back as zeros
+        List<TimeseriesPointDTO> points = new ArrayList<>();
+        long borrowed = 0;
+        long returned = 0;
+        for (LocalDateTime bucket = first; bucket.isBefore(last); bucket = bucket.plus(1, unit)) {
+            LoanRollup rollup = stored.get(bucket);
+            long bucketBorrowed = rollup != null ? rollup.getBorrowed() : 0;
+            long bucketReturned = rollup != null ? rollup.getReturned() : 0;
+            points.add(new TimeseriesPointDTO(bucket, bucketBorrowed, bucketReturned));
+            borrowed += bucketBorrowed;
+            returned += bucketReturned;
+        }
+        return new LoanTimeseriesDTO(granularity, dimension, rollupKey, borrowed, returned, points);
+    }
+
+    /**
+     * Recomputes the rollups of a date range and returns the number of buckets written. Daily buckets
+     * come from the hot and archived loans, hourly ones from the loan event log and only for hours
+     * it still covers. Increments landing while the range is rebuilt can be overwritten, so ranges
+     * of closed days are the safe ones to rebuild.
+     */
+    public long rebuild(LocalDate from, LocalDate to) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IllegalArgumentException("A from date not after the to date is required");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_REBUILD_DAYS) {
+            throw new IllegalArgumentException("No more than " + MAX_REBUILD_DAYS + " days per rebuild");
+        }
+        LocalDateTime first = from.atStartOfDay();
+        LocalDateTime last = to.plusDays(1).atStartOfDay();
+
+        List<BookDayCountDTO> borrowedPerDay = loanStatsService.countByBookAndDay("borrowDate", from, to);
+        List<BookDayCountDTO> returnedPerDay = loanStatsService.countByBookAndDay("returnDate", from, to);
+        Set<Long> bookIds = Stream.concat(borrowedPerDay.stream(), returnedPerDay.stream())
+                .map(BookDayCountDTO::getBookId)
+                .collect(Collectors.toSet());
+
+        // Hours before the oldest retained event are left as they are
+        LocalDateTime hourlyFirst = hourlyRebuildStart(first, last);
+        List<LoanEvent> events = hourlyFirst != null ? hourlyEvents(hourlyFirst, last) : List.of();
+        events.forEach(event -> bookIds.add(event.getBookId()));
+
+        Map<Long, String> bookCategories;
+        try {
+            bookCategories = resolveCategories(bookIds);
+        } catch (Exception e) {
+            throw new IllegalStateException("Book service unavailable, rollups not rebuilt: " + e.getMessage());
+        }
+
+        Map<String, Rollup> rollups = new HashMap<>();
+        for (BookDayCountDTO count : borrowedPerDay) {
+            accumulate(rollups, RollupGranularity.DAY, count.getDate().atStartOfDay(), count.getBookId(),
+                    bookCategories.get(count.getBookId()), BORROWED, count.getCount());
+        }
+        for (BookDayCountDTO count : returnedPerDay) {
+            accumulate(rollups, RollupGranularity.DAY, count.getDate().atStartOfDay(), count.getBookId(),
+                    bookCategories.get(count.getBookId()), RETURNED, count.getCount());
+        }
+        for (LoanEvent event : events) {
+            String counter = "RETURNED".equals(event.getType()) ? RETURNED : BORROWED;
+            accumulate(rollups, RollupGranularity.HOUR, event.getOccurredAt().truncatedTo(ChronoUnit.HOURS),
+                    event.getBookId(), bookCategories.get(event.getBookId()), counter,
+                    "BORROW_CANCELLED".equals(event.getType()) ? -1 : 1);
+        }
+
+        List<Rollup> pending = new ArrayList<>(rollups.values());
+        for (int i = 0; i < pending.size(); i += WRITE_BATCH_SIZE) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LoanRollup.class);
+            for (Rollup rollup : pending.subList(i, Math.min(i + WRITE_BATCH_SIZE, pending.size()))) {
+                bulk.upsert(new Query(Criteria.where("_id").is(rollup.id)), new Update()
+                        .set("granularity", rollup.granularity)
+                        .set("dimension", rollup.dimension)
+                        .set("key", rollup.key)
+                        .set("bucket", rollup.bucket)
+                        .set(BORROWED, rollup.borrowed)
+                        .set(RETURNED, rollup.returned));
+            }
+            bulk.execute();
+        }
+
+        // Buckets of the range that no longer have any loans behind them
+        removeStale(RollupGranularity.DAY, first, last, rollups.keySet());
+        if (hourlyFirst != null) {
+            removeStale(RollupGranularity.HOUR, hourlyFirst, last, rollups.keySet());
+        }
+        logger.info("Rebuilt {} loan rollups for {} to {}", pending.size(), from, to);
+        return pending.size();
+    }
+
+    private LocalDateTime hourlyRebuildStart(LocalDateTime first, LocalDateTime last) {
+        Query oldest = new Query().with(Sort.by("occurredAt")).limit(1);
+        oldest.fields().include("occurredAt");
+        LoanEvent event = mongoTemplate.findOne(oldest, LoanEvent.class);
+        if (event == null) {
+            return null;
+        }
+        // The oldest retained hour may have lost events to the purge already
+        LocalDateTime covered = event.getOccurredAt().truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        LocalDateTime start = covered.isAfter(first) ? covered : first;
+        return start.isBefore(last) ? start : null;
+    }
+
+    private List<LoanEvent> hourlyEvents(LocalDateTime first, LocalDateTime last) {
+        Query query = new Query(Criteria.where("occurredAt").gte(first).lt(last)
+                .and("type").in("BORROWED", "RETURNED", "BORROW_CANCELLED"));
+        query.fields().include("bookId").include("type").include("occurredAt");
+        try (Stream<LoanEvent> events = mongoTemplate.stream(query, LoanEvent.class)) {
+            return events.collect(Collectors.toList());
+        }
+    }
+
+    private void removeStale(RollupGranularity granularity, LocalDateTime first, LocalDateTime last,
+                             Set<String> rebuilt) {
+        Query query = new Query(Criteria.where("granularity").is(granularity).and("bucket").gte(first).lt(last));
+        query.fields().include("_id");
+        List<String> stale = mongoTemplate.find(query, LoanRollup.class).stream()
+                .map(LoanRollup::getId)
+                .filter(id -> !rebuilt.contains(id))
+                .collect(Collectors.toList());
+        for (int i = 0; i < stale.size(); i += WRITE_BATCH_SIZE) {
+            mongoTemplate.remove(new Query(Criteria.where("_id")
+                    .in(stale.subList(i, Math.min(i + WRITE_BATCH_SIZE, stale.size())))), LoanRollup.class);
+        }
+    }
+
+    // Cached lookups first, the misses in batches of BOOK_BATCH_SIZE with only the category projected
+    private Map<Long, String> resolveCategories(Collection<Long> bookIds) {
+        Map<Long, String> resolved = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long bookId : new LinkedHashSet<>(bookIds)) {
+            String category = categories.getIfPresent(bookId);
+            if (category != null) {
+                resolved.put(bookId, category);
+            } else {
+                missing.add(bookId);
+            }
+        }
+        for (int i = 0; i < missing.size(); i += BOOK_BATCH_SIZE) {
+            List<Long> batch = missing.subList(i, Math.min(i + BOOK_BATCH_SIZE, missing.size()));
+            Map<Long, String> found = bookFeignClient.getBooksByIds(new BookBatchRequestDTO(batch, List.of("category")))
+                    .stream()
+                    .collect(Collectors.toMap(BookResponseDTO::getId,
+                            book -> book.getCategory() != null ? book.getCategory() : "", (a, b) -> a));
+            for (Long bookId : batch) {
+                String category = found.getOrDefault(bookId, "");
+                categories.put(bookId, category);
+                resolved.put(bookId, category);
+            }
+        }
+        resolved.values().removeIf(String::isEmpty);
+        return resolved;
+    }
+
+    private static void accumulate(Map<String, Rollup> rollups, RollupGranularity granularity, LocalDateTime bucket,
+                                   Long bookId, String category, String counter, long delta) {
+        add(rollups, granularity, RollupDimension.BOOK, String.valueOf(bookId), bucket, counter, delta);
+        if (category != null) {
+            add(rollups, granularity, RollupDimension.CATEGORY, category, bucket, counter, delta);
+        }
+        add(rollups, granularity, RollupDimension.ALL, ALL_KEY, bucket, counter, delta);
+    }
+
+    private static void add(Map<String, Rollup> rollups, RollupGranularity granularity, RollupDimension dimension,
+                            String key, LocalDateTime bucket, String counter, long delta) {
+        String id = granularity + ":" + dimension + ":" + key + ":" + bucket;
+        Rollup rollup = rollups.computeIfAbsent(id, ignored -> new Rollup(id, granularity, dimension, key, bucket));
+        if (BORROWED.equals(counter)) {
+            rollup.borrowed += delta;
+        } else {
+            rollup.returned += delta;
+        }
+    }
+
+    private static final class Rollup {
+        private final String id;
+        private final RollupGranularity granularity;
+        private final RollupDimension dimension;
+        private final String key;
+        private final LocalDateTime bucket;
+        private long borrowed;
+        private long returned;
+
+        private Rollup(String id, RollupGranularity granularity, RollupDimension dimension, String key,
+                       LocalDateTime bucket) {
+            this.id = id;
+            this.granularity = granularity;
+            this.dimension = dimension;
+            this.key = key;
+            this.bucket = bucket;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.library.loan.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.library.loan.dto.LoanDTO;
+import com.library.loan.entity.IdempotencyRecord;
+import com.library.loan.entity.IdempotencyStatus;
+import com.library.loan.exception.IdempotencyKeyConflictException;
+import com.library.loan.exception.IdempotencyKeyFailedException;
+import com.library.loan.exception.IdempotencyKeyInProgressException;
+import com.library.loan.exception.LoanRequestRejectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs an operation at most once per Idempotency-Key. The key is claimed in MongoDB before the
+ * operation runs and the response is stored when it completes, so a retry of a completed request
+ * gets the stored response back instead of borrowing or returning again. Finished keys are also
+ * held in a bounded in-memory cache in front of the collection. Only an operation rejected before
+ * it changed anything releases its key for a retry; any other failure may have left changes behind
+ * (a book service call that timed out after it was applied, say), so the key is stored as FAILED
+ * and retries get the failure back. Once the operation has run its outcome is never dropped: a
+ * store that keeps failing is handed to a background retry while this instance replays it from
+ * memory.
+ */
+@Service
+public class IdempotencyService {
+
+    public record Outcome(LoanDTO response, boolean replayed) {
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final int STORE_ATTEMPTS = 3;
+    private static final long STORE_BACKOFF_MILLIS = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final Duration ttl;
+    private final Duration lockTimeout;
+    private final Cache<String, IdempotencyRecord> finished;
+    // Finished keys whose record could not be stored yet, retried in the background
+    private final Map<String, IdempotencyRecord> unstored = new ConcurrentHashMap<>();
+
+    public IdempotencyService(MongoTemplate mongoTemplate,
+                              @Value("${library.idempotency.ttl:86400000}") long ttlMillis,
+                              @Value("${library.idempotency.lock-timeout:60000}") long lockTimeoutMillis,
+                              @Value("${library.idempotency.cache-size:10000}") long cacheSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.ttl = Duration.ofMillis(ttlMillis);
+        this.lockTimeout = Duration.ofMillis(lockTimeoutMillis);
+        this.finished = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            mongoTemplate.indexOps(IdempotencyRecord.class).ensureIndex(new Index()
+                    .on("expiresAt", Sort.Direction.ASC)
+                    .expire(0)
+                    .named("expiresAt_ttl"));
+        } catch (Exception e) {
+            // Database not reachable yet, the index is created on the next start
+        }
+    }
+
+    public Outcome execute(String key, String fingerprint, Supplier<LoanDTO> operation) {
+        if (key == null || key.isBlank()) {
+            return new Outcome(operation.get(), false);
+        }
+        IdempotencyRecord cached = finished.getIfPresent(key);
+        if (cached != null) {
+            return replay(cached, fingerprint);
+        }
+
+        IdempotencyRecord existing = claim(key, fingerprint);
+        if (existing != null) {
+            return replay(existing, fingerprint);
+        }
+
+        LoanDTO response;
+        try {
+            response = operation.get();
+        } catch (LoanRequestRejectedException e) {
+            mongoTemplate.remove(new Query(Criteria.where("_id").is(key)
+                    .and("status").is(IdempotencyStatus.IN_PROGRESS)), IdempotencyRecord.class);
+            throw e;
+        } catch (RuntimeException e) {
+            store(new IdempotencyRecord(key, fingerprint, IdempotencyStatus.FAILED, null, e.getMessage(),
+                    Instant.now(), Instant.now().plus(ttl)));
+            throw e;
+        }
+        store(new IdempotencyRecord(key, fingerprint, IdempotencyStatus.COMPLETED, response, null,
+                Instant.now(), Instant.now().plus(ttl)));
+        return new Outcome(response, false);
+    }
+
+    @Scheduled(fixedDelayString = "${library.idempotency.store-retry-interval:1000}")
+    public void storeUnstored() {
+        for (IdempotencyRecord record : unstored.values()) {
+            try {
+                mongoTemplate.save(record);
+                unstored.remove(record.getKey(), record);
+            } catch (Exception e) {
+                // Database still not reachable, tried again on the next run
+                return;
+            }
+        }
+    }
+
+    private void store(IdempotencyRecord record) {
+        finished.put(record.getKey(), record);
+        for (int attempt = 1; attempt <= STORE_ATTEMPTS; attempt++) {
+            try {
+                mongoTemplate.save(record);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt == STORE_ATTEMPTS) {
+                    logger.warn("Idempotency-Key {} not stored, retrying in the background: {}",
+                            record.getKey(), e.getMessage());
+                    unstored.put(record.getKey(), record);
+                    return;
+                }
+                try {
+                    Thread.sleep(STORE_BACKOFF_MILLIS * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    unstored.put(record.getKey(), record);
+                    return;
+                }
+            }
+        }
+    }
+
+    // Returns null once the key is ours to run, otherwise the record that already holds it
+    private IdempotencyRecord claim(String key, String fingerprint) {
+        Instant now = Instant.now();
+        try {
+            mongoTemplate.insert(new IdempotencyRecord(key, fingerprint, IdempotencyStatus.IN_PROGRESS, null, null,
+                    now, now.plus(ttl)));
+            return null;
+        } catch (DuplicateKeyException e) {
+            // Taken over when the request holding it died without completing or releasing it
+            IdempotencyRecord stale = mongoTemplate.findAndModify(
+                    new Query(Criteria.where("_id").is(key)
+                            .and("status").is(IdempotencyStatus.IN_PROGRESS)
+                            .and("fingerprint").is(fingerprint)
+                            .and("startedAt").lt(now.minus(lockTimeout))),
+                    new Update().set("startedAt", now).set("expiresAt", now.plus(ttl)),
+                    FindAndModifyOptions.options().returnNew(true),
+                    IdempotencyRecord.class);
+            if (stale != null) {
+                return null;
+            }
+            IdempotencyRecord existing = mongoTemplate.findById(key, IdempotencyRecord.class);
+            if (existing == null) {
+                // Released by a failed attempt in the meantime
+                return claim(key, fingerprint);
+            }
+            return existing;
+        }
+    }
+
+    private Outcome replay(IdempotencyRecord record, String fingerprint) {
+        if (!record.getFingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyConflictException("Idempotency-Key " + record.getKey()
+                    + " was already used for a different request");
+        }
+        if (record.getStatus() == IdempotencyStatus.FAILED) {
+            finished.put(record.getKey(), record);
+            throw new IdempotencyKeyFailedException(record.getError());
+        }
+        if (record.getStatus() != IdempotencyStatus.COMPLETED) {
+            throw new IdempotencyKeyInProgressException("A request with Idempotency-Key " + record.getKey()
+                    + " is still in progress");
+        }
+        finished.put(record.getKey(), record);
+        return new Outcome(record.getResponse(), true);
+    }
+}
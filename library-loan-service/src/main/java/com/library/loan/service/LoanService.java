@@ -1,74 +1,120 @@
 package com.library.loan.service;
 
+import com.library.loan.archive.LoanArchiveService;
+import com.library.loan.dto.BatchBorrowRequestDTO;
+import com.library.loan.dto.BatchLoanItemDTO;
+import com.library.loan.dto.BatchLoanResultDTO;
+import com.library.loan.dto.BatchReturnRequestDTO;
 import com.library.loan.dto.BorrowRequestDTO;
+import com.library.loan.dto.CopyBatchRequestDTO;
+import com.library.loan.dto.CopyHoldDTO;
+import com.library.loan.dto.CopyReservationDTO;
+import com.library.loan.dto.CopyReturnResultDTO;
+import com.library.loan.dto.CursorPageDTO;
 import com.library.loan.dto.LoanDTO;
+import com.library.loan.dto.ReservationBatchRequestDTO;
 import com.library.loan.entity.Loan;
 import com.library.loan.entity.LoanStatus;
+import com.library.loan.exception.LoanRequestRejectedException;
 import com.library.loan.feign.BookFeignClient;
-import com.library.loan.feign.UserFeignClient;
 import com.library.loan.mapper.LoanMapper;
+import com.library.loan.outbox.LoanOutbox;
 import com.library.loan.repository.LoanRepository;
+import com.library.loan.users.UserExistenceCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class LoanService {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+
     private final LoanRepository loanRepository;
+    private final MongoTemplate mongoTemplate;
     private final LoanMapper loanMapper;
+    private final ObjectMapper objectMapper;
     private final BookFeignClient bookFeignClient;
-    private final UserFeignClient userFeignClient;
+    private final UserExistenceCache userExistenceCache;
+    private final LoanOutbox loanOutbox;
+    private final LoanArchiveService loanArchiveService;
+    private final ThreadPoolTaskExecutor taskExecutor;
 
     public LoanDTO borrowBook(BorrowRequestDTO request) {
-        // Verify user exists
+        // Verify user exists while a copy is reserved
+        CompletableFuture<Boolean> userExists = CompletableFuture.supplyAsync(
+                () -> userExists(request.getUserId()), taskExecutor);
+
+        CopyReservationDTO reservation;
         try {
-            userFeignClient.getUserById(request.getUserId());
+            reservation = bookFeignClient.reserveCopy(request.getBookId());
         } catch (Exception e) {
-            throw new RuntimeException("User not found with id: " + request.getUserId());
+            throw new LoanRequestRejectedException("Book not found or not available: " + e.getMessage());
         }
 
-        // Check book availability
-        try {
-            boolean available = bookFeignClient.isBookAvailable(request.getBookId());
-            if (!available) {
-                throw new RuntimeException("Book is not available");
+        if (!userExists.join()) {
+            if (reservation.isReserved()) {
+                releaseReservation(reservation.getToken());
             }
-        } catch (Exception e) {
-            throw new RuntimeException("Book not found or not available: " + e.getMessage());
+            throw new LoanRequestRejectedException("User not found with id: " + request.getUserId());
         }
-
-        // Decrease available copies
-        try {
-            bookFeignClient.decreaseAvailableCopies(request.getBookId());
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to update book availability: " + e.getMessage());
+        if (!reservation.isReserved()) {
+            throw new LoanRequestRejectedException("Book not found or not available: " + reservation.getMessage());
         }
 
         // Create loan
-        Loan loan = new Loan();
-        loan.setUserId(request.getUserId());
-        loan.setBookId(request.getBookId());
-        loan.setBorrowDate(LocalDate.now());
-        loan.setDueDate(LocalDate.now().plusDays(14)); // 14 days loan period
-        loan.setStatus(LoanStatus.ACTIVE);
+        Loan loan = newLoan(request.getUserId(), request.getBookId());
+
+        Loan saved;
+        try {
+            // The loan and its event are written together
+            saved = loanOutbox.inTransaction(() -> {
+                Loan inserted = loanRepository.save(loan);
+                loanOutbox.append(inserted, "BORROWED");
+                return inserted;
+            });
+        } catch (RuntimeException e) {
+            releaseReservation(reservation.getToken());
+            throw e;
+        }
 
-        Loan saved = loanRepository.save(loan);
+        // Confirming is idempotent, so one retry covers a lost response
+        if (!confirmReservation(reservation.getToken()) && !confirmReservation(reservation.getToken())) {
+            // The hold expired or cannot be confirmed: undo the loan and give the copy back if it is still held
+            loanOutbox.inTransaction(() -> {
+                loanRepository.deleteById(saved.getId());
+                loanOutbox.retract(List.of(saved.getId()), "BORROWED", "BORROW_CANCELLED");
+            });
+            releaseReservation(reservation.getToken());
+            throw new LoanRequestRejectedException("Reservation expired for book with id: " + request.getBookId());
+        }
         return loanMapper.toDTO(saved);
     }
 
     public LoanDTO returnBook(Long loanId) {
         Loan loan = loanRepository.findById(loanId)
-                .orElseThrow(() -> new RuntimeException("Loan not found with id: " + loanId));
+                .orElseThrow(() -> new LoanRequestRejectedException("Loan not found with id: " + loanId));
 
         if (loan.getStatus() == LoanStatus.RETURNED) {
-            throw new RuntimeException("Loan already returned");
+            throw new LoanRequestRejectedException("Loan already returned");
         }
 
         // Increase available copies
@@ -81,10 +127,147 @@ public class LoanService {
         loan.setReturnDate(LocalDate.now());
         loan.setStatus(LoanStatus.RETURNED);
 
-        Loan updated = loanRepository.save(loan);
+        Loan updated = loanOutbox.inTransaction(() -> {
+            Loan saved = loanRepository.save(loan);
+            loanOutbox.append(saved, "RETURNED");
+            return saved;
+        });
         return loanMapper.toDTO(updated);
     }
 
+    // A whole checkout costs one user check, one bulk reservation, one insert and one bulk confirm
+    public BatchLoanResultDTO borrowBooks(BatchBorrowRequestDTO request) {
+        CompletableFuture<Boolean> userExists = CompletableFuture.supplyAsync(
+                () -> userExists(request.getUserId()), taskExecutor);
+
+        List<CopyReservationDTO> reservations;
+        try {
+            reservations = bookFeignClient.reserveCopies(new CopyBatchRequestDTO(request.getBookIds()));
+        } catch (Exception e) {
+            throw new RuntimeException("Books could not be reserved: " + e.getMessage());
+        }
+
+        Map<String, Loan> loansByToken = new LinkedHashMap<>();
+        for (CopyReservationDTO reservation : reservations) {
+            if (reservation.isReserved()) {
+                loansByToken.put(reservation.getToken(), newLoan(request.getUserId(), reservation.getBookId()));
+            }
+        }
+        if (!userExists.join()) {
+            releaseReservations(loansByToken.keySet());
+            throw new RuntimeException("User not found with id: " + request.getUserId());
+        }
+
+        Set<String> confirmed = Set.of();
+        if (!loansByToken.isEmpty()) {
+            try {
+                loanOutbox.inTransaction(() -> {
+                    loanRepository.insert(loansByToken.values());
+                    loanOutbox.append(loansByToken.values(), "BORROWED");
+                });
+            } catch (RuntimeException e) {
+                releaseReservations(loansByToken.keySet());
+                throw e;
+            }
+            confirmed = confirmReservations(loansByToken.keySet());
+
+            // Undo the loans whose hold expired and give back any copy still held
+            Set<String> expired = new HashSet<>(loansByToken.keySet());
+            expired.removeAll(confirmed);
+            if (!expired.isEmpty()) {
+                List<Long> expiredLoanIds = expired.stream()
+                        .map(token -> loansByToken.get(token).getId())
+                        .collect(Collectors.toList());
+                loanOutbox.inTransaction(() -> {
+                    loanRepository.deleteAllById(expiredLoanIds);
+                    loanOutbox.retract(expiredLoanIds, "BORROWED", "BORROW_CANCELLED");
+                });
+                releaseReservations(expired);
+            }
+        }
+
+        List<BatchLoanItemDTO> items = new ArrayList<>(reservations.size());
+        List<Loan> borrowed = new ArrayList<>();
+        for (CopyReservationDTO reservation : reservations) {
+            Loan loan = reservation.isReserved() ? loansByToken.get(reservation.getToken()) : null;
+            if (loan == null) {
+                items.add(new BatchLoanItemDTO(reservation.getBookId(), null, false,
+                        "Book not found or not available: " + reservation.getMessage(), null));
+            } else if (!confirmed.contains(reservation.getToken())) {
+                items.add(new BatchLoanItemDTO(reservation.getBookId(), null, false,
+                        "Reservation expired for book with id: " + reservation.getBookId(), null));
+            } else {
+                borrowed.add(loan);
+                items.add(new BatchLoanItemDTO(loan.getBookId(), loan.getId(), true, "Book borrowed",
+                        loanMapper.toDTO(loan)));
+            }
+        }
+        return new BatchLoanResultDTO(borrowed.size(), items.size() - borrowed.size(), items);
+    }
+
+    // Loads all loans in one query, returns all copies in one book-service call and marks the
+    // loans returned in one bulk write
+    public BatchLoanResultDTO returnBooks(BatchReturnRequestDTO request) {
+        List<Long> loanIds = request.getLoanIds();
+        Map<Long, Loan> loans = new HashMap<>();
+        loanRepository.findAllById(loanIds).forEach(loan -> loans.put(loan.getId(), loan));
+
+        BatchLoanItemDTO[] items = new BatchLoanItemDTO[loanIds.size()];
+        List<Integer> positions = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < loanIds.size(); i++) {
+            Long loanId = loanIds.get(i);
+            Loan loan = loans.get(loanId);
+            if (loan == null) {
+                items[i] = new BatchLoanItemDTO(null, loanId, false, "Loan not found with id: " + loanId, null);
+            } else if (loan.getStatus() == LoanStatus.RETURNED || !seen.add(loanId)) {
+                items[i] = new BatchLoanItemDTO(loan.getBookId(), loanId, false, "Loan already returned", null);
+            } else {
+                positions.add(i);
+            }
+        }
+
+        List<Loan> returned = new ArrayList<>();
+        if (!positions.isEmpty()) {
+            List<Long> bookIds = positions.stream()
+                    .map(i -> loans.get(loanIds.get(i)).getBookId())
+                    .collect(Collectors.toList());
+            List<CopyReturnResultDTO> copies;
+            try {
+                copies = bookFeignClient.increaseAvailableCopies(new CopyBatchRequestDTO(bookIds));
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to update book availability: " + e.getMessage());
+            }
+
+            LocalDate today = LocalDate.now();
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Loan.class);
+            for (int j = 0; j < positions.size(); j++) {
+                int i = positions.get(j);
+                Loan loan = loans.get(loanIds.get(i));
+                CopyReturnResultDTO copy = copies.get(j);
+                if (!copy.isReturned()) {
+                    items[i] = new BatchLoanItemDTO(loan.getBookId(), loan.getId(), false,
+                            "Failed to update book availability: " + copy.getMessage(), null);
+                    continue;
+                }
+                loan.setReturnDate(today);
+                loan.setStatus(LoanStatus.RETURNED);
+                bulk.updateOne(new Query(Criteria.where("_id").is(loan.getId())),
+                        new Update().set("returnDate", today).set("status", LoanStatus.RETURNED));
+                returned.add(loan);
+                items[i] = new BatchLoanItemDTO(loan.getBookId(), loan.getId(), true, "Book returned",
+                        loanMapper.toDTO(loan));
+            }
+            if (!returned.isEmpty()) {
+                loanOutbox.inTransaction(() -> {
+                    bulk.execute();
+                    loanOutbox.append(returned, "RETURNED");
+                });
+            }
+        }
+        return new BatchLoanResultDTO(returned.size(), items.length - returned.size(), Arrays.asList(items));
+    }
+
     @Transactional(readOnly = true)
     public LoanDTO getLoanById(Long id) {
         Loan loan = loanRepository.findById(id)
@@ -99,9 +282,35 @@ public class LoanService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
+    public CursorPageDTO<LoanDTO> getLoansPage(Long after, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<LoanDTO> items = loanRepository
+                .findByIdGreaterThanOrderByIdAsc(after != null ? after : 0L, PageRequest.of(0, pageSize)).stream()
+                .map(loanMapper::toDTO)
+                .collect(Collectors.toList());
+        Long nextAfter = items.size() == pageSize ? items.get(items.size() - 1).getId() : null;
+        return new CursorPageDTO<>(items, nextAfter);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllLoans(OutputStream out) throws IOException {
+        try (Stream<Loan> loans = loanRepository.streamAllByOrderByIdAsc()) {
+            Iterator<Loan> iterator = loans.iterator();
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(loanMapper.toDTO(iterator.next())));
+                out.write('\n');
+            }
+        }
+        out.flush();
+    }
+
     @Transactional(readOnly = true)
     public List<LoanDTO> getLoansByUserId(Long userId) {
-        return loanRepository.findByUserId(userId).stream()
+        // Recent and open loans from the loans collection, older returned ones from the history tier
+        return Stream.concat(loanRepository.findByUserId(userId).stream(),
+                        loanArchiveService.getArchivedLoans(userId).stream())
+                .sorted(Comparator.comparing(Loan::getId))
                 .map(loanMapper::toDTO)
                 .collect(Collectors.toList());
     }
@@ -115,10 +324,67 @@ public class LoanService {
 
     @Transactional(readOnly = true)
     public List<LoanDTO> getActiveLoansByUserId(Long userId) {
-        return loanRepository.findByUserIdAndStatus(userId, LoanStatus.ACTIVE).stream()
+        // Overdue loans are still out, they only passed their due date
+        return loanRepository.findByUserIdAndStatusIn(userId, List.of(LoanStatus.ACTIVE, LoanStatus.OVERDUE)).stream()
                 .map(loanMapper::toDTO)
                 .collect(Collectors.toList());
     }
-}
 
+    private boolean userExists(Long userId) {
+        return userExistenceCache.exists(userId);
+    }
+
+    private Loan newLoan(Long userId, Long bookId) {
+        Loan loan = new Loan();
+        loan.setUserId(userId);
+        loan.setBookId(bookId);
+        loan.setBorrowDate(LocalDate.now());
+        loan.setDueDate(LocalDate.now().plusDays(14)); // 14 days loan period
+        loan.setStatus(LoanStatus.ACTIVE);
+        return loan;
+    }
+
+    private boolean confirmReservation(String token) {
+        try {
+            bookFeignClient.confirmReservation(token);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void releaseReservation(String token) {
+        try {
+            bookFeignClient.releaseReservation(token);
+        } catch (Exception e) {
+            // Best effort, an unconfirmed hold expires on its own
+        }
+    }
 
+    // Returns the confirmed tokens; confirming is idempotent, so a failed call is retried once
+    private Set<String> confirmReservations(Collection<String> tokens) {
+        ReservationBatchRequestDTO request = new ReservationBatchRequestDTO(new ArrayList<>(tokens));
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                return bookFeignClient.confirmReservations(request).stream()
+                        .filter(hold -> "CONFIRMED".equals(hold.getStatus()))
+                        .map(CopyHoldDTO::getToken)
+                        .collect(Collectors.toSet());
+            } catch (Exception e) {
+                // Retried once below, then every hold counts as unconfirmed
+            }
+        }
+        return Set.of();
+    }
+
+    private void releaseReservations(Collection<String> tokens) {
+        if (tokens.isEmpty()) {
+            return;
+        }
+        try {
+            bookFeignClient.releaseReservations(new ReservationBatchRequestDTO(new ArrayList<>(tokens)));
+        } catch (Exception e) {
+            // Best effort, unconfirmed holds expire on their own
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.library.loan.service;
+
+import com.library.loan.dto.BookBorrowCountDTO;
+import com.library.loan.dto.BookDayCountDTO;
+import com.library.loan.dto.UserBorrowCountDTO;
+import com.library.loan.entity.Loan;
+import com.library.loan.entity.LoanHistoryBucket;
+import com.library.loan.entity.LoanStatus;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationPipeline;
+import org.springframework.data.mongodb.core.aggregation.UnionWithOperation;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+
+@Service
+@RequiredArgsConstructor
+public class LoanStatsService {
+
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private final MongoTemplate mongoTemplate;
+
+    public List<BookBorrowCountDTO> countByBook(Integer limit, LocalDate from, LocalDate to, LoanStatus status) {
+        return aggregate("bookId", limit, matchCriteria(null, from, to, status), historyCriteria(null, from, to),
+                BookBorrowCountDTO.class);
+    }
+
+    public BookBorrowCountDTO countForBook(Long bookId, LocalDate from, LocalDate to, LoanStatus status) {
+        Criteria criteria = matchCriteria(null, from, to, status).and("bookId").is(bookId);
+        List<BookBorrowCountDTO> result = aggregate("bookId", null, criteria,
+                historyCriteria(null, from, to), BookBorrowCountDTO.class);
+        return result.isEmpty() ? new BookBorrowCountDTO(bookId, 0L) : result.get(0);
+    }
+
+    public List<BookBorrowCountDTO> countByBookForUser(Long userId, Integer limit, LocalDate from, LocalDate to,
+                                                       LoanStatus status) {
+        return aggregate("bookId", limit, matchCriteria(userId, from, to, status),
+                historyCriteria(userId, from, to), BookBorrowCountDTO.class);
+    }
+
+    public List<UserBorrowCountDTO> countByUser(Integer limit, LocalDate from, LocalDate to, LoanStatus status) {
+        return aggregate("userId", limit, matchCriteria(null, from, to, status), historyCriteria(null, from, to),
+                UserBorrowCountDTO.class);
+    }
+
+    // Loans per book over both tiers in two plain aggregations, so it can run inside a transaction,
+    // where $unionWith is not allowed
+    public Map<Long, Long> countAllByBook() {
+        Map<Long, Long> counts = new HashMap<>();
+        mongoTemplate.aggregate(newAggregation(
+                        group("bookId").count().as("count"),
+                        project("count").and("bookId").previousOperation()),
+                Loan.class, BookBorrowCountDTO.class).getMappedResults()
+                .forEach(count -> counts.merge(count.getBookId(), count.getCount(), Long::sum));
+        mongoTemplate.aggregate(newAggregation(
+                        unwind("loans"),
+                        group("loans.bookId").count().as("count"),
+                        project("count").and("bookId").previousOperation()),
+                LoanHistoryBucket.class, BookBorrowCountDTO.class).getMappedResults()
+                .forEach(count -> counts.merge(count.getBookId(), count.getCount(), Long::sum));
+        return counts;
+    }
+
+    // Loans per book and day of dateField (borrowDate or returnDate), used to rebuild the daily rollups
+    public List<BookDayCountDTO> countByBookAndDay(String dateField, LocalDate from, LocalDate to) {
+        Criteria criteria = Criteria.where(dateField).gte(from).lte(to);
+        // Buckets are keyed by borrow month, and a loan is never returned before it is borrowed
+        Criteria historyCriteria = historyCriteria(null, "borrowDate".equals(dateField) ? from : null, to);
+        Aggregation aggregation = newAggregation(
+                match(criteria),
+                unionWithHistory(criteria, historyCriteria),
+                group("bookId", dateField).count().as("count"),
+                project("count").and("bookId").as("bookId").and(dateField).as("date"));
+        return mongoTemplate.aggregate(aggregation, Loan.class, BookDayCountDTO.class).getMappedResults();
+    }
+
+    private <T> List<T> aggregate(String groupField, Integer limit, Criteria criteria, Criteria historyCriteria,
+                                  Class<T> resultType) {
+        List<AggregationOperation> operations = new ArrayList<>();
+        operations.add(match(criteria));
+        operations.add(unionWithHistory(criteria, historyCriteria));
+        operations.add(group(groupField).count().as("count"));
+        operations.add(sort(Sort.by(Sort.Direction.DESC, "count").and(Sort.by(Sort.Direction.ASC, "_id"))));
+        if (limit != null && limit > 0) {
+            operations.add(limit(limit));
+        }
+        operations.add(project("count").and(groupField).previousOperation());
+
+        Aggregation aggregation = newAggregation(operations);
+        return mongoTemplate.aggregate(aggregation, Loan.class, resultType).getMappedResults();
+    }
+
+    // Archived loans are unwound from their history buckets and counted alongside the hot ones
+    private AggregationOperation unionWithHistory(Criteria criteria, Criteria historyCriteria) {
+        return UnionWithOperation.unionWith(mongoTemplate.getCollectionName(LoanHistoryBucket.class))
+                .pipeline(new AggregationPipeline(List.of(
+                        match(historyCriteria),
+                        unwind("loans"),
+                        replaceRoot("loans"),
+                        archivedLoanMatch(criteria))));
+    }
+
+    // Mapped against Loan by hand: inside $unionWith the criteria values would otherwise skip the
+    // entity conversion and dates would not compare equal to the stored ones
+    private AggregationOperation archivedLoanMatch(Criteria criteria) {
+        Document mapped = new QueryMapper(mongoTemplate.getConverter()).getMappedObject(criteria.getCriteriaObject(),
+                mongoTemplate.getConverter().getMappingContext().getPersistentEntity(Loan.class));
+        return context -> new Document("$match", mapped);
+    }
+
+    // Narrows the history buckets by user and borrow month before their loans are unwound
+    private Criteria historyCriteria(Long userId, LocalDate from, LocalDate to) {
+        Criteria criteria = new Criteria();
+        if (userId != null) {
+            criteria.and("userId").is(userId);
+        }
+        if (from != null && to != null) {
+            criteria.and("month").gte(from.format(MONTH)).lte(to.format(MONTH));
+        } else if (from != null) {
+            criteria.and("month").gte(from.format(MONTH));
+        } else if (to != null) {
+            criteria.and("month").lte(to.format(MONTH));
+        }
+        return criteria;
+    }
+
+    private Criteria matchCriteria(Long userId, LocalDate from, LocalDate to, LoanStatus status) {
+        Criteria criteria = new Criteria();
+        if (userId != null) {
+            criteria.and("userId").is(userId);
+        }
+        if (from != null && to != null) {
+            criteria.and("borrowDate").gte(from).lte(to);
+        } else if (from != null) {
+            criteria.and("borrowDate").gte(from);
+        } else if (to != null) {
+            criteria.and("borrowDate").lte(to);
+        }
+        if (status != null) {
+            criteria.and("status").is(status);
+        }
+        return criteria;
+    }
+}
@@ -0,0 +1,133 @@
+package com.library.loan.service;
+
+import com.library.loan.entity.Loan;
+import com.library.loan.entity.LoanStatus;
+import com.library.loan.outbox.LoanOutbox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Moves active loans past their due date to OVERDUE. Each run reads the due slice through the
+ * (status, dueDate) index one bounded page at a time and flips a page with one bulk write, so the
+ * work follows the number of loans falling due rather than the size of the collection. Flipped
+ * loans leave the ACTIVE slice, so the next page is simply the next query. A lease document keeps
+ * concurrent instances from scanning at the same time.
+ */
+@Service
+public class OverdueLoanService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OverdueLoanService.class);
+
+    private static final String LEASE_NAME = "overdue-loans";
+
+    private final MongoTemplate mongoTemplate;
+    private final SchedulerLeaseService leaseService;
+    private final LoanOutbox loanOutbox;
+    private final int pageSize;
+    private final int maxPages;
+    private final Duration leaseTtl;
+
+    public OverdueLoanService(MongoTemplate mongoTemplate, SchedulerLeaseService leaseService,
+                              LoanOutbox loanOutbox,
+                              @Value("${library.overdue.page-size:500}") int pageSize,
+                              @Value("${library.overdue.max-pages:200}") int maxPages,
+                              @Value("${library.overdue.lease-ttl:120000}") long leaseTtlMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.leaseService = leaseService;
+        this.loanOutbox = loanOutbox;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.leaseTtl = Duration.ofMillis(leaseTtlMillis);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            mongoTemplate.indexOps(Loan.class).ensureIndex(new Index()
+                    .on("status", Sort.Direction.ASC)
+                    .on("dueDate", Sort.Direction.ASC)
+                    .named("status_dueDate"));
+        } catch (Exception e) {
+            // Database not reachable yet, the index is created on the next start
+        }
+    }
+
+    @Scheduled(initialDelayString = "${library.overdue.scan-interval:60000}",
+            fixedDelayString = "${library.overdue.scan-interval:60000}")
+    public void scheduledScan() {
+        try {
+            markOverdue();
+        } catch (Exception e) {
+            // Database not reachable, the next run catches up
+        }
+    }
+
+    // Returns the number of loans moved to OVERDUE; 0 when another instance holds the lease
+    public long markOverdue() {
+        if (!leaseService.tryAcquire(LEASE_NAME, leaseTtl)) {
+            return 0;
+        }
+        long flipped = 0;
+        try {
+            LocalDate today = LocalDate.now();
+            for (int page = 0; page < maxPages; page++) {
+                Query query = new Query(Criteria.where("status").is(LoanStatus.ACTIVE).and("dueDate").lt(today))
+                        .with(Sort.by("dueDate"))
+                        .limit(pageSize);
+                query.fields().include("userId").include("bookId").include("dueDate");
+                List<Loan> due = mongoTemplate.find(query, Loan.class);
+                if (due.isEmpty()) {
+                    break;
+                }
+
+                // Guarded on ACTIVE so a return that lands in between wins
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Loan.class);
+                for (Loan loan : due) {
+                    bulk.updateOne(new Query(Criteria.where("_id").is(loan.getId()).and("status").is(LoanStatus.ACTIVE)),
+                            new Update().set("status", LoanStatus.OVERDUE));
+                }
+                // The flips and their OVERDUE events are written together
+                flipped += loanOutbox.inTransaction(() -> {
+                    int modified = bulk.execute().getModifiedCount();
+                    loanOutbox.append(modified == due.size() ? due : stillOverdue(due), "OVERDUE");
+                    return modified;
+                });
+
+                if (due.size() < pageSize || !leaseService.tryAcquire(LEASE_NAME, leaseTtl)) {
+                    break;
+                }
+            }
+        } finally {
+            leaseService.release(LEASE_NAME);
+        }
+        if (flipped > 0) {
+            logger.info("Marked {} loans overdue", flipped);
+        }
+        return flipped;
+    }
+
+    // Some loans of the page were returned meanwhile; only the ones now OVERDUE get an event
+    private List<Loan> stillOverdue(List<Loan> due) {
+        Query query = new Query(Criteria.where("_id").in(due.stream().map(Loan::getId).collect(Collectors.toList()))
+                .and("status").is(LoanStatus.OVERDUE));
+        query.fields().include("userId").include("bookId").include("dueDate");
+        return mongoTemplate.find(query, Loan.class);
+    }
+}
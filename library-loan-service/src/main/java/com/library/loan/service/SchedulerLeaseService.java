@@ -0,0 +1,50 @@
+package com.library.loan.service;
+
+import com.library.loan.entity.SchedulerLease;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Time-limited leases that let one instance at a time run a scheduled job. A lease is a single
+ * document per job: it is taken when it has lapsed or is already ours, and a crashed holder's
+ * lease simply runs out.
+ */
+@Service
+public class SchedulerLeaseService {
+
+    private final MongoTemplate mongoTemplate;
+    private final String owner = UUID.randomUUID().toString();
+
+    public SchedulerLeaseService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // Takes or extends the lease; false while another instance holds it
+    public boolean tryAcquire(String name, Duration ttl) {
+        Instant now = Instant.now();
+        Query query = new Query(Criteria.where("_id").is(name).orOperator(
+                Criteria.where("lockedUntil").lt(now),
+                Criteria.where("owner").is(owner)));
+        try {
+            mongoTemplate.upsert(query, new Update().set("owner", owner).set("lockedUntil", now.plus(ttl)),
+                    SchedulerLease.class);
+            return true;
+        } catch (DuplicateKeyException e) {
+            // The lease exists and is held by someone else, so the upsert tried to create it again
+            return false;
+        }
+    }
+
+    public void release(String name) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(name).and("owner").is(owner)),
+                new Update().set("lockedUntil", Instant.EPOCH), SchedulerLease.class);
+    }
+}
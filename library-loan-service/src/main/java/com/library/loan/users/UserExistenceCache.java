@@ -0,0 +1,157 @@
+package com.library.loan.users;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.library.loan.dto.CursorPageDTO;
+import com.library.loan.dto.UserEventDTO;
+import com.library.loan.feign.UserFeignClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answers "does this user exist" for borrows without asking the user service each time.
+ * The user service pushes created and deleted events to every loan instance, so deletions are
+ * checked in memory and a deleted user is refused on every instance. A bounded cache holds ids
+ * confirmed by the user service or a created event. A Bloom filter built from the user service's
+ * id snapshot refuses ids it has never seen straight away; only ids above the snapshot's highest
+ * id, users created since, are checked remotely. An id the filter might contain but nobody has
+ * confirmed is checked remotely too. When neither the cache nor the user service can confirm a
+ * user the borrow is refused, a Bloom positive alone never lets a user through.
+ */
+@Component
+public class UserExistenceCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserExistenceCache.class);
+
+    private static final int SNAPSHOT_PAGE_SIZE = 10000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final UserFeignClient userFeignClient;
+    private final Cache<Long, Boolean> confirmed;
+    // Recently deleted ids, so a remote check racing a deletion cannot confirm the user again
+    private final Cache<Long, Boolean> deleted;
+    private final Object lock = new Object();
+
+    private volatile Snapshot snapshot;
+    // Creations received while a snapshot is loading, replayed on top of it; null when not loading
+    private List<Long> createdDuringReload;
+
+    public UserExistenceCache(UserFeignClient userFeignClient,
+                              @Value("${library.users.cache-size:100000}") long cacheSize,
+                              @Value("${library.users.cache-ttl:600000}") long cacheTtlMillis) {
+        this.userFeignClient = userFeignClient;
+        this.confirmed = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMillis))
+                .build();
+        this.deleted = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMillis))
+                .build();
+    }
+
+    public boolean exists(Long userId) {
+        if (deleted.getIfPresent(userId) != null) {
+            return false;
+        }
+        if (confirmed.getIfPresent(userId) != null) {
+            return true;
+        }
+        Snapshot current = snapshot;
+        if (current != null && !current.filter.mightContain(userId) && userId <= current.maxId) {
+            return false;
+        }
+        if (!remoteExists(userId)) {
+            return false;
+        }
+        confirmed.put(userId, Boolean.TRUE);
+        if (deleted.getIfPresent(userId) != null) {
+            confirmed.invalidate(userId);
+            return false;
+        }
+        return true;
+    }
+
+    public void onUserEvent(UserEventDTO event) {
+        Long userId = event.getUserId();
+        if ("CREATED".equals(event.getType())) {
+            synchronized (lock) {
+                if (createdDuringReload != null) {
+                    createdDuringReload.add(userId);
+                }
+                Snapshot current = snapshot;
+                if (current != null) {
+                    current.filter.add(userId);
+                }
+            }
+            confirmed.put(userId, Boolean.TRUE);
+        } else if ("DELETED".equals(event.getType())) {
+            deleted.put(userId, Boolean.TRUE);
+            confirmed.invalidate(userId);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${library.users.snapshot-interval:300000}",
+            fixedDelayString = "${library.users.snapshot-interval:300000}")
+    public void scheduledReload() {
+        try {
+            reload();
+        } catch (Exception e) {
+            // User service not reachable, keep the current filter
+        }
+    }
+
+    public void reload() {
+        synchronized (lock) {
+            createdDuringReload = new ArrayList<>();
+        }
+        try {
+            List<Long> ids = new ArrayList<>();
+            Long after = null;
+            do {
+                CursorPageDTO<Long> page = userFeignClient.getUserIds(after, SNAPSHOT_PAGE_SIZE);
+                ids.addAll(page.getItems());
+                after = page.getNextAfter();
+            } while (after != null);
+
+            // Headroom for users created before the next snapshot
+            LongBloomFilter fresh = new LongBloomFilter(ids.size() * 2L, FALSE_POSITIVE_RATE);
+            ids.forEach(fresh::add);
+            long maxId = ids.stream().mapToLong(Long::longValue).max().orElse(0L);
+
+            synchronized (lock) {
+                createdDuringReload.forEach(fresh::add);
+                snapshot = new Snapshot(fresh, maxId);
+            }
+            logger.info("Loaded {} user ids into the user existence filter", ids.size());
+        } finally {
+            synchronized (lock) {
+                createdDuringReload = null;
+            }
+        }
+    }
+
+    // A user the user service cannot vouch for, missing or unreachable, does not exist for a borrow
+    private boolean remoteExists(Long userId) {
+        try {
+            userFeignClient.getUserById(userId);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // Ids above maxId were handed out after the snapshot and may be missing from the filter
+    private record Snapshot(LongBloomFilter filter, long maxId) {
+    }
+}
@@ -0,0 +1,97 @@
+package com.library.loan.config;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class SequenceBlockAllocatorTest {
+
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final MongoOperations mongoOperations = mock(MongoOperations.class);
+    private final MongoDatabaseFactory databaseFactory = mock(MongoDatabaseFactory.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> collection = mock(MongoCollection.class);
+
+    SequenceBlockAllocatorTest() {
+        MongoDatabase database = mock(MongoDatabase.class);
+        when(mongoOperations.getCollectionName(any())).thenReturn("sequenceCounter");
+        when(databaseFactory.getMongoDatabase()).thenReturn(database);
+        when(database.getCollection(anyString())).thenReturn(collection);
+        // Behaves like the $inc upsert on the counter document
+        when(collection.findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class)))
+                .thenAnswer(invocation -> {
+                    String name = ((Bson) invocation.getArgument(0)).toBsonDocument().getString("_id").getValue();
+                    BsonDocument inc = ((Bson) invocation.getArgument(1)).toBsonDocument().getDocument("$inc");
+                    long seq = counters.computeIfAbsent(name, ignored -> new AtomicLong())
+                            .addAndGet(inc.getNumber("seq").longValue());
+                    return new Document("_id", name).append("seq", seq);
+                });
+    }
+
+    @Test
+    void nextRangeClaimsConsecutiveIdsPastTheCachedBlocks() {
+        SequenceBlockAllocator allocator = new SequenceBlockAllocator(mongoOperations, databaseFactory, 10);
+
+        assertThat(allocator.next("loan_event_offset")).isEqualTo(1L);
+        assertThat(allocator.nextRange("loan_event_offset", 5)).isEqualTo(11L);
+        assertThat(allocator.nextRange("loan_event_offset", 1)).isEqualTo(16L);
+        // The cached block is still used up before a new one is claimed
+        assertThat(allocator.next("loan_event_offset")).isEqualTo(2L);
+    }
+
+    @Test
+    void claimsGoToThePlainCollectionNotTheTemplate() {
+        SequenceBlockAllocator allocator = new SequenceBlockAllocator(mongoOperations, databaseFactory, 10);
+
+        allocator.nextRange("loans_sequence", 3);
+
+        // MongoTemplate writes would join a surrounding transaction and could be rolled back
+        verify(mongoOperations, never()).findAndModify(any(), any(), any(), any(Class.class));
+        verify(collection).findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class));
+    }
+
+    @Test
+    void concurrentCallersNeverShareAnId() throws Exception {
+        SequenceBlockAllocator allocator = new SequenceBlockAllocator(mongoOperations, databaseFactory, 13);
+        int threads = 8;
+        int idsPerThread = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?>[] futures = new Future<?>[threads];
+        for (int t = 0; t < threads; t++) {
+            boolean ranges = t % 2 == 0;
+            futures[t] = executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < idsPerThread; i++) {
+                    long id = ranges ? allocator.nextRange("loans_sequence", 1) : allocator.next("loans_sequence");
+                    assertThat(ids.add(id)).isTrue();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(ids).hasSize(threads * idsPerThread);
+    }
+}
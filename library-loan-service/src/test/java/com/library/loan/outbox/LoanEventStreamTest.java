@@ -0,0 +1,125 @@
+package com.library.loan.outbox;
+
+import com.library.loan.dto.BookBorrowCountDTO;
+import com.library.loan.dto.BorrowCountSnapshotDTO;
+import com.library.loan.dto.LoanEventBatchDTO;
+import com.library.loan.dto.LoanEventDTO;
+import com.library.loan.entity.Loan;
+import com.library.loan.entity.LoanEvent;
+import com.library.loan.entity.LoanHistoryBucket;
+import com.library.loan.entity.LoanStatus;
+import com.library.loan.service.LoanStatsService;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoanEventStreamTest {
+
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private LoanEventStream stream;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new MongoTemplate(client, "test");
+        stream = new LoanEventStream(mongoTemplate, new LoanOutbox(mongoTemplate, false),
+                new LoanStatsService(mongoTemplate));
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void readsForwardFromAnOffsetAcrossGaps() {
+        Instant later = Instant.now().plus(Duration.ofDays(1));
+        insert(1, true, later);
+        insert(2, true, later);
+        insert(5, true, later); // offsets 3 and 4 lost to a crash
+
+        LoanEventBatchDTO first = stream.read(0, 2);
+        LoanEventBatchDTO next = stream.read(first.getLastOffset(), 2);
+
+        assertThat(first.getEvents()).extracting(LoanEventDTO::getOffset).containsExactly(1L, 2L);
+        assertThat(next.getEvents()).extracting(LoanEventDTO::getOffset).containsExactly(5L);
+        assertThat(stream.read(5, 10).getEvents()).isEmpty();
+        assertThat(stream.read(5, 10).getLastOffset()).isEqualTo(5);
+    }
+
+    @Test
+    void committedOffsetsOnlyMoveForward() {
+        stream.commitOffset("recommendations", 10);
+        stream.commitOffset("recommendations", 4);
+
+        assertThat(stream.getOffset("recommendations").getOffset()).isEqualTo(10);
+        assertThat(stream.commitOffset("recommendations", 12).getOffset()).isEqualTo(12);
+        assertThat(stream.getOffset("other").getOffset()).isZero();
+    }
+
+    @Test
+    void purgeStopsAtTheFirstEventStillRetainedAndReadersBehindItAreReset() {
+        Instant past = Instant.now().minus(Duration.ofMinutes(1));
+        insert(1, true, past);
+        insert(2, true, past);
+        insert(3, true, Instant.now().plus(Duration.ofDays(1)));
+        insert(4, true, past); // expired but behind a retained event
+        insert(5, false, null);
+
+        stream.purgeExpired();
+
+        assertThat(mongoTemplate.findAll(LoanEvent.class)).extracting(LoanEvent::getOffset)
+                .containsExactlyInAnyOrder(3L, 4L, 5L);
+        assertThat(stream.read(0, 10).isResetRequired()).isTrue();
+        assertThat(stream.read(1, 10).isResetRequired()).isTrue();
+        assertThat(stream.read(2, 10).isResetRequired()).isFalse();
+    }
+
+    @Test
+    void borrowCountsMatchTheOffsetTheyAreReturnedWith() {
+        Instant later = Instant.now().plus(Duration.ofDays(1));
+        loan(1L, 100L);
+        loan(2L, 100L);
+        loan(3L, 200L);
+        mongoTemplate.insert(new LoanHistoryBucket("10:2023-01", 10L, "2023-01", List.of(
+                new Loan(4L, 10L, 200L, LocalDate.of(2023, 1, 5), LocalDate.of(2023, 1, 19),
+                        LocalDate.of(2023, 1, 10), LoanStatus.RETURNED))));
+        insert(7, true, later);
+        insert(8, true, later);
+        // Loan 3 is stored but its event has no offset yet, the relay gives it one after 8
+        mongoTemplate.insert(new LoanEvent(null, 3L, 10L, 200L, "BORROWED", LocalDateTime.now(), null, false, null));
+
+        BorrowCountSnapshotDTO snapshot = stream.borrowCounts();
+
+        assertThat(snapshot.getOffset()).isEqualTo(8);
+        assertThat(snapshot.getCounts()).containsExactlyInAnyOrder(
+                new BookBorrowCountDTO(100L, 2L), new BookBorrowCountDTO(200L, 1L));
+    }
+
+    private void loan(Long id, Long bookId) {
+        mongoTemplate.insert(new Loan(id, 10L, bookId, LocalDate.now(), LocalDate.now().plusDays(14), null,
+                LoanStatus.ACTIVE));
+    }
+
+    private void insert(long offset, boolean published, Instant purgeAt) {
+        mongoTemplate.insert(new LoanEvent(null, offset, 10L, 100L, "BORROWED", LocalDateTime.now(), offset,
+                published, purgeAt));
+    }
+}
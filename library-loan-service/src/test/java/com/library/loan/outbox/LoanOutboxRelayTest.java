@@ -0,0 +1,142 @@
+package com.library.loan.outbox;
+
+import com.library.loan.config.SequenceBlockAllocator;
+import com.library.loan.dto.LoanEventDTO;
+import com.library.loan.entity.Loan;
+import com.library.loan.entity.LoanEvent;
+import com.library.loan.service.SchedulerLeaseService;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoanOutboxRelayTest {
+
+    private final List<LoanEventDTO> delivered = new ArrayList<>();
+    private boolean busDown;
+
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private LoanOutbox outbox;
+    private LoanOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new MongoTemplate(client, "test");
+        outbox = new LoanOutbox(mongoTemplate, false);
+        relay = newRelay(new SchedulerLeaseService(mongoTemplate), 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void eventsAreDeliveredInWriteOrderWithIncreasingOffsets() {
+        for (long id = 1; id <= 7; id++) {
+            outbox.append(loan(id), "BORROWED");
+        }
+
+        assertThat(relay.relay()).isEqualTo(7); // three batches of at most 3
+
+        assertThat(delivered).extracting(LoanEventDTO::getLoanId).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+        assertThat(delivered).extracting(LoanEventDTO::getOffset).isSorted().doesNotHaveDuplicates();
+        assertThat(mongoTemplate.findAll(LoanEvent.class)).allMatch(LoanEvent::isPublished);
+        assertThat(relay.relay()).isZero();
+    }
+
+    @Test
+    void failedPublishIsRetriedWithTheSameOffsets() {
+        outbox.append(List.of(loan(1L), loan(2L)), "BORROWED");
+        busDown = true;
+
+        assertThatThrownBy(relay::relay).isInstanceOf(IllegalStateException.class);
+        List<Long> offsets = mongoTemplate.findAll(LoanEvent.class).stream()
+                .map(LoanEvent::getOffset).sorted().collect(Collectors.toList());
+        assertThat(offsets).doesNotContainNull();
+        assertThat(mongoTemplate.findAll(LoanEvent.class)).noneMatch(LoanEvent::isPublished);
+
+        busDown = false;
+        assertThat(relay.relay()).isEqualTo(2);
+        assertThat(delivered).extracting(LoanEventDTO::getOffset).containsExactlyElementsOf(offsets);
+    }
+
+    @Test
+    void onlyTheLeaseHolderRelays() {
+        SchedulerLeaseService otherInstance = new SchedulerLeaseService(mongoTemplate);
+        assertThat(otherInstance.tryAcquire("loan-outbox-relay", Duration.ofMinutes(1))).isTrue();
+        outbox.append(loan(1L), "BORROWED");
+
+        assertThat(relay.relay()).isZero();
+        assertThat(delivered).isEmpty();
+
+        otherInstance.release("loan-outbox-relay");
+        assertThat(relay.relay()).isEqualTo(1);
+    }
+
+    @Test
+    void retractDropsWaitingEventsAndCompensatesDeliveredOnes() {
+        outbox.append(loan(1L), "BORROWED");
+        relay.relay();
+        outbox.append(loan(2L), "BORROWED");
+
+        outbox.retract(List.of(1L, 2L), "BORROWED", "BORROW_CANCELLED");
+        relay.relay();
+
+        assertThat(delivered).extracting(event -> event.getLoanId() + ":" + event.getType())
+                .containsExactly("1:BORROWED", "1:BORROW_CANCELLED");
+    }
+
+    @Test
+    void inTransactionRunsTheWorkOnceWithoutTransactions() {
+        int[] runs = new int[1];
+
+        String result = outbox.inTransaction(() -> {
+            runs[0]++;
+            outbox.append(loan(1L), "RETURNED");
+            return "done";
+        });
+
+        assertThat(result).isEqualTo("done");
+        assertThat(runs[0]).isEqualTo(1);
+        assertThat(mongoTemplate.count(new Query(), LoanEvent.class)).isEqualTo(1);
+    }
+
+    private LoanOutboxRelay newRelay(SchedulerLeaseService leaseService, int batchSize) {
+        LoanEventBus bus = events -> {
+            if (busDown) {
+                throw new IllegalStateException("Recommendation service unavailable");
+            }
+            delivered.addAll(events);
+        };
+        return new LoanOutboxRelay(mongoTemplate, leaseService,
+                new SequenceBlockAllocator(mongoTemplate, mongoTemplate.getMongoDatabaseFactory(), 2),
+                bus, batchSize, 604_800_000, 30_000);
+    }
+
+    private static Loan loan(Long id) {
+        Loan loan = new Loan();
+        loan.setId(id);
+        loan.setUserId(10L);
+        loan.setBookId(100L + id);
+        return loan;
+    }
+}
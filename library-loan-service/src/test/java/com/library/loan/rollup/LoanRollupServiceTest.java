@@ -0,0 +1,241 @@
+package com.library.loan.rollup;
+
+import com.library.loan.dto.BookDayCountDTO;
+import com.library.loan.dto.BookResponseDTO;
+import com.library.loan.dto.LoanTimeseriesDTO;
+import com.library.loan.dto.TimeseriesPointDTO;
+import com.library.loan.entity.LoanEvent;
+import com.library.loan.entity.LoanRollup;
+import com.library.loan.entity.RollupDimension;
+import com.library.loan.entity.RollupGranularity;
+import com.library.loan.feign.BookFeignClient;
+import com.library.loan.outbox.LoanEventStream;
+import com.library.loan.outbox.LoanOutbox;
+import com.library.loan.service.LoanStatsService;
+import com.library.loan.service.SchedulerLeaseService;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class LoanRollupServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    private final LoanStatsService loanStatsService = mock(LoanStatsService.class);
+    private final BookFeignClient bookFeignClient = mock(BookFeignClient.class);
+
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private LoanEventStream stream;
+    private LoanRollupService service;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new MongoTemplate(client, "test");
+        LoanOutbox loanOutbox = new LoanOutbox(mongoTemplate, false);
+        stream = new LoanEventStream(mongoTemplate, loanOutbox, loanStatsService);
+        service = new LoanRollupService(mongoTemplate, loanStatsService, bookFeignClient, stream, loanOutbox,
+                new SchedulerLeaseService(mongoTemplate), 1000, 3_600_000, 2, 30_000);
+        when(bookFeignClient.getBooksByIds(any())).thenReturn(List.of(book(1L, "Fiction"), book(2L, "Fiction"),
+                book(3L, null)));
+        when(loanStatsService.countByBookAndDay(eq("borrowDate"), any(), any())).thenReturn(List.of());
+        when(loanStatsService.countByBookAndDay(eq("returnDate"), any(), any())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void rebuildCountsDailyBucketsPerBookCategoryAndLibrary() {
+        when(loanStatsService.countByBookAndDay("borrowDate", DAY, DAY.plusDays(1))).thenReturn(List.of(
+                new BookDayCountDTO(1L, DAY, 3L), new BookDayCountDTO(2L, DAY, 2L),
+                new BookDayCountDTO(3L, DAY.plusDays(1), 4L)));
+        when(loanStatsService.countByBookAndDay("returnDate", DAY, DAY.plusDays(1))).thenReturn(List.of(
+                new BookDayCountDTO(1L, DAY.plusDays(1), 1L)));
+
+        long written = service.rebuild(DAY, DAY.plusDays(1));
+
+        // Day one: books 1 and 2, Fiction, all; day two: books 1 and 3, Fiction, all
+        assertThat(written).isEqualTo(8);
+        assertThat(daily(RollupDimension.ALL, null)).extracting(TimeseriesPointDTO::getBorrowed).containsExactly(5L, 4L);
+        assertThat(daily(RollupDimension.ALL, null)).extracting(TimeseriesPointDTO::getReturned).containsExactly(0L, 1L);
+        assertThat(daily(RollupDimension.CATEGORY, "Fiction")).extracting(TimeseriesPointDTO::getBorrowed)
+                .containsExactly(5L, 0L);
+        assertThat(daily(RollupDimension.BOOK, "3")).extracting(TimeseriesPointDTO::getBorrowed).containsExactly(0L, 4L);
+    }
+
+    @Test
+    void streamedEventsAreCountedOnceInTheirBuckets() {
+        service.applyLoanEvents();
+        streamed(1, 1L, "BORROWED", DAY.atTime(10, 15));
+        streamed(2, 2L, "BORROWED", DAY.atTime(11, 40));
+        streamed(3, 2L, "BORROW_CANCELLED", DAY.atTime(11, 45));
+        streamed(4, 1L, "OVERDUE", DAY.atTime(12, 0));
+        streamed(6, 1L, "RETURNED", DAY.atTime(12, 30)); // offset 5 lost to a crash
+
+        assertThat(service.applyLoanEvents()).isEqualTo(5);
+        assertThat(service.applyLoanEvents()).isZero();
+
+        List<TimeseriesPointDTO> hours = service.getTimeseries(RollupGranularity.HOUR, RollupDimension.ALL, null, DAY, DAY)
+                .getPoints();
+        assertThat(hours.get(10).getBorrowed()).isEqualTo(1);
+        assertThat(hours.get(11).getBorrowed()).isZero();
+        assertThat(hours.get(12).getReturned()).isEqualTo(1);
+        assertThat(series(RollupDimension.CATEGORY, "Fiction", DAY)).extracting(TimeseriesPointDTO::getBorrowed)
+                .containsExactly(1L);
+        assertThat(stream.getOffset("rollups").getOffset()).isEqualTo(6);
+    }
+
+    @Test
+    void theFirstRunStartsAtTheHeadOfTheStream() {
+        streamed(1, 1L, "BORROWED", DAY.atTime(10, 15));
+        streamed(2, 1L, "BORROWED", DAY.atTime(10, 20));
+
+        assertThat(service.applyLoanEvents()).isZero();
+        streamed(3, 1L, "BORROWED", DAY.atTime(10, 25));
+        service.applyLoanEvents();
+
+        assertThat(series(RollupDimension.BOOK, "1", DAY)).extracting(TimeseriesPointDTO::getBorrowed)
+                .containsExactly(1L);
+    }
+
+    @Test
+    void eventsWaitInTheStreamWhileTheBookServiceIsDown() {
+        service.applyLoanEvents();
+        streamed(1, 1L, "BORROWED", DAY.atTime(10, 15));
+        when(bookFeignClient.getBooksByIds(any())).thenThrow(new RuntimeException("Connection refused"));
+
+        assertThatThrownBy(() -> service.applyLoanEvents()).isInstanceOf(RuntimeException.class);
+        assertThat(mongoTemplate.findAll(LoanRollup.class)).isEmpty();
+        assertThat(stream.getOffset("rollups").getOffset()).isZero();
+
+        reset(bookFeignClient);
+        when(bookFeignClient.getBooksByIds(any())).thenReturn(List.of(book(1L, "Fiction")));
+        service.applyLoanEvents();
+        assertThat(series(RollupDimension.CATEGORY, "Fiction", DAY)).extracting(TimeseriesPointDTO::getBorrowed)
+                .containsExactly(1L);
+    }
+
+    @Test
+    void rebuildOverwritesDriftedCountersAndRemovesBucketsWithoutLoans() {
+        service.applyLoanEvents();
+        streamed(1, 1L, "BORROWED", LocalDateTime.now());
+        streamed(2, 1L, "BORROWED", LocalDateTime.now());
+        service.applyLoanEvents();
+        when(loanStatsService.countByBookAndDay("borrowDate", LocalDate.now(), LocalDate.now())).thenReturn(List.of(
+                new BookDayCountDTO(2L, LocalDate.now(), 1L)));
+
+        service.rebuild(LocalDate.now(), LocalDate.now());
+
+        LocalDate today = LocalDate.now();
+        assertThat(series(RollupDimension.BOOK, "1", today)).extracting(TimeseriesPointDTO::getBorrowed)
+                .containsExactly(0L);
+        assertThat(series(RollupDimension.BOOK, "2", today)).extracting(TimeseriesPointDTO::getBorrowed)
+                .containsExactly(1L);
+        assertThat(series(RollupDimension.ALL, null, today)).extracting(TimeseriesPointDTO::getBorrowed)
+                .containsExactly(1L);
+        assertThat(mongoTemplate.findAll(LoanRollup.class))
+                .noneMatch(rollup -> rollup.getGranularity() == RollupGranularity.DAY && "1".equals(rollup.getKey()));
+    }
+
+    @Test
+    void hourlyBucketsAreRebuiltOnlyForHoursTheEventLogStillCovers() {
+        LocalDateTime ten = DAY.atTime(10, 0);
+        LoanRollup partialHour = new LoanRollup("HOUR:ALL:all:" + ten, RollupGranularity.HOUR, RollupDimension.ALL,
+                "all", ten, 7, 0);
+        mongoTemplate.insert(partialHour);
+        event(1L, "BORROWED", DAY.atTime(10, 15));
+        event(1L, "BORROWED", DAY.atTime(11, 5));
+        event(2L, "BORROWED", DAY.atTime(11, 40));
+        event(2L, "BORROW_CANCELLED", DAY.atTime(11, 45));
+        event(1L, "RETURNED", DAY.atTime(12, 30));
+
+        service.rebuild(DAY, DAY);
+
+        List<TimeseriesPointDTO> hours = service.getTimeseries(RollupGranularity.HOUR, RollupDimension.ALL, null, DAY, DAY)
+                .getPoints();
+        // Hour 10 may have lost events to the purge and keeps its counters
+        assertThat(hours.get(10).getBorrowed()).isEqualTo(7);
+        assertThat(hours.get(11).getBorrowed()).isEqualTo(1);
+        assertThat(hours.get(12).getReturned()).isEqualTo(1);
+        assertThat(service.getTimeseries(RollupGranularity.HOUR, RollupDimension.BOOK, "2", DAY, DAY).getPoints()
+                .get(11).getBorrowed()).isZero();
+    }
+
+    @Test
+    void rebuildWithoutTheBookServiceWritesNothing() {
+        when(loanStatsService.countByBookAndDay("borrowDate", DAY, DAY)).thenReturn(List.of(
+                new BookDayCountDTO(1L, DAY, 3L)));
+        when(bookFeignClient.getBooksByIds(any())).thenThrow(new RuntimeException("Connection refused"));
+
+        assertThatThrownBy(() -> service.rebuild(DAY, DAY)).isInstanceOf(IllegalStateException.class);
+        assertThat(mongoTemplate.findAll(LoanRollup.class)).isEmpty();
+    }
+
+    @Test
+    void categoriesAreLookedUpOncePerBook() {
+        when(loanStatsService.countByBookAndDay("borrowDate", DAY, DAY)).thenReturn(List.of(
+                new BookDayCountDTO(1L, DAY, 3L)));
+
+        service.rebuild(DAY, DAY);
+        service.rebuild(DAY, DAY);
+
+        verify(bookFeignClient, times(1)).getBooksByIds(any());
+    }
+
+    @Test
+    void rebuildRejectsInvalidRanges() {
+        assertThatThrownBy(() -> service.rebuild(DAY, DAY.minusDays(1))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.rebuild(DAY, DAY.plusDays(LoanRollupService.MAX_REBUILD_DAYS)))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(loanStatsService);
+    }
+
+    private List<TimeseriesPointDTO> daily(RollupDimension dimension, String key) {
+        LoanTimeseriesDTO series = service.getTimeseries(RollupGranularity.DAY, dimension, key, DAY, DAY.plusDays(1));
+        return series.getPoints();
+    }
+
+    private List<TimeseriesPointDTO> series(RollupDimension dimension, String key, LocalDate day) {
+        return service.getTimeseries(RollupGranularity.DAY, dimension, key, day, day).getPoints();
+    }
+
+    private void event(Long bookId, String type, LocalDateTime occurredAt) {
+        mongoTemplate.insert(new LoanEvent(null, 1L, 1L, bookId, type, occurredAt.truncatedTo(ChronoUnit.MILLIS),
+                null, true, null));
+    }
+
+    private void streamed(long offset, Long bookId, String type, LocalDateTime occurredAt) {
+        mongoTemplate.insert(new LoanEvent(null, offset, 1L, bookId, type, occurredAt.truncatedTo(ChronoUnit.MILLIS),
+                offset, true, null));
+    }
+
+    private static BookResponseDTO book(Long id, String category) {
+        BookResponseDTO book = new BookResponseDTO();
+        book.setId(id);
+        book.setCategory(category);
+        return book;
+    }
+}
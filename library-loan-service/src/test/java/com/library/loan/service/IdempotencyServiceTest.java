@@ -0,0 +1,218 @@
+package com.library.loan.service;
+
+import com.library.loan.dto.LoanDTO;
+import com.library.loan.entity.IdempotencyRecord;
+import com.library.loan.entity.IdempotencyStatus;
+import com.library.loan.exception.IdempotencyKeyConflictException;
+import com.library.loan.exception.IdempotencyKeyFailedException;
+import com.library.loan.exception.IdempotencyKeyInProgressException;
+import com.library.loan.exception.LoanRequestRejectedException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+
+    private static final long LOCK_TIMEOUT_MILLIS = 60_000;
+
+    private final AtomicInteger runs = new AtomicInteger();
+
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private IdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new MongoTemplate(client, "test");
+        service = newInstance();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void withoutKeyEveryCallRuns() {
+        service.execute(null, "borrow:1:2", this::borrow);
+        service.execute(" ", "borrow:1:2", this::borrow);
+
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    void retryWithTheSameKeyReplaysTheStoredResponse() {
+        IdempotencyService.Outcome first = service.execute("k1", "borrow:1:2", this::borrow);
+        IdempotencyService.Outcome retry = service.execute("k1", "borrow:1:2", this::borrow);
+
+        assertThat(first.replayed()).isFalse();
+        assertThat(retry.replayed()).isTrue();
+        assertThat(retry.response()).isEqualTo(first.response());
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void completedResponseIsReplayedFromTheCollectionOnAnotherInstance() {
+        LoanDTO response = service.execute("k1", "borrow:1:2", this::borrow).response();
+
+        IdempotencyService.Outcome retry = newInstance().execute("k1", "borrow:1:2", this::borrow);
+
+        assertThat(retry.replayed()).isTrue();
+        assertThat(retry.response().getId()).isEqualTo(response.getId());
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void keyReusedForAnotherRequestIsAConflict() {
+        service.execute("k1", "borrow:1:2", this::borrow);
+
+        assertThatThrownBy(() -> service.execute("k1", "borrow:1:3", this::borrow))
+                .isInstanceOf(IdempotencyKeyConflictException.class);
+        assertThatThrownBy(() -> newInstance().execute("k1", "return:7", this::borrow))
+                .isInstanceOf(IdempotencyKeyConflictException.class);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void retryWhileTheFirstRequestRunsIsRejected() {
+        insertClaim("k1", "borrow:1:2", Instant.now());
+
+        assertThatThrownBy(() -> service.execute("k1", "borrow:1:2", this::borrow))
+                .isInstanceOf(IdempotencyKeyInProgressException.class);
+        assertThat(runs).hasValue(0);
+    }
+
+    @Test
+    void claimOfARequestThatDiedIsTakenOver() {
+        insertClaim("k1", "borrow:1:2", Instant.now().minus(Duration.ofMillis(LOCK_TIMEOUT_MILLIS * 2)));
+
+        IdempotencyService.Outcome outcome = service.execute("k1", "borrow:1:2", this::borrow);
+
+        assertThat(outcome.replayed()).isFalse();
+        assertThat(runs).hasValue(1);
+        assertThat(mongoTemplate.findById("k1", IdempotencyRecord.class).getStatus())
+                .isEqualTo(IdempotencyStatus.COMPLETED);
+    }
+
+    @Test
+    void rejectedOperationReleasesTheKey() {
+        assertThatThrownBy(() -> service.execute("k1", "borrow:1:2", () -> {
+            throw new LoanRequestRejectedException("Book not available");
+        })).hasMessage("Book not available");
+        assertThat(mongoTemplate.findById("k1", IdempotencyRecord.class)).isNull();
+
+        IdempotencyService.Outcome retry = service.execute("k1", "borrow:1:2", this::borrow);
+
+        assertThat(retry.replayed()).isFalse();
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void failureWithAnUnknownOutcomeIsReplayedInsteadOfRunAgain() {
+        assertThatThrownBy(() -> service.execute("k1", "return:7", () -> {
+            throw new RuntimeException("Failed to update book availability: Read timed out");
+        })).hasMessage("Failed to update book availability: Read timed out");
+
+        assertThatThrownBy(() -> service.execute("k1", "return:7", this::borrow))
+                .isInstanceOf(IdempotencyKeyFailedException.class)
+                .hasMessage("Failed to update book availability: Read timed out");
+        assertThatThrownBy(() -> newInstance().execute("k1", "return:7", this::borrow))
+                .isInstanceOf(IdempotencyKeyFailedException.class);
+        assertThat(runs).hasValue(0);
+    }
+
+    @Test
+    void responseIsKeptWhenStoringItFails() {
+        MongoTemplate flaky = spy(mongoTemplate);
+        doThrow(new DataAccessResourceFailureException("Timed out")).when(flaky).save(any(IdempotencyRecord.class));
+        IdempotencyService instance = new IdempotencyService(flaky, 86_400_000, LOCK_TIMEOUT_MILLIS, 100);
+
+        IdempotencyService.Outcome first = instance.execute("k1", "borrow:1:2", this::borrow);
+        IdempotencyService.Outcome retry = instance.execute("k1", "borrow:1:2", this::borrow);
+
+        assertThat(first.response().getId()).isEqualTo(1L);
+        assertThat(retry.replayed()).isTrue();
+        assertThat(mongoTemplate.findById("k1", IdempotencyRecord.class).getStatus())
+                .isEqualTo(IdempotencyStatus.IN_PROGRESS);
+
+        doCallRealMethod().when(flaky).save(any(IdempotencyRecord.class));
+        instance.storeUnstored();
+
+        assertThat(newInstance().execute("k1", "borrow:1:2", this::borrow).replayed()).isTrue();
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void concurrentRetriesRunTheOperationOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<IdempotencyService.Outcome>> calls = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            IdempotencyService instance = i % 2 == 0 ? service : newInstance();
+            calls.add(pool.submit(() -> instance.execute("k1", "borrow:1:2", () -> {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return borrow();
+            })));
+        }
+        Thread.sleep(200);
+        release.countDown();
+
+        int fresh = 0;
+        for (Future<IdempotencyService.Outcome> call : calls) {
+            try {
+                if (!call.get(30, TimeUnit.SECONDS).replayed()) {
+                    fresh++;
+                }
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(IdempotencyKeyInProgressException.class);
+            }
+        }
+        pool.shutdown();
+
+        assertThat(fresh).isEqualTo(1);
+        assertThat(runs).hasValue(1);
+    }
+
+    private IdempotencyService newInstance() {
+        return new IdempotencyService(mongoTemplate, 86_400_000, LOCK_TIMEOUT_MILLIS, 100);
+    }
+
+    private void insertClaim(String key, String fingerprint, Instant startedAt) {
+        mongoTemplate.insert(new IdempotencyRecord(key, fingerprint, IdempotencyStatus.IN_PROGRESS, null, null,
+                startedAt, startedAt.plus(Duration.ofDays(1))));
+    }
+
+    private LoanDTO borrow() {
+        LoanDTO loan = new LoanDTO();
+        loan.setId((long) runs.incrementAndGet());
+        loan.setUserId(1L);
+        loan.setBookId(2L);
+        return loan;
+    }
+}
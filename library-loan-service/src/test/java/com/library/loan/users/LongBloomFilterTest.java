@@ -0,0 +1,67 @@
+package com.library.loan.users;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongBloomFilterTest {
+
+    @Test
+    void addedIdsAreAlwaysFound() {
+        LongBloomFilter filter = new LongBloomFilter(10_000, 0.01);
+        for (long id = 1; id <= 10_000; id++) {
+            filter.add(id * 7919);
+        }
+
+        for (long id = 1; id <= 10_000; id++) {
+            assertThat(filter.mightContain(id * 7919)).isTrue();
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheTarget() {
+        LongBloomFilter filter = new LongBloomFilter(10_000, 0.01);
+        for (long id = 1; id <= 10_000; id++) {
+            filter.add(id);
+        }
+
+        int falsePositives = 0;
+        for (long id = 1_000_000; id < 1_100_000; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() throws Exception {
+        LongBloomFilter filter = new LongBloomFilter(40_000, 0.01);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long first = t * 10_000L;
+            workers.add(pool.submit(() -> {
+                for (long id = first; id < first + 10_000; id++) {
+                    filter.add(id);
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        for (long id = 0; id < 40_000; id++) {
+            assertThat(filter.mightContain(id)).isTrue();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.library.loan.users;
+
+import com.library.loan.dto.CursorPageDTO;
+import com.library.loan.dto.UserEventDTO;
+import com.library.loan.dto.UserResponseDTO;
+import com.library.loan.feign.UserFeignClient;
+import feign.FeignException;
+import feign.Request;
+import feign.RetryableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class UserExistenceCacheTest {
+
+    private final UserFeignClient userFeignClient = mock(UserFeignClient.class);
+
+    private UserExistenceCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new UserExistenceCache(userFeignClient, 1000, 600_000);
+        when(userFeignClient.getUserIds(any(), anyInt())).thenReturn(new CursorPageDTO<>(List.of(1L, 2L, 30L), null));
+        when(userFeignClient.getUserById(anyLong())).thenReturn(new UserResponseDTO());
+    }
+
+    @Test
+    void idMissingFromTheSnapshotIsRefusedWithoutARemoteCheck() {
+        cache.reload();
+
+        assertThat(cache.exists(17L)).isFalse();
+        verify(userFeignClient, never()).getUserById(anyLong());
+    }
+
+    @Test
+    void idCreatedAfterTheSnapshotIsCheckedRemotely() {
+        cache.reload();
+
+        assertThat(cache.exists(42L)).isTrue();
+        verify(userFeignClient).getUserById(42L);
+    }
+
+    @Test
+    void snapshotDoesNotConfirmUsers() {
+        cache.reload();
+        when(userFeignClient.getUserById(1L)).thenThrow(notFound(1L));
+
+        assertThat(cache.exists(1L)).isFalse();
+    }
+
+    @Test
+    void confirmedUserIsNotAskedForAgain() {
+        cache.reload();
+
+        assertThat(cache.exists(1L)).isTrue();
+        assertThat(cache.exists(1L)).isTrue();
+        verify(userFeignClient, times(1)).getUserById(1L);
+    }
+
+    @Test
+    void createdEventConfirmsWithoutARemoteCheck() {
+        cache.reload();
+        cache.onUserEvent(new UserEventDTO(17L, "CREATED"));
+
+        assertThat(cache.exists(17L)).isTrue();
+        verify(userFeignClient, never()).getUserById(anyLong());
+    }
+
+    @Test
+    void deletedUserIsRefusedWithoutARemoteCheck() {
+        cache.reload();
+        assertThat(cache.exists(1L)).isTrue();
+
+        cache.onUserEvent(new UserEventDTO(1L, "DELETED"));
+
+        assertThat(cache.exists(1L)).isFalse();
+        verify(userFeignClient, times(1)).getUserById(1L);
+    }
+
+    @Test
+    void userServiceDownRefusesUsersNobodyConfirmed() {
+        cache.reload();
+        when(userFeignClient.getUserById(anyLong())).thenThrow(unreachable());
+
+        assertThat(cache.exists(1L)).isFalse();
+        assertThat(cache.exists(42L)).isFalse();
+    }
+
+    @Test
+    void remoteCheckRacingADeletionDoesNotConfirm() {
+        when(userFeignClient.getUserById(1L)).thenAnswer(invocation -> {
+            cache.onUserEvent(new UserEventDTO(1L, "DELETED"));
+            return new UserResponseDTO();
+        });
+
+        assertThat(cache.exists(1L)).isFalse();
+        assertThat(cache.exists(1L)).isFalse();
+    }
+
+    private static Request request(Long userId) {
+        return Request.create(Request.HttpMethod.GET, "/api/users/" + userId, Map.of(), null,
+                StandardCharsets.UTF_8, null);
+    }
+
+    private static FeignException notFound(Long userId) {
+        return new FeignException.NotFound("not found", request(userId), null, Map.of());
+    }
+
+    private static FeignException unreachable() {
+        return new RetryableException(-1, "Connection refused", Request.HttpMethod.GET, (Long) null, request(1L));
+    }
+}
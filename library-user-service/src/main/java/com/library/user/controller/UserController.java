@@ -1,5 +1,6 @@
 package com.library.user.controller;
 
+import com.library.user.dto.CursorPageDTO;
 import com.library.user.dto.LibraryUserDTO;
 import com.library.user.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -7,8 +8,10 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -41,6 +44,33 @@ public class UserController {
         return ResponseEntity.ok(users);
     }
 
+    @GetMapping(params = "limit")
+    @Operation(summary = "Get users one keyset page at a time, ordered by ID")
+    public ResponseEntity<CursorPageDTO<LibraryUserDTO>> getUsersPage(
+            @RequestParam(name = "after", required = false) Long after,
+            @RequestParam(name = "limit") int limit
+    ) {
+        CursorPageDTO<LibraryUserDTO> page = userService.getUsersPage(after, limit);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("/ids")
+    @Operation(summary = "Get user IDs one keyset page at a time, ordered by ID (internal use)")
+    public ResponseEntity<CursorPageDTO<Long>> getUserIds(
+            @RequestParam(name = "after", required = false) Long after,
+            @RequestParam(name = "limit", defaultValue = "10000") int limit
+    ) {
+        CursorPageDTO<Long> page = userService.getUserIds(after, limit);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream all users as NDJSON straight from the database cursor")
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        StreamingResponseBody body = userService::streamAllUsers;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "Update user")
     public ResponseEntity<LibraryUserDTO> updateUser(
@@ -0,0 +1,13 @@
+package com.library.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserEventDTO {
+    private Long userId;
+    private String type; // CREATED or DELETED
+}
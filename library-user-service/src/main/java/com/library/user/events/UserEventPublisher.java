@@ -0,0 +1,76 @@
+package com.library.user.events;
+
+import com.library.user.dto.UserEventDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.util.List;
+
+/**
+ * Pushes user created and deleted events to every loan service instance registered in discovery,
+ * not to one picked by the load balancer: each instance keeps its own user existence cache and
+ * must see every deletion to refuse borrows for deleted users. An instance that cannot be reached
+ * after the configured attempts misses the event; its cached confirmation of a deleted user then
+ * expires with the cache TTL, and a restarted instance starts with an empty cache.
+ */
+@Component
+public class UserEventPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserEventPublisher.class);
+
+    private static final String LOAN_SERVICE = "library-loan-service";
+    private static final String EVENTS_PATH = "/api/loans/users/events";
+
+    private final DiscoveryClient discoveryClient;
+    private final RestClient restClient;
+    private final int attempts;
+
+    public UserEventPublisher(DiscoveryClient discoveryClient,
+                              @Value("${library.user-events.timeout:2000}") int timeoutMillis,
+                              @Value("${library.user-events.attempts:3}") int attempts) {
+        this.discoveryClient = discoveryClient;
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeoutMillis);
+        requestFactory.setReadTimeout(timeoutMillis);
+        this.restClient = RestClient.builder().requestFactory(requestFactory).build();
+        this.attempts = Math.max(1, attempts);
+    }
+
+    public void publish(UserEventDTO event) {
+        List<ServiceInstance> instances;
+        try {
+            instances = discoveryClient.getInstances(LOAN_SERVICE);
+        } catch (Exception e) {
+            logger.warn("User {} event for user {} not published, discovery unavailable: {}",
+                    event.getType(), event.getUserId(), e.getMessage());
+            return;
+        }
+        for (ServiceInstance instance : instances) {
+            deliver(instance, event);
+        }
+    }
+
+    private void deliver(ServiceInstance instance, UserEventDTO event) {
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            try {
+                restClient.post()
+                        .uri(instance.getUri().resolve(EVENTS_PATH))
+                        .body(event)
+                        .retrieve()
+                        .toBodilessEntity();
+                return;
+            } catch (Exception e) {
+                if (attempt == attempts) {
+                    logger.warn("User {} event for user {} not delivered to loan instance {}: {}",
+                            event.getType(), event.getUserId(), instance.getUri(), e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package com.library.user.repository;
 
 import com.library.user.entity.LibraryUser;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface LibraryUserRepository extends MongoRepository<LibraryUser, Long> {
     Optional<LibraryUser> findByEmail(String email);
+
+    List<LibraryUser> findByIdGreaterThanOrderByIdAsc(Long after, Pageable pageable);
+
+    // Only the _id of each user, for id snapshots
+    @Query(value = "{ '_id': { '$gt': ?0 } }", fields = "{ '_id': 1 }", sort = "{ '_id': 1 }")
+    List<LibraryUser> findIdsAfter(Long after, Pageable pageable);
+
+    Stream<LibraryUser> streamAllByOrderByIdAsc();
 }
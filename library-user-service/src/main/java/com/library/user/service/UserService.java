@@ -1,24 +1,38 @@
 package com.library.user.service;
 
+import com.library.user.dto.CursorPageDTO;
 import com.library.user.dto.LibraryUserDTO;
+import com.library.user.dto.UserEventDTO;
 import com.library.user.entity.LibraryUser;
+import com.library.user.events.UserEventPublisher;
 import com.library.user.mapper.UserMapper;
 import com.library.user.repository.LibraryUserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class UserService {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_ID_PAGE_SIZE = 10000;
+
     private final LibraryUserRepository userRepository;
     private final UserMapper userMapper;
+    private final ObjectMapper objectMapper;
+    private final UserEventPublisher userEventPublisher;
 
     public LibraryUserDTO createUser(LibraryUserDTO userDTO) {
         if (userRepository.findByEmail(userDTO.getEmail()).isPresent()) {
@@ -27,6 +41,7 @@ public class UserService {
         LibraryUser user = userMapper.toEntity(userDTO);
         user.setCreatedAt(LocalDateTime.now());
         LibraryUser saved = userRepository.save(user);
+        publishUserEvent(saved.getId(), "CREATED");
         return userMapper.toDTO(saved);
     }
 
@@ -44,6 +59,40 @@ public class UserService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
+    public CursorPageDTO<LibraryUserDTO> getUsersPage(Long after, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<LibraryUserDTO> items = userRepository
+                .findByIdGreaterThanOrderByIdAsc(after != null ? after : 0L, PageRequest.of(0, pageSize)).stream()
+                .map(userMapper::toDTO)
+                .collect(Collectors.toList());
+        Long nextAfter = items.size() == pageSize ? items.get(items.size() - 1).getId() : null;
+        return new CursorPageDTO<>(items, nextAfter);
+    }
+
+    // Ids only, so the loan service can load its user existence cache cheaply
+    @Transactional(readOnly = true)
+    public CursorPageDTO<Long> getUserIds(Long after, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_ID_PAGE_SIZE);
+        List<Long> ids = userRepository.findIdsAfter(after != null ? after : 0L, PageRequest.of(0, pageSize)).stream()
+                .map(LibraryUser::getId)
+                .collect(Collectors.toList());
+        Long nextAfter = ids.size() == pageSize ? ids.get(ids.size() - 1) : null;
+        return new CursorPageDTO<>(ids, nextAfter);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllUsers(OutputStream out) throws IOException {
+        try (Stream<LibraryUser> users = userRepository.streamAllByOrderByIdAsc()) {
+            Iterator<LibraryUser> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(userMapper.toDTO(iterator.next())));
+                out.write('\n');
+            }
+        }
+        out.flush();
+    }
+
     public LibraryUserDTO updateUser(Long id, LibraryUserDTO userDTO) {
         LibraryUser user = userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
@@ -59,6 +108,11 @@ public class UserService {
             throw new RuntimeException("User not found with id: " + id);
         }
         userRepository.deleteById(id);
+        publishUserEvent(id, "DELETED");
+    }
+
+    private void publishUserEvent(Long userId, String type) {
+        userEventPublisher.publish(new UserEventDTO(userId, type));
     }
 }
 
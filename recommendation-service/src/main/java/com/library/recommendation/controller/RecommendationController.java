@@ -33,4 +33,11 @@ public class RecommendationController {
         List<BookRecommendationDTO> recommendations = recommendationService.getRecommendationsForUser(userId);
         return ResponseEntity.ok(recommendations);
     }
+
+    @PostMapping("/most-borrowed/rebuild")
+    @Operation(summary = "Rebuild the borrow-count view from the loan service")
+    public ResponseEntity<Void> rebuildBorrowCounts() {
+        recommendationService.rebuildBorrowCounts();
+        return ResponseEntity.ok().build();
+    }
 }
@@ -0,0 +1,13 @@
+package com.library.recommendation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBorrowCountDTO {
+    private Long bookId;
+    private Long count;
+}
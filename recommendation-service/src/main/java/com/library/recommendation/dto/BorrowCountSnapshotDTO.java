@@ -0,0 +1,16 @@
+package com.library.recommendation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BorrowCountSnapshotDTO {
+    // Loan event stream offset the counts match, read on from here
+    private long offset;
+    private List<BookBorrowCountDTO> counts;
+}
@@ -0,0 +1,17 @@
+package com.library.recommendation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanEventBatchDTO {
+    private long lastOffset;
+    // The loan service already dropped events after the requested offset, rebuild the view
+    private boolean resetRequired;
+    private List<LoanEventDTO> events;
+}
@@ -0,0 +1,9 @@
+package com.library.recommendation.exception;
+
+// A result size the endpoint does not accept
+public class InvalidLimitException extends RuntimeException {
+
+    public InvalidLimitException(String message) {
+        super(message);
+    }
+}
@@ -1,9 +1,16 @@
 package com.library.recommendation.feign;
 
+import com.library.recommendation.dto.AvailabilityDeltaDTO;
+import com.library.recommendation.dto.AvailabilitySnapshotDTO;
+import com.library.recommendation.dto.BookBatchRequestDTO;
 import com.library.recommendation.dto.BookResponseDTO;
+import com.library.recommendation.dto.CursorPageDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
 
@@ -12,7 +19,20 @@ public interface BookFeignClient {
     @GetMapping("/api/books")
     List<BookResponseDTO> getAllBooks();
 
+    @GetMapping("/api/books")
+    CursorPageDTO<BookResponseDTO> getBooksPage(@RequestParam(name = "after", required = false) Long after,
+                                                @RequestParam(name = "limit") int limit);
+
     @GetMapping("/api/books/{id}")
     BookResponseDTO getBookById(@PathVariable("id") Long id);
-}
 
+    @PostMapping("/api/books/batch")
+    List<BookResponseDTO> getBooksByIds(@RequestBody BookBatchRequestDTO request);
+
+    @GetMapping("/api/books/availability")
+    AvailabilitySnapshotDTO getAvailabilitySnapshot();
+
+    @GetMapping("/api/books/availability/changes")
+    AvailabilityDeltaDTO getAvailabilityChanges(@RequestParam(name = "epoch") String epoch,
+                                                @RequestParam(name = "since") long since);
+}
@@ -1,14 +1,23 @@
 package com.library.recommendation.feign;
 
+import com.library.recommendation.dto.BorrowCountSnapshotDTO;
+import com.library.recommendation.dto.LoanEventBatchDTO;
 import com.library.recommendation.dto.LoanResponseDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
 
 @FeignClient(name = "library-loan-service")
 public interface LoanFeignClient {
+    @GetMapping("/api/loans/events")
+    LoanEventBatchDTO getLoanEvents(@RequestParam("after") long after, @RequestParam("limit") int limit);
+
+    @GetMapping("/api/loans/events/borrow-counts")
+    BorrowCountSnapshotDTO getBorrowCountSnapshot();
+
     @GetMapping("/api/loans/user/{userId}")
     List<LoanResponseDTO> getLoansByUserId(@PathVariable("userId") Long userId);
 
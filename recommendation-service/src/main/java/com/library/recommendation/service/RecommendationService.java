@@ -1,11 +1,25 @@
 package com.library.recommendation.service;
 
+import com.library.recommendation.dto.AvailabilityDeltaDTO;
+import com.library.recommendation.dto.BookBatchRequestDTO;
+import com.library.recommendation.dto.BookBorrowCountDTO;
 import com.library.recommendation.dto.BookRecommendationDTO;
 import com.library.recommendation.dto.BookResponseDTO;
+import com.library.recommendation.dto.BorrowCountSnapshotDTO;
+import com.library.recommendation.dto.CursorPageDTO;
+import com.library.recommendation.dto.LoanEventBatchDTO;
+import com.library.recommendation.dto.LoanEventDTO;
 import com.library.recommendation.dto.LoanResponseDTO;
+import com.library.recommendation.exception.InvalidLimitException;
 import com.library.recommendation.feign.BookFeignClient;
 import com.library.recommendation.feign.LoanFeignClient;
+import com.library.recommendation.view.AvailabilityView;
+import com.library.recommendation.view.BorrowCountView;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -15,54 +29,140 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class RecommendationService {
 
+    private static final int BOOK_BATCH_SIZE = 1000;
+    private static final int CATALOG_PAGE_SIZE = 500;
+
     private final LoanFeignClient loanFeignClient;
     private final BookFeignClient bookFeignClient;
+    private final BorrowCountView borrowCountView;
+    private final AvailabilityView availabilityView;
+
+    @Value("${library.loan-events.batch-size:1000}")
+    private int loanEventBatchSize;
+
+    // Guards the view together with the stream offset it matches
+    private final Object borrowCountLock = new Object();
+    // Loan event stream offset the borrow-count view includes events up to
+    private long loanEventOffset;
 
     public List<BookRecommendationDTO> getMostBorrowedBooks(int limit) {
+        if (limit < 1) {
+            throw new InvalidLimitException("Limit must be at least 1");
+        }
         try {
-            List<LoanResponseDTO> allLoans = loanFeignClient.getLoansByBookId(0L); // Get all loans
-            // Since we can't get all loans directly, we'll use a different approach
-            List<BookResponseDTO> allBooks = bookFeignClient.getAllBooks();
-            
-            Map<Long, Integer> borrowCounts = new HashMap<>();
-            
-            // Count borrows for each book
-            for (BookResponseDTO book : allBooks) {
-                try {
-                    List<LoanResponseDTO> bookLoans = loanFeignClient.getLoansByBookId(book.getId());
-                    borrowCounts.put(book.getId(), bookLoans.size());
-                } catch (Exception e) {
-                    borrowCounts.put(book.getId(), 0);
+            if (!borrowCountView.isInitialized()) {
+                rebuildBorrowCounts();
+            }
+
+            List<Map.Entry<Long, Integer>> top = borrowCountView.top(limit);
+            if (top.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<Long> ids = top.stream().map(Map.Entry::getKey).collect(Collectors.toList());
+            Map<Long, BookResponseDTO> books = getBooksByIds(ids, null).stream()
+                    .collect(Collectors.toMap(BookResponseDTO::getId, book -> book));
+
+            List<BookRecommendationDTO> result = new ArrayList<>();
+            for (Map.Entry<Long, Integer> entry : top) {
+                BookResponseDTO book = books.get(entry.getKey());
+                if (book == null) {
+                    continue; // Skip if book not found
                 }
+                BookRecommendationDTO dto = new BookRecommendationDTO();
+                dto.setBookId(book.getId());
+                dto.setTitle(book.getTitle());
+                dto.setIsbn(book.getIsbn());
+                dto.setCategory(book.getCategory());
+                dto.setBorrowCount(entry.getValue());
+                dto.setReason("Most borrowed book");
+                result.add(dto);
             }
-            
-            return borrowCounts.entrySet().stream()
-                    .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed())
-                    .limit(limit)
-                    .map(entry -> {
-                        BookResponseDTO book = allBooks.stream()
-                                .filter(b -> b.getId().equals(entry.getKey()))
-                                .findFirst()
-                                .orElse(null);
-                        if (book != null) {
-                            BookRecommendationDTO dto = new BookRecommendationDTO();
-                            dto.setBookId(book.getId());
-                            dto.setTitle(book.getTitle());
-                            dto.setIsbn(book.getIsbn());
-                            dto.setCategory(book.getCategory());
-                            dto.setBorrowCount(entry.getValue());
-                            dto.setReason("Most borrowed book");
-                            return dto;
-                        }
-                        return null;
-                    })
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+            return result;
         } catch (Exception e) {
             return Collections.emptyList();
         }
     }
 
+    @EventListener(ApplicationReadyEvent.class)
+    public void initBorrowCounts() {
+        try {
+            rebuildBorrowCounts();
+        } catch (Exception e) {
+            // Loan service not reachable yet, the view is rebuilt on first read
+        }
+    }
+
+    public void rebuildBorrowCounts() {
+        BorrowCountSnapshotDTO snapshot = loanFeignClient.getBorrowCountSnapshot();
+        Map<Long, Integer> counts = new HashMap<>();
+        for (BookBorrowCountDTO count : snapshot.getCounts()) {
+            counts.put(count.getBookId(), count.getCount().intValue());
+        }
+        synchronized (borrowCountLock) {
+            borrowCountView.replaceAll(counts);
+            loanEventOffset = snapshot.getOffset();
+        }
+    }
+
+    /**
+     * Every instance reads the loan event stream from its own offset, so each view sees every
+     * borrow whichever instance serves the read. After a rebuild, reading resumes exactly at the
+     * offset the snapshot matches; when the stream has dropped events this instance has not read
+     * yet, the view is rebuilt.
+     */
+    @Scheduled(initialDelayString = "${library.loan-events.poll-interval:1000}",
+            fixedDelayString = "${library.loan-events.poll-interval:1000}")
+    public void pollLoanEvents() {
+        try {
+            synchronized (borrowCountLock) {
+                if (!borrowCountView.isInitialized()) {
+                    rebuildBorrowCounts();
+                }
+                while (true) {
+                    LoanEventBatchDTO batch = loanFeignClient.getLoanEvents(loanEventOffset, loanEventBatchSize);
+                    if (batch.isResetRequired()) {
+                        rebuildBorrowCounts();
+                        continue;
+                    }
+                    batch.getEvents().forEach(this::apply);
+                    loanEventOffset = batch.getLastOffset();
+                    if (batch.getEvents().size() < loanEventBatchSize) {
+                        return;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // Loan service not reachable, the next poll reads on from the same offset
+        }
+    }
+
+    private void apply(LoanEventDTO event) {
+        if ("BORROWED".equals(event.getType())) {
+            borrowCountView.increment(event.getBookId());
+        } else if ("BORROW_CANCELLED".equals(event.getType())) {
+            borrowCountView.decrement(event.getBookId());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${library.availability.sync-interval:30000}",
+            fixedDelayString = "${library.availability.sync-interval:30000}")
+    public void syncAvailability() {
+        try {
+            if (availabilityView.isInitialized()) {
+                AvailabilityDeltaDTO delta = bookFeignClient.getAvailabilityChanges(
+                        availabilityView.getEpoch(), availabilityView.getVersion());
+                if (!delta.isFullSnapshotRequired()) {
+                    availabilityView.apply(delta);
+                    return;
+                }
+            }
+            availabilityView.replace(bookFeignClient.getAvailabilitySnapshot());
+        } catch (Exception e) {
+            // Book service not reachable, keep the last known availability
+        }
+    }
+
     public List<BookRecommendationDTO> getRecommendationsForUser(Long userId) {
         try {
             // Get user's loan history
@@ -74,35 +174,26 @@ public class RecommendationService {
             }
             
             // Get categories of books user has borrowed
-            Set<String> userCategories = new HashSet<>();
-            for (LoanResponseDTO loan : userLoans) {
-                try {
-                    BookResponseDTO book = bookFeignClient.getBookById(loan.getBookId());
-                    if (book.getCategory() != null) {
-                        userCategories.add(book.getCategory());
-                    }
-                } catch (Exception e) {
-                    // Skip if book not found
-                }
-            }
-            
-            // Get all books
-            List<BookResponseDTO> allBooks = bookFeignClient.getAllBooks();
+            Set<Long> borrowedBookIds = userLoans.stream()
+                    .map(LoanResponseDTO::getBookId)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            Set<String> userCategories = getBooksByIds(borrowedBookIds, List.of("category")).stream()
+                    .map(BookResponseDTO::getCategory)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
             
-            // Filter books by user's preferred categories
-            List<BookRecommendationDTO> recommendations = allBooks.stream()
-                    .filter(book -> {
-                        // Exclude books user already borrowed
-                        boolean alreadyBorrowed = userLoans.stream()
-                                .anyMatch(loan -> loan.getBookId().equals(book.getId()));
-                        if (alreadyBorrowed) {
-                            return false;
-                        }
-                        // Include books in user's preferred categories
-                        return book.getCategory() != null && userCategories.contains(book.getCategory());
-                    })
-                    .limit(10)
-                    .map(book -> {
+            // Walk the catalog page by page until enough books match the user's categories
+            List<BookRecommendationDTO> recommendations = new ArrayList<>();
+            Long after = null;
+            do {
+                CursorPageDTO<BookResponseDTO> page = bookFeignClient.getBooksPage(after, CATALOG_PAGE_SIZE);
+                for (BookResponseDTO book : page.getItems()) {
+                    if (recommendations.size() >= 10) {
+                        break;
+                    }
+                    // Exclude books user already borrowed or that are out of stock, include books in user's preferred categories
+                    if (!borrowedBookIds.contains(book.getId()) && availabilityView.isAvailable(book.getId())
+                            && book.getCategory() != null && userCategories.contains(book.getCategory())) {
                         BookRecommendationDTO dto = new BookRecommendationDTO();
                         dto.setBookId(book.getId());
                         dto.setTitle(book.getTitle());
@@ -110,9 +201,11 @@ public class RecommendationService {
                         dto.setCategory(book.getCategory());
                         dto.setBorrowCount(0);
                         dto.setReason("Based on your reading history in category: " + book.getCategory());
-                        return dto;
-                    })
-                    .collect(Collectors.toList());
+                        recommendations.add(dto);
+                    }
+                }
+                after = page.getNextAfter();
+            } while (after != null && recommendations.size() < 10);
             
             // If not enough recommendations, add most borrowed books
             if (recommendations.size() < 5) {
@@ -130,6 +223,14 @@ public class RecommendationService {
             return getMostBorrowedBooks(5);
         }
     }
-}
-
 
+    private List<BookResponseDTO> getBooksByIds(Collection<Long> ids, List<String> fields) {
+        List<Long> idList = new ArrayList<>(ids);
+        List<BookResponseDTO> books = new ArrayList<>(idList.size());
+        for (int from = 0; from < idList.size(); from += BOOK_BATCH_SIZE) {
+            List<Long> chunk = idList.subList(from, Math.min(from + BOOK_BATCH_SIZE, idList.size()));
+            books.addAll(bookFeignClient.getBooksByIds(new BookBatchRequestDTO(new ArrayList<>(chunk), fields)));
+        }
+        return books;
+    }
+}
@@ -0,0 +1,57 @@
+package com.library.recommendation.view;
+
+import com.library.recommendation.dto.AvailabilityDeltaDTO;
+import com.library.recommendation.dto.AvailabilitySnapshotDTO;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Local copy of the book service availability bitmap, so availability filtering is a bit
+ * test instead of a call per book. Until the first snapshot arrives every book counts as available.
+ */
+@Component
+public class AvailabilityView {
+
+    private Roaring64NavigableMap available = new Roaring64NavigableMap();
+    private String epoch;
+    private long version;
+
+    public synchronized boolean isInitialized() {
+        return epoch != null;
+    }
+
+    public synchronized String getEpoch() {
+        return epoch;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized boolean isAvailable(Long bookId) {
+        return epoch == null || available.contains(bookId);
+    }
+
+    public synchronized void replace(AvailabilitySnapshotDTO snapshot) {
+        Roaring64NavigableMap bitmap = new Roaring64NavigableMap();
+        try {
+            bitmap.deserializePortable(new DataInputStream(new ByteArrayInputStream(snapshot.getBitmap())));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        available = bitmap;
+        epoch = snapshot.getEpoch();
+        version = snapshot.getVersion();
+    }
+
+    public synchronized void apply(AvailabilityDeltaDTO delta) {
+        delta.getAvailable().forEach(available::addLong);
+        delta.getUnavailable().forEach(available::removeLong);
+        version = delta.getVersion();
+    }
+}
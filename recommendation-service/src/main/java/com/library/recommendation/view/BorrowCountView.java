@@ -0,0 +1,77 @@
+package com.library.recommendation.view;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * In-memory materialized view of borrow counts per book, kept ordered by count
+ * so that "most borrowed" is a walk over the head of a sorted set.
+ */
+@Component
+public class BorrowCountView {
+
+    private static final Comparator<Map.Entry<Long, Integer>> BY_COUNT_DESC =
+            Comparator.<Map.Entry<Long, Integer>>comparingInt(Map.Entry::getValue).reversed()
+                    .thenComparing(Map.Entry::getKey);
+
+    private final Map<Long, Integer> counts = new HashMap<>();
+    private final NavigableSet<Map.Entry<Long, Integer>> ranking = new TreeSet<>(BY_COUNT_DESC);
+    private volatile boolean initialized = false;
+
+    public synchronized void increment(Long bookId) {
+        adjust(bookId, 1);
+    }
+
+    public synchronized void decrement(Long bookId) {
+        adjust(bookId, -1);
+    }
+
+    public synchronized void replaceAll(Map<Long, Integer> snapshot) {
+        counts.clear();
+        ranking.clear();
+        snapshot.forEach((bookId, count) -> {
+            if (bookId != null && count != null && count > 0) {
+                counts.put(bookId, count);
+                ranking.add(Map.entry(bookId, count));
+            }
+        });
+        initialized = true;
+    }
+
+    public synchronized List<Map.Entry<Long, Integer>> top(int limit) {
+        List<Map.Entry<Long, Integer>> result = new ArrayList<>(Math.min(limit, ranking.size()));
+        for (Map.Entry<Long, Integer> entry : ranking) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    public synchronized int getCount(Long bookId) {
+        return counts.getOrDefault(bookId, 0);
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    private void adjust(Long bookId, int delta) {
+        if (bookId == null) {
+            return;
+        }
+        Integer current = counts.get(bookId);
+        if (current != null) {
+            ranking.remove(Map.entry(bookId, current));
+        }
+        int next = Math.max(0, (current != null ? current : 0) + delta);
+        if (next > 0) {
+            counts.put(bookId, next);
+            ranking.add(Map.entry(bookId, next));
+        } else {
+            counts.remove(bookId);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.library.recommendation.service;
+
+import com.library.recommendation.dto.BookBorrowCountDTO;
+import com.library.recommendation.dto.BorrowCountSnapshotDTO;
+import com.library.recommendation.dto.LoanEventBatchDTO;
+import com.library.recommendation.dto.LoanEventDTO;
+import com.library.recommendation.exception.InvalidLimitException;
+import com.library.recommendation.feign.BookFeignClient;
+import com.library.recommendation.feign.LoanFeignClient;
+import com.library.recommendation.view.AvailabilityView;
+import com.library.recommendation.view.BorrowCountView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class RecommendationServiceTest {
+
+    private final LoanFeignClient loanFeignClient = mock(LoanFeignClient.class);
+    private final BorrowCountView view = new BorrowCountView();
+
+    private RecommendationService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new RecommendationService(loanFeignClient, mock(BookFeignClient.class), view, new AvailabilityView());
+        ReflectionTestUtils.setField(service, "loanEventBatchSize", 2);
+        when(loanFeignClient.getBorrowCountSnapshot()).thenReturn(new BorrowCountSnapshotDTO(10,
+                List.of(new BookBorrowCountDTO(100L, 3L), new BookBorrowCountDTO(200L, 1L))));
+    }
+
+    @Test
+    void pollReadsOnFromTheOffsetTheSnapshotMatches() {
+        when(loanFeignClient.getLoanEvents(10, 2)).thenReturn(batch(12, false,
+                event(11, 200L, "BORROWED"), event(12, 200L, "BORROWED")));
+        when(loanFeignClient.getLoanEvents(12, 2)).thenReturn(batch(13, false, event(13, 100L, "BORROW_CANCELLED")));
+
+        service.pollLoanEvents();
+
+        assertThat(view.getCount(100L)).isEqualTo(2);
+        assertThat(view.getCount(200L)).isEqualTo(3);
+        verify(loanFeignClient, never()).getLoanEvents(0, 2);
+    }
+
+    @Test
+    void nextPollStartsWhereTheLastOneStopped() {
+        when(loanFeignClient.getLoanEvents(10, 2)).thenReturn(batch(11, false, event(11, 100L, "BORROWED")));
+        when(loanFeignClient.getLoanEvents(11, 2)).thenReturn(batch(11, false));
+
+        service.pollLoanEvents();
+        service.pollLoanEvents();
+
+        assertThat(view.getCount(100L)).isEqualTo(4);
+        verify(loanFeignClient, times(1)).getBorrowCountSnapshot();
+        verify(loanFeignClient, times(1)).getLoanEvents(10, 2);
+    }
+
+    @Test
+    void eventsDroppedBeforeTheyWereReadRebuildTheView() {
+        service.rebuildBorrowCounts();
+        when(loanFeignClient.getBorrowCountSnapshot()).thenReturn(new BorrowCountSnapshotDTO(50,
+                List.of(new BookBorrowCountDTO(100L, 7L))));
+        when(loanFeignClient.getLoanEvents(10, 2)).thenReturn(batch(10, true));
+        when(loanFeignClient.getLoanEvents(50, 2)).thenReturn(batch(50, false));
+
+        service.pollLoanEvents();
+
+        assertThat(view.getCount(100L)).isEqualTo(7);
+        assertThat(view.getCount(200L)).isZero();
+    }
+
+    @Test
+    void limitBelowOneIsRejected() {
+        assertThatThrownBy(() -> service.getMostBorrowedBooks(-1)).isInstanceOf(InvalidLimitException.class);
+        assertThatThrownBy(() -> service.getMostBorrowedBooks(0)).isInstanceOf(InvalidLimitException.class);
+    }
+
+    private static LoanEventBatchDTO batch(long lastOffset, boolean resetRequired, LoanEventDTO... events) {
+        return new LoanEventBatchDTO(lastOffset, resetRequired, List.of(events));
+    }
+
+    private static LoanEventDTO event(long offset, Long bookId, String type) {
+        return new LoanEventDTO(offset, offset, 1L, bookId, type, null);
+    }
+}